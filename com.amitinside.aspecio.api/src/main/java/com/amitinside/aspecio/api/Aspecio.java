@@ -15,7 +15,6 @@
  ******************************************************************************/
 package com.amitinside.aspecio.api;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -36,6 +35,14 @@ import org.osgi.framework.Constants;
  * </p>
  *
  * <p>
+ * The collections and DTOs returned by this service are immutable snapshots of
+ * Aspecio's state, shared between callers and replaced whenever that state
+ * changes. They must not be modified. Pollers can compare
+ * {@link #getVersion()} with the version of their previous read to skip
+ * unchanged state.
+ * </p>
+ *
+ * <p>
  * To define and update aspects, a service object implementing 
  * {@code io.primeval.reflex.proxy.Interceptor} must be registered in the OSGi 
  * service registry with the {@link String} property 
@@ -75,7 +82,7 @@ public interface Aspecio {
 
     /**
      * Get the set of Aspects currently registered as seen by Aspecio.
-     * The returned set is a view and changing it will not change the state of Aspecio.
+     * The returned set is an immutable snapshot, that is not updated when Aspecio's state changes.
      *
      * @return The set containing the registered Aspect names.
      */
@@ -93,10 +100,78 @@ public interface Aspecio {
     /**
      * Get the list of {@link InterceptedServiceDTO}, as seen by Aspecio.
      *
+     * The returned list and its DTOs are an immutable snapshot, that is not updated when Aspecio's state changes.
+     *
      * @return The list of {@link InterceptedServiceDTO}, or an empty list if there are no intercepted services.
      */
     List<InterceptedServiceDTO> getInterceptedServices();
 
+    /**
+     * Get the list of {@link InterceptedServiceDTO} matching a query, ordered by service ID and paged with the
+     * offset and limit of the query. The services are looked up through indexes on their aspects, providing bundle
+     * and satisfaction, so that narrow queries do not scan all the intercepted services.
+     * The returned list and its DTOs are an immutable snapshot, that is not updated when Aspecio's state changes.
+     *
+     * @param query The criteria of the services to select
+     * @return The list of {@link InterceptedServiceDTO}, or an empty list if no intercepted service matches.
+     * @throws NullPointerException if the {@code query} is {@code null}
+     * @throws IllegalArgumentException if the filter of the {@code query} is not a valid LDAP filter
+     */
+    List<InterceptedServiceDTO> queryInterceptedServices(InterceptedServiceQueryDTO query);
+
+    /**
+     * Get the number of intercepted services matching a query, ignoring its offset and limit.
+     *
+     * @param query The criteria of the services to count
+     * @return The number of matching intercepted services.
+     * @throws NullPointerException if the {@code query} is {@code null}
+     * @throws IllegalArgumentException if the filter of the {@code query} is not a valid LDAP filter
+     */
+    int countInterceptedServices(InterceptedServiceQueryDTO query);
+
+    /**
+     * Get the version of the aspects and intercepted services seen by Aspecio. The version increases every time
+     * their state may have changed, and is unchanged as long as {@link #getRegisteredAspects()},
+     * {@link #getAspectDescription(String)} and {@link #getInterceptedServices()} return the same snapshots.
+     *
+     * @return The current version.
+     */
+    long getVersion();
+
+    /**
+     * Add a listener notified of the changes of the intercepted services, from the next change on. To keep a view
+     * of the intercepted services, add the listener before reading {@link #getInterceptedServices()}, and read them
+     * again on {@link InterceptedServiceEventDTO.EventType#OVERFLOW} events.
+     * Adding a listener that is already added has no effect.
+     *
+     * @param listener The listener to add
+     * @throws NullPointerException if the {@code listener} is {@code null}
+     */
+    void addInterceptedServiceListener(InterceptedServiceListener listener);
+
+    /**
+     * Remove a listener added with {@link #addInterceptedServiceListener(InterceptedServiceListener)}. The listener
+     * is not notified of the events pending for it.
+     *
+     * @param listener The listener to remove
+     */
+    void removeInterceptedServiceListener(InterceptedServiceListener listener);
+
+    /**
+     * Get the {@link WeavingStatisticsDTO} describing the weaving work done by Aspecio so far.
+     *
+     * @return A new {@link WeavingStatisticsDTO} reflecting the current statistics.
+     */
+    WeavingStatisticsDTO getWeavingStatistics();
+
+    /**
+     * Get the list of {@link ProxyClassLoaderDTO} describing the proxy class loaders that are still reachable,
+     * along with the proxy classes they define.
+     *
+     * @return The list of {@link ProxyClassLoaderDTO}, or an empty list if there are no live proxy class loaders.
+     */
+    List<ProxyClassLoaderDTO> getProxyClassLoaders();
+
     /**
      * Get the list of {@link InterceptedServiceDTO}, as seen by Aspecio, filtered by objectClass.
      *
@@ -104,18 +179,8 @@ public interface Aspecio {
      * @return The list of {@link InterceptedServiceDTO}, or an empty list if there are no intercepted services.
      */
     default List<InterceptedServiceDTO> getInterceptedServices(final String objectClassContains) {
-        final List<InterceptedServiceDTO> interceptedServices = getInterceptedServices();
-        final Iterator<InterceptedServiceDTO> iterator = interceptedServices.iterator();
-        entryLoop:
-        while (iterator.hasNext()) {
-            final InterceptedServiceDTO serviceDescription = iterator.next();
-            for (final String objClass : serviceDescription.objectClass) {
-                if (objClass.contains(objectClassContains)) {
-                    continue entryLoop;
-                }
-            }
-            iterator.remove();
-        }
-        return interceptedServices;
+        final InterceptedServiceQueryDTO query = new InterceptedServiceQueryDTO();
+        query.objectClassContains = objectClassContains;
+        return queryInterceptedServices(query);
     }
 }
\ No newline at end of file
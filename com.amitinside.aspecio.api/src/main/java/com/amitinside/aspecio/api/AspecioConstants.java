@@ -45,6 +45,14 @@ public final class AspecioConstants {
      */
     public static final String SERVICE_ASPECT_WEAVE_OPTIONAL = "service.aspect.weave.optional";
 
+    /**
+     * Property a service requesting weaving may register to select the proxy
+     * engine used to weave it, either {@literal "bridging"} or
+     * {@literal "host"}. This property should be of type String and overrides
+     * the {@link #ASPECIO_PROXY_ENGINE} framework property.
+     */
+    public static final String SERVICE_ASPECT_WEAVE_ENGINE = "service.aspect.weave.engine";
+
     /**
      * Property a service should register to declare an aspect. The registered 
      * service object should be assignable to {@code Interceptor} to be recognized 
@@ -64,4 +72,124 @@ public final class AspecioConstants {
      */
     public static final String SERVICE_ASPECT_WOVEN = ".service.aspect.woven";
 
+    /**
+     * Manifest header listing the components of a bundle that request weaving,
+     * together with the service interfaces they are registered with, such as
+     * {@code com.acme.internal.HelloImpl;objectClass="com.acme.Hello,com.acme.Goodbye"}.
+     * A clause may also carry an {@code engine} attribute with the
+     * {@link #SERVICE_ASPECT_WEAVE_ENGINE} the component registers.
+     * It is generated at build time by the {@code com.amitinside.aspecio.bnd}
+     * plugin and allows Aspecio to prepare the proxy classes of a bundle before
+     * its services get registered.
+     */
+    public static final String ASPECIO_WEAVE_HEADER = "Aspecio-Weave";
+
+    /**
+     * Framework property setting the number of background threads preparing the
+     * proxy classes of resolved bundles declaring weave candidates. Defaults to
+     * half the number of available processors.
+     */
+    public static final String ASPECIO_PREPARATION_THREADS = "aspecio.preparation.threads";
+
+    /**
+     * Framework property enabling the asynchronous weaving pipeline when set to
+     * {@literal "true"}. Service registrations and modifications are then
+     * processed on a worker pool instead of the thread firing the service event,
+     * keeping the order of the events of each service. Defaults to
+     * {@literal "false"}.
+     */
+    public static final String ASPECIO_WEAVING_ASYNC = "aspecio.weaving.async";
+
+    /**
+     * Framework property setting the number of worker threads of the asynchronous
+     * weaving pipeline. Defaults to the number of available processors.
+     */
+    public static final String ASPECIO_WEAVING_THREADS = "aspecio.weaving.threads";
+
+    /**
+     * Framework property controlling how Aspecio weaves the services already
+     * registered when it starts. By default, the bundles providing them are
+     * restarted so that their consumers get the woven services. When set to
+     * {@literal "false"}, the existing services are woven in place: proxies are
+     * registered without restarting any bundle and the original services are
+     * hidden from new lookups, while the consumers already holding an original
+     * service are reported in the log.
+     */
+    public static final String ASPECIO_RESTART_BUNDLES = "aspecio.restart.bundles";
+
+    /**
+     * Framework property setting the maximum number of independent groups of
+     * bundles Aspecio restarts in parallel when it starts. Bundles wired to each
+     * other are always restarted in dependency order. Defaults to the number of
+     * available processors.
+     */
+    public static final String ASPECIO_RESTART_CONCURRENCY = "aspecio.restart.concurrency";
+
+    /**
+     * Framework property selecting the default proxy engine. The
+     * {@literal "bridging"} engine, the default, defines proxies in a class
+     * loader bridging all the bundles of the class hierarchy of the woven class.
+     * The {@literal "host"} engine defines all the proxies of a bundle revision
+     * in a single class loader delegating to that bundle, falling back to the
+     * bridging engine for classes whose hierarchy is not visible from it.
+     */
+    public static final String ASPECIO_PROXY_ENGINE = "aspecio.proxy.engine";
+
+    /**
+     * Framework property setting a coalescing window, in milliseconds, for the
+     * aspect changes affecting woven services. Within the window opened by the
+     * first aspect change affecting a woven service, all the changes affecting
+     * it are collapsed into a single re-evaluation, at most registering,
+     * unregistering or updating its proxy once. Defaults to {@literal 0}, which
+     * applies every aspect change right away.
+     */
+    public static final String ASPECIO_COALESCING_WINDOW = "aspecio.coalescing.window.ms";
+
+    /**
+     * Framework property setting a grace period, in milliseconds, during which a
+     * registered woven service missing one of its required aspects stays
+     * registered, so that its consumers are not deactivated if the aspect
+     * returns in time, for instance while the bundle providing it is updated.
+     * The service is unregistered at the end of the grace period only. Defaults
+     * to {@literal 0}, which unregisters the service right away.
+     */
+    public static final String ASPECIO_GRACE_PERIOD = "aspecio.grace.period.ms";
+
+    /**
+     * Framework property selecting how the woven services in a grace period
+     * handle calls: {@literal "block"}, the default, makes calls wait for the
+     * missing aspects until the end of the grace period, {@literal "fail"} makes
+     * them fail right away, and {@literal "passthrough"} calls the original
+     * service without interception. Failing calls throw a
+     * {@link org.osgi.framework.ServiceException}.
+     */
+    public static final String ASPECIO_GRACE_POLICY = "aspecio.grace.policy";
+
+    /**
+     * Framework property setting the number of events that can be pending for
+     * each {@link InterceptedServiceListener}, beyond which events are dropped
+     * and coalesced into an overflow event. Defaults to {@literal 1024}.
+     */
+    public static final String ASPECIO_EVENT_QUEUE_SIZE = "aspecio.event.queue.size";
+
+    /**
+     * Framework property enabling fused interceptor chains. When set to
+     * {@literal "true"}, Aspecio generates a chain class for each distinct
+     * ordered set of interceptors, whose stages call each other directly
+     * instead of going through a generic stack, so that the JIT can inline the
+     * calls across several aspects. Defaults to {@literal "false"}.
+     */
+    public static final String ASPECIO_FUSED_CHAINS = "aspecio.chain.fused";
+
+    /**
+     * Framework property selecting how services are woven. With
+     * {@literal "proxy"}, the default, Aspecio registers a proxy of each woven
+     * service and hides the original one. With {@literal "bytecode"}, Aspecio
+     * rewrites the classes of the weave candidates as they are loaded so that
+     * they call their aspects themselves, and the original services are neither
+     * proxied nor hidden. Services whose class cannot be woven are still
+     * proxied.
+     */
+    public static final String ASPECIO_WEAVING_MODE = "aspecio.weaving.mode";
+
 }
@@ -51,4 +51,11 @@ public class InterceptedServiceDTO extends DTO {
 
 	/** The set of required aspects that are not satisfied for this service. */
 	public Set<String> unsatisfiedRequiredAspects;
+
+	/**
+	 * The time at which the service gets unregistered if its unsatisfied
+	 * required aspects do not return, in milliseconds since the epoch, or
+	 * {@code 0} if the service is not in a grace period.
+	 */
+	public long gracePeriodDeadline;
 }
\ No newline at end of file
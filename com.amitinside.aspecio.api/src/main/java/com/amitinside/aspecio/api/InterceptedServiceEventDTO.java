@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2021-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.api;
+
+import java.util.Set;
+
+import org.osgi.dto.DTO;
+
+/**
+ * The data transfer object describing a change of an intercepted service, as
+ * delivered to the {@link InterceptedServiceListener}s. It only carries what
+ * changed since the previous event of the same service, the full state being
+ * available from {@link Aspecio#getInterceptedServices()}.
+ *
+ * @NotThreadSafe
+ */
+public class InterceptedServiceEventDTO extends DTO {
+
+	/** The kinds of changes of intercepted services. */
+	public enum EventType {
+		/** The service became intercepted by Aspecio. */
+		ADDED,
+		/** The service got published or unpublished, or its aspects changed. */
+		MODIFIED,
+		/** The service is no longer intercepted by Aspecio. */
+		REMOVED,
+		/**
+		 * Events were dropped because the listener did not keep up with them, and
+		 * its view of the intercepted services must be read again from
+		 * {@link Aspecio#getInterceptedServices()}.
+		 */
+		OVERFLOW
+	}
+
+	/** The kind of change. */
+	public EventType type;
+
+	/** The unique identifier of the service, or {@code 0} for an overflow. */
+	public long serviceId;
+
+	/** The unique identifier of the bundle, or {@code 0} for an overflow. */
+	public long bundleId;
+
+	/** Indicates if the service is published after the change. */
+	public boolean published;
+
+	/** The aspects that got satisfied for this service. */
+	public Set<String> satisfiedAspectsAdded;
+
+	/** The aspects that are no longer satisfied for this service. */
+	public Set<String> satisfiedAspectsRemoved;
+
+	/** The required aspects that got unsatisfied for this service. */
+	public Set<String> unsatisfiedRequiredAspectsAdded;
+
+	/** The required aspects that are no longer unsatisfied for this service. */
+	public Set<String> unsatisfiedRequiredAspectsRemoved;
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2021-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.api;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * A listener of the changes of the services intercepted by Aspecio, added with
+ * {@link Aspecio#addInterceptedServiceListener(InterceptedServiceListener)}.
+ * <p>
+ * Events are delivered asynchronously, in order, and never concurrently to a
+ * given listener. Each listener has a bounded queue of pending events: once it
+ * is full, further events are dropped and coalesced into a single
+ * {@link InterceptedServiceEventDTO.EventType#OVERFLOW} event, so that a slow
+ * listener never holds up Aspecio.
+ */
+@ConsumerType
+@FunctionalInterface
+public interface InterceptedServiceListener {
+
+    /**
+     * Receives a change of an intercepted service.
+     *
+     * @param event the change, which must not be modified
+     */
+    void serviceChanged(InterceptedServiceEventDTO event);
+}
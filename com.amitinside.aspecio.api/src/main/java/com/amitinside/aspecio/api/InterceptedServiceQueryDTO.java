@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2021-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * The data transfer object describing the criteria to select
+ * {@link InterceptedServiceDTO}s with. Criteria left to {@code null} select
+ * all the services, and the selected services must match all the other ones.
+ * <p>
+ * Selected services are ordered by service ID, so that consecutive pages of a
+ * query do not overlap as long as Aspecio's state does not change.
+ *
+ * @NotThreadSafe
+ */
+public class InterceptedServiceQueryDTO extends DTO {
+
+	/**
+	 * An LDAP filter that the properties of the original service must match, or
+	 * {@code null}.
+	 */
+	public String filter;
+
+	/**
+	 * The name of an aspect that the service requires or optionally requests, or
+	 * {@code null}.
+	 */
+	public String aspect;
+
+	/** The unique identifier of the bundle providing the service, or {@code null}. */
+	public Long bundleId;
+
+	/**
+	 * {@code true} to select the services whose required aspects are all
+	 * satisfied, {@code false} to select the ones missing required aspects, or
+	 * {@code null}.
+	 */
+	public Boolean satisfied;
+
+	/**
+	 * A value that must be part of one of the object classes of the service, or
+	 * {@code null}.
+	 */
+	public String objectClassContains;
+
+	/** The number of selected services to skip. */
+	public int offset;
+
+	/**
+	 * The maximum number of services to return, or a value lower than or equal
+	 * to {@code 0} to return all the selected services.
+	 */
+	public int limit;
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2021-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.api;
+
+import java.lang.reflect.Method;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * An aspect service may implement this interface along with
+ * {@code io.primeval.reflex.proxy.Interceptor} to tell Aspecio which methods
+ * of the services it is woven into it intercepts.
+ * <p>
+ * Aspecio asks it once per method of each woven service and removes the aspect
+ * from the interceptor chain of the methods it does not match. Aspects
+ * implementing {@code io.primeval.reflex.proxy.annotation.AnnotationInterceptor}
+ * are matched automatically by the presence of their annotation.
+ */
+@ConsumerType
+@FunctionalInterface
+public interface MethodMatcher {
+
+    /**
+     * Tells whether the aspect intercepts a method of a woven service.
+     *
+     * @param targetClass the class of the woven service object
+     * @param method the intercepted method
+     * @return {@code true} if the aspect must be called for that method
+     */
+    boolean matches(Class<?> targetClass, Method method);
+}
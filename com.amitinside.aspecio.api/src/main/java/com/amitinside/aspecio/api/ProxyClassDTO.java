@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2021-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.api;
+
+import java.util.List;
+
+import org.osgi.dto.DTO;
+
+/**
+ * The data transfer object describing a proxy class generated by Aspecio.
+ *
+ * @NotThreadSafe
+ */
+public class ProxyClassDTO extends DTO {
+
+	/** The name of the woven implementation class. */
+	public String implementationClass;
+
+	/** The interfaces implemented by the proxy class, in order. */
+	public List<String> interfaces;
+
+	/** The time the proxy class was generated, in milliseconds since the epoch. */
+	public long generatedAt;
+
+	/** The time it took to generate the proxy class, in microseconds. */
+	public long generationMicros;
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright 2021-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.api;
+
+import java.util.List;
+
+import org.osgi.dto.DTO;
+
+/**
+ * The data transfer object describing a live class loader defining the proxy
+ * classes of Aspecio.
+ *
+ * @NotThreadSafe
+ */
+public class ProxyClassLoaderDTO extends DTO {
+
+	/** The identifier of the class loader, unique while Aspecio is active. */
+	public long id;
+
+	/** The name of the proxy engine which created the class loader. */
+	public String engine;
+
+	/** The identifiers of the bundles whose revisions the class loader bridges. */
+	public List<Long> bundleIds;
+
+	/** The time the class loader was created, in milliseconds since the epoch. */
+	public long createdAt;
+
+	/**
+	 * Indicates if one of the bundle revisions of the class loader is no longer
+	 * current, in which case the class loader should be released once its
+	 * proxies are no longer used.
+	 */
+	public boolean stale;
+
+	/** The proxy classes defined by the class loader. */
+	public List<ProxyClassDTO> proxyClasses;
+}
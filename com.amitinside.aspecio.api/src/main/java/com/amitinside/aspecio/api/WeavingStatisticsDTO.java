@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2021-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * The data transfer object describing the weaving statistics collected by
+ * Aspecio since it has been activated.
+ *
+ * @NotThreadSafe
+ */
+public class WeavingStatisticsDTO extends DTO {
+
+	/** The number of proxy instances created from an already generated proxy class. */
+	public long proxyClassCacheHits;
+
+	/** The number of proxy classes that had to be generated. */
+	public long proxyClassCacheMisses;
+
+	/** The number of bundles restarted to weave their already registered services. */
+	public long restartedBundles;
+
+	/** The total time spent restarting bundles, in milliseconds. */
+	public long restartDurationMillis;
+
+	/** The number of original services hidden from service lookups. */
+	public long hiddenServiceReferences;
+
+	/** The number of service events of original services hidden from listeners. */
+	public long hiddenServiceEvents;
+
+	/** The number of proxy class loaders created. */
+	public long createdProxyClassLoaders;
+
+	/** The number of proxy class loaders that have been garbage-collected. */
+	public long releasedProxyClassLoaders;
+
+	/** The number of proxy classes unloaded along with their class loader. */
+	public long releasedProxyClasses;
+
+	/**
+	 * The number of aspect changes absorbed by a pending re-evaluation of the
+	 * same woven service, when a coalescing window is set.
+	 */
+	public long coalescedAspectChanges;
+
+	/**
+	 * The number of woven services whose missing required aspects returned
+	 * within the grace period, sparing their unregistration.
+	 */
+	public long recoveredGracePeriods;
+
+	/**
+	 * The number of woven services unregistered at the end of their grace
+	 * period.
+	 */
+	public long expiredGracePeriods;
+
+	/**
+	 * The number of intercepted service events dropped because their listener
+	 * did not keep up with them.
+	 */
+	public long droppedServiceEvents;
+
+	/**
+	 * The number of times a bundle got a bundle-scoped woven service through a
+	 * proxy already pooled for another bundle.
+	 */
+	public long pooledProxyHits;
+
+	/**
+	 * The number of proxies created for bundles getting a bundle-scoped woven
+	 * service.
+	 */
+	public long pooledProxyMisses;
+
+	/**
+	 * The number of proxies of bundle-scoped woven services still used by at
+	 * least one bundle.
+	 */
+	public long livePooledProxies;
+
+	/**
+	 * The number of services already registered when Aspecio started that were
+	 * woven without restarting their bundle.
+	 */
+	public long inPlaceWovenServices;
+
+	/**
+	 * The number of bundles that were already using a service woven in place,
+	 * counted once per service, and keep calling it without its aspects until
+	 * they get the service again.
+	 */
+	public long staleServiceConsumers;
+
+	/**
+	 * The number of component classes rewritten in bytecode mode to call their
+	 * aspects themselves.
+	 */
+	public long bytecodeWovenClasses;
+}
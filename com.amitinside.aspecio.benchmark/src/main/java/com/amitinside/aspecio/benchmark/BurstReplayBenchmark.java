@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.benchmark;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amitinside.aspecio.util.EventCoalescer;
+
+/**
+ * Replays bursts of aspect changes over the woven services requesting the
+ * aspect, as when an aspect bundle flaps during a rolling update.
+ * <p>
+ * Each burst toggles the availability of the aspect a given number of times,
+ * an odd one so that the aspect ends up changed. The
+ * {@literal "uncoalesced"} mode re-evaluates every service on every change,
+ * while the {@literal "coalesced"} mode submits the changes to the
+ * {@link EventCoalescer} used by Aspecio, with a one millisecond window. A
+ * re-evaluation finding the aspect in another state than the registration of
+ * the service registers or unregisters it, at a simulated cost. Besides the
+ * time of a burst, the {@literal "reevaluations"} and
+ * {@literal "registrations"} counters report the work done by all the bursts of
+ * an iteration: uncoalesced, each burst re-evaluates and churns every service
+ * once per change, while coalesced, it does so about once per service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BurstReplayBenchmark {
+
+	private static final long WINDOW_MILLIS = 1;
+
+	// the cost of a service registration or unregistration, in JMH tokens
+	private static final long REGISTRATION_TOKENS = 2_000;
+
+	@Param({ "uncoalesced", "coalesced" })
+	public String mode;
+
+	@Param({ "10", "100" })
+	public int services;
+
+	@Param({ "1", "9", "49" })
+	public int burst;
+
+	private EventCoalescer<Integer> coalescer;
+	private AtomicIntegerArray registered;
+	private volatile boolean aspectAvailable;
+
+	private final AtomicInteger reevaluations = new AtomicInteger();
+	private final AtomicInteger registrations = new AtomicInteger();
+	private final AtomicInteger completedWindows = new AtomicInteger();
+
+	/**
+	 * Work done by the bursts of an iteration, reported along with their time.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Churn {
+		public long reevaluations;
+		public long registrations;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			reevaluations = 0;
+			registrations = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		registered = new AtomicIntegerArray(services);
+		aspectAvailable = false;
+		if ("coalesced".equals(mode)) {
+			coalescer = new EventCoalescer<>("Burst replay", WINDOW_MILLIS, service -> {
+				reevaluate(service);
+				completedWindows.incrementAndGet();
+			});
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (coalescer != null) {
+			coalescer.close();
+		}
+	}
+
+	@Benchmark
+	public void replayBurst(final Churn churn) throws InterruptedException {
+		reevaluations.set(0);
+		registrations.set(0);
+		completedWindows.set(0);
+		int openedWindows = 0;
+		for (int change = 0; change < burst; change++) {
+			aspectAvailable = !aspectAvailable;
+			for (int service = 0; service < services; service++) {
+				if (coalescer == null) {
+					reevaluate(service);
+				} else if (coalescer.submit(service)) {
+					openedWindows++;
+				}
+			}
+		}
+		// the burst is over once all the windows it opened have run
+		while (completedWindows.get() < openedWindows) {
+			Thread.sleep(0, 100_000);
+		}
+		churn.reevaluations += reevaluations.get();
+		churn.registrations += registrations.get();
+	}
+
+	private void reevaluate(final int service) {
+		reevaluations.incrementAndGet();
+		final int expected = aspectAvailable ? 1 : 0;
+		if (registered.getAndSet(service, expected) != expected) {
+			registrations.incrementAndGet();
+			Blackhole.consumeCPU(REGISTRATION_TOKENS);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.benchmark;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amitinside.aspecio.service.FusedChainGenerator;
+
+import io.primeval.reflex.proxy.CallContext;
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.Interceptors;
+import io.primeval.reflex.proxy.bytecode.Proxy;
+import io.primeval.reflex.proxy.bytecode.ProxyBuilder;
+import io.primeval.reflex.proxy.bytecode.ProxyClass;
+import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
+import io.primeval.reflex.proxy.handler.IntInterceptionHandler;
+import io.primeval.reflex.proxy.handler.InterceptionHandler;
+
+/**
+ * Compares the calls to a proxy through a chain of interceptors stacked by
+ * {@link Interceptors#stack} with the same calls through a chain generated by
+ * {@link FusedChainGenerator}.
+ * <p>
+ * Before measuring, the proxy is called through chains of the same
+ * interceptors in other orders, as happens when several services are woven
+ * with different aspects, so that the shared call sites of the stacks see all
+ * the interceptor types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InterceptorChainBenchmark {
+
+	@Param({ "2", "3", "4" })
+	public int aspects;
+
+	@Param({ "stack", "fused" })
+	public String chain;
+
+	private Greeter greeter;
+
+	@Setup
+	public void setup() {
+		final List<Interceptor> interceptors = new ArrayList<>();
+		interceptors.add(new Counting());
+		interceptors.add(new Timing());
+		interceptors.add(new Validating());
+		interceptors.add(new Tracing());
+
+		final FusedChainGenerator generator = new FusedChainGenerator();
+		final ProxyClass<SimpleGreeter> proxyClass = ProxyBuilder.build(
+				new ProxyClassLoader(SimpleGreeter.class.getClassLoader()), SimpleGreeter.class,
+				new Class<?>[] { Greeter.class });
+		for (int order = 1; order < interceptors.size(); order++) {
+			Collections.rotate(interceptors, 1);
+			final Greeter other = newGreeter(proxyClass, newChain(generator, interceptors));
+			for (int i = 0; i < 20_000; i++) {
+				other.greet("warm-up");
+				other.length("warm-up");
+			}
+		}
+		Collections.rotate(interceptors, 1);
+		greeter = newGreeter(proxyClass, newChain(generator, interceptors.subList(0, aspects)));
+	}
+
+	private Interceptor newChain(final FusedChainGenerator generator, final List<Interceptor> interceptors) {
+		return "fused".equals(chain) ? generator.generate(interceptors) : Interceptors.stack(interceptors.iterator());
+	}
+
+	private static Greeter newGreeter(final ProxyClass<SimpleGreeter> proxyClass, final Interceptor interceptor) {
+		final Proxy proxy = proxyClass.newInstance(new SimpleGreeter());
+		proxy.setInterceptor(interceptor);
+		return (Greeter) proxy;
+	}
+
+	@Benchmark
+	public String greet() {
+		return greeter.greet("world");
+	}
+
+	@Benchmark
+	public int length() {
+		return greeter.length("world");
+	}
+
+	public interface Greeter {
+
+		String greet(String name);
+
+		int length(String name);
+	}
+
+	public static final class SimpleGreeter implements Greeter {
+
+		@Override
+		public String greet(final String name) {
+			return "Hello " + name;
+		}
+
+		@Override
+		public int length(final String name) {
+			return name.length();
+		}
+	}
+
+	// Interceptors doing a little work of their own, each of its own type
+
+	static final class Counting implements Interceptor {
+
+		long calls;
+
+		@Override
+		public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+				throws E {
+			calls++;
+			return handler.invoke();
+		}
+
+		@Override
+		public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+				throws E {
+			calls++;
+			return handler.invoke();
+		}
+	}
+
+	static final class Timing implements Interceptor {
+
+		long elapsed;
+
+		@Override
+		public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+				throws E {
+			final long start = System.nanoTime();
+			try {
+				return handler.invoke();
+			} finally {
+				elapsed += System.nanoTime() - start;
+			}
+		}
+
+		@Override
+		public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+				throws E {
+			final long start = System.nanoTime();
+			try {
+				return handler.invoke();
+			} finally {
+				elapsed += System.nanoTime() - start;
+			}
+		}
+	}
+
+	static final class Validating implements Interceptor {
+
+		@Override
+		public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+				throws E {
+			final T result = handler.invoke();
+			if (result == null) {
+				throw new IllegalStateException("No result");
+			}
+			return result;
+		}
+
+		@Override
+		public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+				throws E {
+			final int result = handler.invoke();
+			if (result < 0) {
+				throw new IllegalStateException("Negative result");
+			}
+			return result;
+		}
+	}
+
+	static final class Tracing implements Interceptor {
+
+		int depth;
+
+		@Override
+		public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+				throws E {
+			depth++;
+			try {
+				return handler.invoke();
+			} finally {
+				depth--;
+			}
+		}
+
+		@Override
+		public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+				throws E {
+			depth++;
+			try {
+				return handler.invoke();
+			} finally {
+				depth--;
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.benchmark;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amitinside.aspecio.benchmark.InterceptorChainBenchmark.Greeter;
+import com.amitinside.aspecio.benchmark.InterceptorChainBenchmark.SimpleGreeter;
+import com.amitinside.aspecio.service.DirectDelegation;
+
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.bytecode.Proxy;
+import io.primeval.reflex.proxy.bytecode.ProxyBuilder;
+import io.primeval.reflex.proxy.bytecode.ProxyClass;
+import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
+
+/**
+ * Compares the calls to a woven service without any satisfied aspect with the
+ * calls to the service itself, the {@literal "plain"} baseline.
+ * <p>
+ * The {@literal "proxy"} mode calls a Reflex proxy bound to the no-op
+ * interceptor, which still builds its call context, while the
+ * {@literal "direct"} mode calls the same proxy wrapped by
+ * {@link DirectDelegation}, as registered by Aspecio, which should be on par
+ * with the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PassThroughBenchmark {
+
+	@Param({ "plain", "proxy", "direct" })
+	public String mode;
+
+	private Greeter greeter;
+
+	@Setup
+	public void setup() {
+		final SimpleGreeter service = new SimpleGreeter();
+		if ("plain".equals(mode)) {
+			greeter = service;
+			return;
+		}
+		final ProxyClass<SimpleGreeter> proxyClass = ProxyBuilder.build(
+				new ProxyClassLoader(SimpleGreeter.class.getClassLoader()), SimpleGreeter.class,
+				new Class<?>[] { Greeter.class });
+		Proxy proxy = proxyClass.newInstance(service);
+		if ("direct".equals(mode)) {
+			proxy = DirectDelegation.wrap(proxy, service);
+		}
+		proxy.setInterceptor(Interceptor.DEFAULT);
+		greeter = (Greeter) proxy;
+	}
+
+	@Benchmark
+	public String greet() {
+		return greeter.greet("world");
+	}
+
+	@Benchmark
+	public int length() {
+		return greeter.length("world");
+	}
+}
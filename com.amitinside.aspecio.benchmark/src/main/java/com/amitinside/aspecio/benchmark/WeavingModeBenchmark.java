@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.benchmark;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amitinside.aspecio.benchmark.InterceptorChainBenchmark.Counting;
+import com.amitinside.aspecio.benchmark.InterceptorChainBenchmark.Greeter;
+import com.amitinside.aspecio.benchmark.InterceptorChainBenchmark.Timing;
+import com.amitinside.aspecio.service.AspecioServiceObject;
+import com.amitinside.aspecio.service.BytecodeWeaver;
+import com.amitinside.aspecio.service.ClassBinding;
+import com.amitinside.aspecio.service.ServiceScope;
+import com.amitinside.aspecio.service.WeavingStatistics;
+
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.Interceptors;
+import io.primeval.reflex.proxy.bytecode.Proxy;
+import io.primeval.reflex.proxy.bytecode.ProxyBuilder;
+import io.primeval.reflex.proxy.bytecode.ProxyClass;
+import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
+
+/**
+ * Compares the calls to a service woven through a registered proxy, as in the
+ * default weaving mode, with the calls to a service whose class is woven in
+ * bytecode mode, both with the same two aspects. The {@literal "direct"} mode
+ * calls the service without aspect, as a baseline.
+ * <p>
+ * Both woven modes go through the same Reflex proxy class and interceptor
+ * chain, the bytecode mode reaching them from the service class itself rather
+ * than from a proxy obtained from the service registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WeavingModeBenchmark {
+
+	@Param({ "direct", "proxy", "bytecode" })
+	public String mode;
+
+	private Greeter greeter;
+
+	@Setup
+	public void setup() throws Exception {
+		final Interceptor chain = Interceptors.stack(asList(new Counting(), new Timing()).iterator());
+		switch (mode) {
+		case "proxy":
+			final ProxyClass<SimpleGreeter> proxyClass = ProxyBuilder.build(
+					new ProxyClassLoader(SimpleGreeter.class.getClassLoader()), SimpleGreeter.class,
+					new Class<?>[] { Greeter.class });
+			final Proxy proxy = proxyClass.newInstance(new SimpleGreeter());
+			proxy.setInterceptor(chain);
+			greeter = (Greeter) proxy;
+			break;
+		case "bytecode":
+			greeter = newWovenGreeter(chain);
+			break;
+		default:
+			greeter = new SimpleGreeter();
+			break;
+		}
+	}
+
+	private static Greeter newWovenGreeter(final Interceptor chain) throws Exception {
+		final byte[] bytes = BytecodeWeaver.weave(bytesOf(SimpleGreeter.class),
+				BytecodeWeaver.serviceMethods(asList(Greeter.class)));
+		final Class<?> wovenClass = new WovenClassLoader(SimpleGreeter.class.getName(), bytes)
+				.loadClass(SimpleGreeter.class.getName());
+		final ProxyClass<?> proxyClass = ProxyBuilder.build(new ProxyClassLoader(wovenClass.getClassLoader()),
+				wovenClass, new Class<?>[] { Greeter.class });
+		final AspecioServiceObject service = new AspecioServiceObject(ServiceScope.SINGLETON, null,
+				proxyClass::newInstance, new WeavingStatistics());
+		service.setInterceptor(chain);
+		final ClassBinding binding = new ClassBinding(wovenClass.getName());
+		binding.classDefined(wovenClass);
+		binding.bind(service);
+		return (Greeter) wovenClass.getConstructor().newInstance();
+	}
+
+	@Benchmark
+	public String greet() {
+		return greeter.greet("world");
+	}
+
+	@Benchmark
+	public int length() {
+		return greeter.length("world");
+	}
+
+	public static final class SimpleGreeter implements Greeter {
+
+		@Override
+		public String greet(final String name) {
+			return "Hello " + name;
+		}
+
+		@Override
+		public int length(final String name) {
+			return name.length();
+		}
+	}
+
+	private static byte[] bytesOf(final Class<?> type) throws IOException {
+		final String resource = type.getName().substring(type.getName().lastIndexOf('.') + 1) + ".class";
+		try (InputStream in = type.getResourceAsStream(resource)) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	// defines the woven class, as the weaving hook would for its bundle
+	private static final class WovenClassLoader extends ClassLoader {
+
+		private final String className;
+		private final byte[] bytes;
+
+		WovenClassLoader(final String className, final byte[] bytes) {
+			super(WeavingModeBenchmark.class.getClassLoader());
+			this.className = className;
+			this.bytes = bytes;
+		}
+
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+			if (!name.equals(className)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> cls = findLoadedClass(name);
+				if (cls == null) {
+					cls = defineClass(name, bytes, 0, bytes.length);
+				}
+				return cls;
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.bnd;
+
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_WEAVE_HEADER;
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_ENGINE;
+import static java.util.stream.Collectors.joining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import aQute.bnd.osgi.Analyzer;
+import aQute.bnd.osgi.Annotation;
+import aQute.bnd.osgi.Annotation.ElementType;
+import aQute.bnd.osgi.ClassDataCollector;
+import aQute.bnd.osgi.Clazz;
+import aQute.bnd.osgi.Descriptors.TypeRef;
+import aQute.bnd.service.AnalyzerPlugin;
+
+/**
+ * bnd analyzer plugin generating the {@value com.amitinside.aspecio.api.AspecioConstants#ASPECIO_WEAVE_HEADER}
+ * manifest header for all Declarative Services components annotated with
+ * {@code @Weave}.
+ * <p>
+ * Each clause names the component implementation class and carries the
+ * {@code objectClass} attribute with the service interfaces the component is
+ * registered with, in registration order, and the {@code engine} attribute
+ * with the proxy engine the component selects through its
+ * {@value com.amitinside.aspecio.api.AspecioConstants#SERVICE_ASPECT_WEAVE_ENGINE}
+ * property, if any, so that Aspecio can prepare the proxy classes of the bundle
+ * before its services are registered.
+ * <p>
+ * Usage in {@code bnd.bnd}:
+ *
+ * <pre>
+ * -pluginpath: ${workspace}/com.amitinside.aspecio.bnd/generated/com.amitinside.aspecio.bnd.jar
+ * -plugin.aspecio: com.amitinside.aspecio.bnd.WeaveCandidatesPlugin
+ * </pre>
+ */
+public final class WeaveCandidatesPlugin implements AnalyzerPlugin {
+
+	private static final String WEAVE_ANNOTATION = "com.amitinside.aspecio.annotations.api.Weave";
+	private static final String COMPONENT_ANNOTATION = "org.osgi.service.component.annotations.Component";
+
+	@Override
+	public boolean analyzeJar(final Analyzer analyzer) throws Exception {
+		// sorted to keep the generated header stable across builds
+		final Map<String, String> candidates = new TreeMap<>();
+		for (final Clazz clazz : analyzer.getClassspace().values()) {
+			if (clazz.isInterface() || clazz.isAbstract()) {
+				continue;
+			}
+			final WeaveCollector collector = new WeaveCollector();
+			clazz.parseClassFileWithCollector(collector);
+			if (!collector.weave || !collector.component) {
+				continue;
+			}
+			final List<String> objectClass = collector.getObjectClass();
+			if (objectClass.isEmpty()) {
+				analyzer.warning("Aspecio: component %s cannot be woven as it does not provide any service interface",
+						clazz.getFQN());
+				continue;
+			}
+			final String engine = collector.engine;
+			candidates.put(clazz.getFQN(), "objectClass=\"" + String.join(",", objectClass) + "\""
+					+ (engine == null ? "" : ";engine=\"" + engine + "\""));
+		}
+		if (candidates.isEmpty()) {
+			return false;
+		}
+		final String header = candidates.entrySet().stream()
+				.map(e -> e.getKey() + ";" + e.getValue())
+				.collect(joining(","));
+
+		final String existing = analyzer.getProperty(ASPECIO_WEAVE_HEADER);
+		analyzer.setProperty(ASPECIO_WEAVE_HEADER, existing == null ? header : existing + "," + header);
+		return false;
+	}
+
+	private static final class WeaveCollector extends ClassDataCollector {
+
+		boolean weave;
+		boolean component;
+		String engine;
+		private List<TypeRef> interfaces = new ArrayList<>();
+		private List<TypeRef> services;
+
+		@Override
+		public void implementsInterfaces(final TypeRef[] interfaces) {
+			if (interfaces != null) {
+				this.interfaces = Arrays.asList(interfaces);
+			}
+		}
+
+		@Override
+		public void annotation(final Annotation annotation) {
+			if (annotation.elementType() != ElementType.TYPE) {
+				return;
+			}
+			switch (annotation.getName().getFQN()) {
+			case WEAVE_ANNOTATION:
+				weave = true;
+				break;
+			case COMPONENT_ANNOTATION:
+				component = true;
+				final Object[] properties = annotation.get("property");
+				if (properties != null) {
+					for (final Object property : properties) {
+						final String value = propertyValue((String) property, SERVICE_ASPECT_WEAVE_ENGINE);
+						if (value != null) {
+							engine = value;
+						}
+					}
+				}
+				final Object[] service = annotation.get("service");
+				if (service != null) {
+					services = new ArrayList<>();
+					for (final Object s : service) {
+						services.add((TypeRef) s);
+					}
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		// properties are of the form name[:type]=value
+		private static String propertyValue(final String property, final String name) {
+			final int eq = property.indexOf('=');
+			if (eq < 0) {
+				return null;
+			}
+			final String key = property.substring(0, eq);
+			final int colon = key.indexOf(':');
+			final String propertyName = (colon < 0 ? key : key.substring(0, colon)).trim();
+			return name.equals(propertyName) ? property.substring(eq + 1).trim() : null;
+		}
+
+		// Declarative Services registers the directly implemented interfaces unless
+		// the component explicitly lists its services
+		List<String> getObjectClass() {
+			final List<String> objectClass = new ArrayList<>();
+			for (final TypeRef typeRef : services != null ? services : interfaces) {
+				objectClass.add(typeRef.getFQN());
+			}
+			return objectClass;
+		}
+	}
+
+}
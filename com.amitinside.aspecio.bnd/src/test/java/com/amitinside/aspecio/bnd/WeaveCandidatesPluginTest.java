@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.bnd;
+
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_WEAVE_HEADER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.osgi.service.component.annotations.Component;
+
+import com.amitinside.aspecio.annotations.api.Weave;
+
+import aQute.bnd.osgi.Builder;
+import aQute.bnd.osgi.EmbeddedResource;
+import aQute.bnd.osgi.Jar;
+import aQute.lib.io.IO;
+
+public final class WeaveCandidatesPluginTest {
+
+	@Test
+	public void recordsWovenComponents() throws Exception {
+		final String header = build(WovenComponent.class, ExplicitServiceComponent.class, PlainComponent.class,
+				WovenNonComponent.class);
+
+		assertThat(header).isEqualTo(ExplicitServiceComponent.class.getName() + ";objectClass=\""
+				+ Runnable.class.getName() + "\"," + WovenComponent.class.getName() + ";objectClass=\""
+				+ Runnable.class.getName() + "," + Callable.class.getName() + "\"");
+	}
+
+	@Test
+	public void recordsTheProxyEngineOfComponents() throws Exception {
+		assertThat(build(HostEngineComponent.class)).isEqualTo(
+				HostEngineComponent.class.getName() + ";objectClass=\"" + Runnable.class.getName() + "\";engine=\"host\"");
+	}
+
+	@Test
+	public void skipsBundlesWithoutWovenComponents() throws Exception {
+		assertThat(build(PlainComponent.class)).isNull();
+	}
+
+	private static String build(final Class<?>... classes) throws Exception {
+		try (Builder builder = new Builder(); Jar classpath = new Jar("fixtures")) {
+			for (final Class<?> cls : classes) {
+				final String path = cls.getName().replace('.', '/') + ".class";
+				classpath.putResource(path, new EmbeddedResource(IO.read(cls.getResource("/" + path)), 0));
+			}
+			builder.addClasspath(classpath);
+			builder.setProperty("-includepackage", WeaveCandidatesPluginTest.class.getPackage().getName());
+			builder.addBasicPlugin(new WeaveCandidatesPlugin());
+			try (Jar jar = builder.build()) {
+				assertThat(builder.getErrors()).isEmpty();
+				return jar.getManifest().getMainAttributes().getValue(ASPECIO_WEAVE_HEADER);
+			}
+		}
+	}
+
+	@Weave(required = Runnable.class)
+	@Component
+	public static final class WovenComponent implements Runnable, Callable<Object> {
+
+		@Override
+		public void run() {
+			// no-op
+		}
+
+		@Override
+		public Object call() {
+			return null;
+		}
+	}
+
+	@Weave(optional = Runnable.class)
+	@Component(service = Runnable.class)
+	public static final class ExplicitServiceComponent implements Runnable, Callable<Object> {
+
+		@Override
+		public void run() {
+			// no-op
+		}
+
+		@Override
+		public Object call() {
+			return null;
+		}
+	}
+
+	@Weave(required = Runnable.class)
+	@Component(property = "service.aspect.weave.engine:String=host")
+	public static final class HostEngineComponent implements Runnable {
+
+		@Override
+		public void run() {
+			// no-op
+		}
+	}
+
+	@Component
+	public static final class PlainComponent implements Runnable {
+
+		@Override
+		public void run() {
+			// no-op
+		}
+	}
+
+	@Weave(required = Runnable.class)
+	public static final class WovenNonComponent implements Runnable {
+
+		@Override
+		public void run() {
+			// no-op
+		}
+	}
+}
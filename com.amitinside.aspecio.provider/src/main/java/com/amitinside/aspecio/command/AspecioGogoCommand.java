@@ -22,7 +22,11 @@ import org.osgi.framework.BundleContext;
 import com.amitinside.aspecio.api.Aspecio;
 import com.amitinside.aspecio.api.AspectDTO;
 import com.amitinside.aspecio.api.InterceptedServiceDTO;
+import com.amitinside.aspecio.api.InterceptedServiceQueryDTO;
 import com.amitinside.aspecio.api.InterceptorDTO;
+import com.amitinside.aspecio.api.ProxyClassDTO;
+import com.amitinside.aspecio.api.ProxyClassLoaderDTO;
+import com.amitinside.aspecio.api.WeavingStatisticsDTO;
 
 public final class AspecioGogoCommand {
 
@@ -71,18 +75,55 @@ public final class AspecioGogoCommand {
     // Gogo command "aspecio:woven"
     public String woven() {
         final List<InterceptedServiceDTO> interceptedServices = aspecio.getInterceptedServices();
-        return printWoven(interceptedServices);
+        return printWoven(interceptedServices, 0);
     }
 
-    public String woven(final String objectClass) {
-        final List<InterceptedServiceDTO> interceptedServices = aspecio.getInterceptedServices(objectClass);
-        return printWoven(interceptedServices);
+    // Criteria are of the form key=value, with the keys aspect, bundle, satisfied,
+    // filter, offset and limit, while criteria without key select the services
+    // with an object class containing them
+    public String woven(final String... criteria) {
+        final InterceptedServiceQueryDTO query = new InterceptedServiceQueryDTO();
+        for (final String criterion : criteria) {
+            final int eq = criterion.indexOf('=');
+            final String key = eq < 0 ? "" : criterion.substring(0, eq);
+            final String value = criterion.substring(eq + 1);
+            switch (key) {
+            case "aspect":
+                query.aspect = value;
+                break;
+            case "bundle":
+                query.bundleId = Long.valueOf(value);
+                break;
+            case "satisfied":
+                query.satisfied = Boolean.valueOf(value);
+                break;
+            case "filter":
+                query.filter = value;
+                break;
+            case "offset":
+                query.offset = Integer.parseInt(value);
+                break;
+            case "limit":
+                query.limit = Integer.parseInt(value);
+                break;
+            default:
+                query.objectClassContains = criterion;
+                break;
+            }
+        }
+        final List<InterceptedServiceDTO> interceptedServices = aspecio.queryInterceptedServices(query);
+        final String output = printWoven(interceptedServices, Math.max(0, query.offset));
+        if (query.offset <= 0 && query.limit <= 0) {
+            return output;
+        }
+        return output + "Showing " + interceptedServices.size() + " of " + aspecio.countInterceptedServices(query)
+                + " services\n";
     }
 
-    private String printWoven(final List<InterceptedServiceDTO> interceptedServices) {
+    private String printWoven(final List<InterceptedServiceDTO> interceptedServices, final int offset) {
         StringBuilder output = new StringBuilder();
-        int i = 0;
-        final int shiftSize = 4 + interceptedServices.size() / 10;
+        int i = offset;
+        final int shiftSize = 4 + (offset + interceptedServices.size()) / 10;
         final String shift = String.format("%" + shiftSize + "s", "");
         for (final InterceptedServiceDTO mws : interceptedServices) {
             output.append("[").append(i).append("] Service ID: ").append(mws.serviceId)
@@ -97,6 +138,10 @@ public final class AspecioGogoCommand {
             output.append(shift).append("Satisfied: ").append(satisfied).append("\n");
             if (!satisfied) {
                 output.append(shift).append("Missing Required Aspects: ").append(mws.unsatisfiedRequiredAspects).append("\n");
+            } else if (mws.gracePeriodDeadline > 0) {
+                output.append(shift).append("Missing Required Aspects: ").append(mws.unsatisfiedRequiredAspects)
+                      .append(", in grace period for ")
+                      .append(Math.max(0, mws.gracePeriodDeadline - System.currentTimeMillis())).append(" ms\n");
             } else {
                 output.append(shift).append("Active Aspects: ").append(mws.satisfiedAspects).append("\n");
             }
@@ -105,4 +150,56 @@ public final class AspecioGogoCommand {
         }
         return output.toString();
     }
-}
\ No newline at end of file
+
+    // Gogo command "aspecio:stats"
+    public String stats() {
+        final WeavingStatisticsDTO statistics = aspecio.getWeavingStatistics();
+        StringBuilder output = new StringBuilder();
+        output.append("Proxy class cache hits: ").append(statistics.proxyClassCacheHits).append("\n");
+        output.append("Proxy class cache misses: ").append(statistics.proxyClassCacheMisses).append("\n");
+        output.append("Restarted bundles: ").append(statistics.restartedBundles).append("\n");
+        output.append("Restart duration: ").append(statistics.restartDurationMillis).append(" ms\n");
+        output.append("Hidden service references: ").append(statistics.hiddenServiceReferences).append("\n");
+        output.append("Hidden service events: ").append(statistics.hiddenServiceEvents).append("\n");
+        output.append("Proxy class loaders created: ").append(statistics.createdProxyClassLoaders).append("\n");
+        output.append("Proxy class loaders released: ").append(statistics.releasedProxyClassLoaders)
+              .append(" (").append(statistics.releasedProxyClasses).append(" proxy classes)\n");
+        output.append("Coalesced aspect changes: ").append(statistics.coalescedAspectChanges).append("\n");
+        output.append("Grace periods recovered: ").append(statistics.recoveredGracePeriods)
+              .append(", expired: ").append(statistics.expiredGracePeriods).append("\n");
+        output.append("Dropped service events: ").append(statistics.droppedServiceEvents).append("\n");
+        final long pooledProxyRequests = statistics.pooledProxyHits + statistics.pooledProxyMisses;
+        output.append("Pooled proxies: ").append(statistics.livePooledProxies).append(" live, hit rate ")
+              .append(pooledProxyRequests == 0 ? 0 : 100 * statistics.pooledProxyHits / pooledProxyRequests)
+              .append("%\n");
+        output.append("Services woven in place: ").append(statistics.inPlaceWovenServices)
+              .append(", stale consumers: ").append(statistics.staleServiceConsumers).append("\n");
+        output.append("Classes woven in bytecode: ").append(statistics.bytecodeWovenClasses).append("\n");
+        return output.toString();
+    }
+
+    // Gogo command "aspecio:proxies"
+    public String proxies() {
+        final List<ProxyClassLoaderDTO> classLoaders = aspecio.getProxyClassLoaders();
+        StringBuilder output = new StringBuilder();
+        int liveClasses = 0;
+        int staleLoaders = 0;
+        for (final ProxyClassLoaderDTO classLoader : classLoaders) {
+            output.append("[").append(classLoader.id).append("] ").append(classLoader.engine)
+                  .append(" class loader for bundles ").append(classLoader.bundleIds)
+                  .append(classLoader.stale ? " --- STALE, not released yet ---" : "").append("\n");
+            for (final ProxyClassDTO proxyClass : classLoader.proxyClasses) {
+                output.append("    ").append(proxyClass.implementationClass).append(" ")
+                      .append(proxyClass.interfaces).append(", generated in ")
+                      .append(proxyClass.generationMicros).append(" µs\n");
+            }
+            liveClasses += classLoader.proxyClasses.size();
+            if (classLoader.stale) {
+                staleLoaders++;
+            }
+        }
+        output.append("Live proxy class loaders: ").append(classLoaders.size()).append(" (").append(staleLoaders)
+              .append(" stale), live proxy classes: ").append(liveClasses).append("\n");
+        return output.toString();
+    }
+}
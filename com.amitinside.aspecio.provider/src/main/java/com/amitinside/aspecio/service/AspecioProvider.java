@@ -15,8 +15,11 @@
  ******************************************************************************/
 package com.amitinside.aspecio.service;
 
-import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE;
-import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_OPTIONAL;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_COALESCING_WINDOW;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_EVENT_QUEUE_SIZE;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_GRACE_PERIOD;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_GRACE_POLICY;
+import static com.amitinside.aspecio.util.AspecioUtil.getIntProperty;
 import static org.osgi.namespace.service.ServiceNamespace.SERVICE_NAMESPACE;
 
 import java.util.Collection;
@@ -40,6 +43,10 @@ import org.slf4j.LoggerFactory;
 import com.amitinside.aspecio.api.Aspecio;
 import com.amitinside.aspecio.api.AspectDTO;
 import com.amitinside.aspecio.api.InterceptedServiceDTO;
+import com.amitinside.aspecio.api.InterceptedServiceListener;
+import com.amitinside.aspecio.api.InterceptedServiceQueryDTO;
+import com.amitinside.aspecio.api.ProxyClassLoaderDTO;
+import com.amitinside.aspecio.api.WeavingStatisticsDTO;
 import com.amitinside.aspecio.util.Exceptions;
 
 @Capability(namespace = SERVICE_NAMESPACE, attribute = "objectClass:List<String>=com.amitinside.aspecio.api.Aspecio")
@@ -49,6 +56,7 @@ public final class AspecioProvider implements Aspecio, FindHook, EventListenerHo
 
     private final long bundleId;
     private final ServiceWeavingManager serviceWeavingManager;
+    private final CandidateServiceIndex candidateServices;
     private final AspectInterceptorManager aspectInterceptorManager;
     private final AspecioServiceController aspecioServiceController;
 
@@ -57,7 +65,13 @@ public final class AspecioProvider implements Aspecio, FindHook, EventListenerHo
 
         aspectInterceptorManager = new AspectInterceptorManager(bundleContext);
         serviceWeavingManager = new ServiceWeavingManager(bundleContext);
-        aspecioServiceController = new AspecioServiceController(aspectInterceptorManager, serviceWeavingManager);
+        candidateServices = serviceWeavingManager.getCandidateServices();
+        aspecioServiceController = new AspecioServiceController(aspectInterceptorManager, serviceWeavingManager,
+                getIntProperty(bundleContext, ASPECIO_COALESCING_WINDOW, 0),
+                getIntProperty(bundleContext, ASPECIO_GRACE_PERIOD, 0),
+                GracePeriodPolicy.fromString(bundleContext.getProperty(ASPECIO_GRACE_POLICY)),
+                getIntProperty(bundleContext, ASPECIO_EVENT_QUEUE_SIZE,
+                        InterceptedServiceEventDispatcher.DEFAULT_QUEUE_SIZE));
     }
 
     public void activate() {
@@ -77,14 +91,19 @@ public final class AspecioProvider implements Aspecio, FindHook, EventListenerHo
 
     @Override
     public void event(final ServiceEvent event, final Map<BundleContext, Collection<ListenerInfo>> listeners) {
-        // Is it an event we want to filter out?
+        // Is it an event we want to filter out? Hooks run before the weaving
+        // manager's listener, so only the properties tell whether a service being
+        // registered or modified requests weaving, while other events only need
+        // a look-up in the candidate index
         final ServiceReference<?> ref = event.getServiceReference();
-        final Object weaveProperty = ref.getProperty(SERVICE_ASPECT_WEAVE);
-        final Object optionalWeaveProperty = ref.getProperty(SERVICE_ASPECT_WEAVE_OPTIONAL);
-
-        if (weaveProperty == null && optionalWeaveProperty == null) {
+        final int type = event.getType();
+        final boolean candidate = type == ServiceEvent.REGISTERED || type == ServiceEvent.MODIFIED
+                ? candidateServices.update(ref)
+                : candidateServices.contains(ref);
+        if (!candidate) {
             return;
         }
+        int hidden = 0;
         final Iterator<BundleContext> iterator = listeners.keySet().iterator();
         while (iterator.hasNext()) {
             final BundleContext consumingBundleContext = iterator.next();
@@ -94,6 +113,10 @@ public final class AspecioProvider implements Aspecio, FindHook, EventListenerHo
                 continue; // allow self and system bundle
             }
             iterator.remove();
+            hidden++;
+        }
+        if (hidden > 0) {
+            serviceWeavingManager.getStatistics().serviceEventsHidden(hidden);
         }
     }
 
@@ -101,19 +124,19 @@ public final class AspecioProvider implements Aspecio, FindHook, EventListenerHo
     public void find(final BundleContext context, final String name, final String filter, final boolean allServices,
             final Collection<ServiceReference<?>> references) {
         final long consumingBundleId = context.getBundle().getBundleId();
-        if (consumingBundleId == bundleId || consumingBundleId == 0) {
+        if (consumingBundleId == bundleId || consumingBundleId == 0 || candidateServices.isEmpty()) {
             return; // allow self and system bundle
         }
+        int hidden = 0;
         final Iterator<ServiceReference<?>> iterator = references.iterator();
         while (iterator.hasNext()) {
-            final ServiceReference<?> reference = iterator.next();
-            final Object weaveProperty = reference.getProperty(SERVICE_ASPECT_WEAVE);
-            final Object optionalWeaveProperty = reference.getProperty(SERVICE_ASPECT_WEAVE_OPTIONAL);
-
-            if (weaveProperty == null && optionalWeaveProperty == null) {
-                continue;
+            if (candidateServices.contains(iterator.next())) {
+                iterator.remove();
+                hidden++;
             }
-            iterator.remove();
+        }
+        if (hidden > 0) {
+            serviceWeavingManager.getStatistics().serviceReferencesHidden(hidden);
         }
     }
 
@@ -131,4 +154,40 @@ public final class AspecioProvider implements Aspecio, FindHook, EventListenerHo
     public List<InterceptedServiceDTO> getInterceptedServices() {
         return aspecioServiceController.getInterceptedServices();
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<InterceptedServiceDTO> queryInterceptedServices(final InterceptedServiceQueryDTO query) {
+        return aspecioServiceController.queryInterceptedServices(query);
+    }
+
+    @Override
+    public int countInterceptedServices(final InterceptedServiceQueryDTO query) {
+        return aspecioServiceController.countInterceptedServices(query);
+    }
+
+    @Override
+    public void addInterceptedServiceListener(final InterceptedServiceListener listener) {
+        aspecioServiceController.addInterceptedServiceListener(listener);
+    }
+
+    @Override
+    public void removeInterceptedServiceListener(final InterceptedServiceListener listener) {
+        aspecioServiceController.removeInterceptedServiceListener(listener);
+    }
+
+    @Override
+    public long getVersion() {
+        // both versions only ever increase, so does their sum
+        return aspectInterceptorManager.getVersion() + aspecioServiceController.getVersion();
+    }
+
+    @Override
+    public WeavingStatisticsDTO getWeavingStatistics() {
+        return serviceWeavingManager.getStatistics().toDTO();
+    }
+
+    @Override
+    public List<ProxyClassLoaderDTO> getProxyClassLoaders() {
+        return serviceWeavingManager.getProxyClassRegistry().getProxyClassLoaders();
+    }
+}
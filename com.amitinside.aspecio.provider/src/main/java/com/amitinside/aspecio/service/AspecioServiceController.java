@@ -19,11 +19,25 @@ package com.amitinside.aspecio.service;
 import static com.amitinside.aspecio.service.WovenServiceEvent.ChangeEvent.*;
 import static com.amitinside.aspecio.util.AspecioUtil.*;
 import static org.osgi.framework.Constants.SERVICE_BUNDLEID;
+import static org.osgi.framework.Constants.SERVICE_ID;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
@@ -31,6 +45,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amitinside.aspecio.api.InterceptedServiceDTO;
+import com.amitinside.aspecio.api.InterceptedServiceEventDTO;
+import com.amitinside.aspecio.api.InterceptedServiceListener;
+import com.amitinside.aspecio.api.InterceptedServiceQueryDTO;
+import com.amitinside.aspecio.util.AspecioThreadFactory;
+import com.amitinside.aspecio.util.EventCoalescer;
+import com.amitinside.aspecio.util.StripedLock;
+
+import io.primeval.reflex.proxy.Interceptor;
 
 public final class AspecioServiceController implements AspectInterceptorListener, WovenServiceListener {
 
@@ -41,10 +63,53 @@ public final class AspecioServiceController implements AspectInterceptorListener
 
     private final Map<ServiceReference<?>, ManagedWovenService> managedServices = new ConcurrentHashMap<>();
 
+    // Serializes the decisions on each woven service, so that services are
+    // handled in parallel while the events of a given service are applied in
+    // order. The decided states are applied to the framework once the lock is
+    // released, as registering a service calls out to its consumers.
+    private final StripedLock serviceLocks = new StripedLock(StripedLock.defaultStripes());
+
+    // Read-only descriptions of the managed services, replaced on every change of
+    // their service, indexed for queries and assembled into a list on the first
+    // read of each version
+    private final InterceptedServiceIndex serviceDescriptions = new InterceptedServiceIndex();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, emptyList());
+
+    // Delivers the changes of the published descriptions to the listeners
+    private final InterceptedServiceEventDispatcher eventDispatcher;
+
+    // Only set up with a coalescing window, to re-evaluate each woven service once
+    // per burst of aspect changes
+    private final EventCoalescer<ServiceReference<?>> aspectChangeCoalescer;
+
+    // Only set up with a grace period, to unregister the services whose required
+    // aspects did not return in time
+    private final long gracePeriodMillis;
+    private final GracePeriodPolicy gracePeriodPolicy;
+    private final ScheduledExecutorService gracePeriodScheduler;
+
     public AspecioServiceController(final AspectInterceptorManager aspectInterceptorManager,
                                     final ServiceWeavingManager serviceWeavingManager) {
+        this(aspectInterceptorManager, serviceWeavingManager, 0, 0, GracePeriodPolicy.BLOCK,
+             InterceptedServiceEventDispatcher.DEFAULT_QUEUE_SIZE);
+    }
+
+    public AspecioServiceController(final AspectInterceptorManager aspectInterceptorManager,
+                                    final ServiceWeavingManager serviceWeavingManager,
+                                    final long coalescingWindowMillis, final long gracePeriodMillis,
+                                    final GracePeriodPolicy gracePeriodPolicy, final int eventQueueSize) {
         this.aspectInterceptorManager = aspectInterceptorManager;
         this.serviceWeavingManager = serviceWeavingManager;
+        aspectChangeCoalescer = coalescingWindowMillis > 0
+                ? new EventCoalescer<>("Coalescing", coalescingWindowMillis, this::reevaluate)
+                : null;
+        this.gracePeriodMillis = gracePeriodMillis;
+        this.gracePeriodPolicy = gracePeriodPolicy;
+        gracePeriodScheduler = gracePeriodMillis > 0
+                ? Executors.newSingleThreadScheduledExecutor(new AspecioThreadFactory("Grace Period"))
+                : null;
+        eventDispatcher = new InterceptedServiceEventDispatcher(eventQueueSize, serviceWeavingManager.getStatistics());
     }
 
     public void open() throws InvalidSyntaxException {
@@ -55,23 +120,71 @@ public final class AspecioServiceController implements AspectInterceptorListener
     }
 
     public void close() {
+        if (aspectChangeCoalescer != null) {
+            aspectChangeCoalescer.close();
+        }
+        if (gracePeriodScheduler != null) {
+            gracePeriodScheduler.shutdownNow();
+        }
         serviceWeavingManager.close();
         aspectInterceptorManager.close();
         aspectInterceptorManager.removeListener(this);
         serviceWeavingManager.removeListener(this);
+        eventDispatcher.close();
     }
 
     @Override
     public void onAspectChange(final AspectInterceptorListener.EventKind eventKind, final String aspectName,
                                final AspectInterceptor aspectInterceptor) {
-        final List<WovenService> wovenServicesForAspect = serviceWeavingManager.getWovenServicesForAspect(aspectName);
-        if (wovenServicesForAspect == null) {
-            return;
+        // only the services currently requesting the aspect are re-evaluated
+        for (final WovenService wovenService : serviceWeavingManager.getWovenServicesForAspect(aspectName)) {
+            if (aspectChangeCoalescer == null) {
+                handleAspectChange(wovenService.originalReference, aspectName);
+            } else if (!aspectChangeCoalescer.submit(wovenService.originalReference)) {
+                serviceWeavingManager.getStatistics().aspectChangeCoalesced();
+            }
+        }
+    }
+
+    // re-evaluates all the aspects of a service at the end of a coalescing window
+    private void reevaluate(final ServiceReference<?> reference) {
+        final List<ManagedWovenService> changed = new ArrayList<>(2);
+        final Lock lock = serviceLocks.get(reference);
+        lock.lock();
+        try {
+            final ManagedWovenService managed = managedServices.get(reference);
+            if (managed != null) {
+                doHandleServiceUpdate(managed.wovenService, true, true, false, changed);
+            }
+        } finally {
+            publish(reference);
+            lock.unlock();
         }
-        for (final WovenService wovenService : wovenServicesForAspect) {
+        apply(changed);
+    }
+
+    private void handleAspectChange(final ServiceReference<?> reference, final String aspectName) {
+        final List<ManagedWovenService> changed = new ArrayList<>(2);
+        final Lock lock = serviceLocks.get(reference);
+        lock.lock();
+        try {
+            // The indexed service may be older than the one already handled, or not
+            // handled yet, in which case its arrival will see the aspect anyway
+            final ManagedWovenService managed = managedServices.get(reference);
+            if (managed == null) {
+                return;
+            }
+            final WovenService wovenService = managed.wovenService;
             final boolean required = wovenService.requiredAspects.contains(aspectName);
-            handleServiceUpdate(wovenService, required, !required, false);
+            final boolean optional = wovenService.optionalAspects.contains(aspectName);
+            if (required || optional) {
+                doHandleServiceUpdate(wovenService, required, optional, false, changed);
+            }
+        } finally {
+            publish(reference);
+            lock.unlock();
         }
+        apply(changed);
     }
 
     @Override
@@ -92,83 +205,322 @@ public final class AspecioServiceController implements AspectInterceptorListener
         }
     }
 
-    private synchronized void handleServiceArrival(final WovenService wovenService) {
-        final ManagedWovenService managedWovenService = new ManagedWovenService();
-        final ManagedWovenService old = managedServices.put(wovenService.originalReference, managedWovenService);
-        if (old != null) {
-            logger.warn("Got an old service with service ID {}", wovenService.originalServiceId);
-            old.unregister();
+    private void handleServiceArrival(final WovenService wovenService) {
+        final List<ManagedWovenService> changed = new ArrayList<>(2);
+        final Lock lock = serviceLocks.get(wovenService.originalReference);
+        lock.lock();
+        try {
+            doHandleServiceArrival(wovenService, changed);
+        } finally {
+            publish(wovenService.originalReference);
+            lock.unlock();
         }
-        final AspectInterceptorContext context = aspectInterceptorManager.getContext(wovenService.requiredAspects,
-                                                                                     wovenService.optionalAspects);
+        apply(changed);
+    }
 
-        managedWovenService.wovenService = wovenService;
+    // Without the weaving pipeline, the events of a service may be delivered out
+    // of order, so the latest state known to the weaving manager decides
+    private void doHandleServiceArrival(final WovenService wovenService, final List<ManagedWovenService> changed) {
+        final WovenService current = serviceWeavingManager.getWovenService(wovenService.originalReference);
+        if (current == null) {
+            // departed meanwhile
+            return;
+        }
+        final ManagedWovenService old = managedServices.get(current.originalReference);
+        if (old != null && old.wovenService.aspecioServiceObject == current.aspecioServiceObject) {
+            // already handled through an update
+            final boolean updated = old.wovenService != current;
+            doHandleServiceUpdate(current, updated, updated, updated, changed);
+            return;
+        }
+        final AspectInterceptorContext context = aspectInterceptorManager.getContext(current.requiredAspects,
+                                                                                     current.optionalAspects);
+        // fully initialized before being published to the readers of the map
+        final ManagedWovenService managedWovenService = new ManagedWovenService();
+        managedWovenService.wovenService = current;
         managedWovenService.aspectContext = context;
+        managedServices.put(current.originalReference, managedWovenService);
+        if (old != null) {
+            logger.warn("Got an old service with service ID {}", current.originalServiceId);
+            endGracePeriod(old, null);
+            old.unpublish();
+            changed.add(old);
+        }
         managedWovenService.wovenService.aspecioServiceObject.setInterceptor(context.getInterceptor());
 
         if (context.getUnsatisfiedRequiredAspects().isEmpty()) {
-            managedWovenService.register();
+            managedWovenService.publish();
+            changed.add(managedWovenService);
         }
     }
 
-    private synchronized void handleServiceUpdate(final WovenService wovenService, final boolean requiredAspectsChanged,
-                                                  final boolean optionalAspectsChanged, final boolean servicePropertiesChanged) {
-        final ManagedWovenService managed = managedServices.get(wovenService.originalReference);
-        if (managed == null) {
+    private void handleServiceUpdate(final WovenService wovenService, final boolean requiredAspectsChanged,
+                                     final boolean optionalAspectsChanged, final boolean servicePropertiesChanged) {
+        final List<ManagedWovenService> changed = new ArrayList<>(2);
+        final Lock lock = serviceLocks.get(wovenService.originalReference);
+        lock.lock();
+        try {
+            doHandleServiceUpdate(wovenService, requiredAspectsChanged, optionalAspectsChanged,
+                                  servicePropertiesChanged, changed);
+        } finally {
+            publish(wovenService.originalReference);
+            lock.unlock();
+        }
+        apply(changed);
+    }
+
+    private void doHandleServiceUpdate(final WovenService wovenService, final boolean requiredAspectsChanged,
+                                       final boolean optionalAspectsChanged, final boolean servicePropertiesChanged,
+                                       final List<ManagedWovenService> changed) {
+        final WovenService current = serviceWeavingManager.getWovenService(wovenService.originalReference);
+        if (current == null) {
+            // departed meanwhile
+            return;
+        }
+        final ManagedWovenService managed = managedServices.get(current.originalReference);
+        if (managed == null || managed.wovenService.aspecioServiceObject != current.aspecioServiceObject) {
             logger.trace("Couldn't find an old service with service ID {}, treating the update as a new service...",
-                         wovenService.originalServiceId);
-            handleServiceArrival(wovenService);
+                         current.originalServiceId);
+            doHandleServiceArrival(current, changed);
             return;
         }
+        // compared with the latest state if other updates overtook this one
+        final boolean overtaken = current != wovenService;
 
-        if (requiredAspectsChanged || optionalAspectsChanged) {
-            final AspectInterceptorContext context = aspectInterceptorManager.getContext(wovenService.requiredAspects,
-                                                                                         wovenService.optionalAspects);
-            managed.wovenService = wovenService;
+        if (requiredAspectsChanged || optionalAspectsChanged || overtaken) {
+            final AspectInterceptorContext context = aspectInterceptorManager.getContext(current.requiredAspects,
+                                                                                         current.optionalAspects);
+            managed.wovenService = current;
             managed.aspectContext = context;
-            managed.wovenService.aspecioServiceObject.setInterceptor(context.getInterceptor());
 
             final boolean satisfied = context.getUnsatisfiedRequiredAspects().isEmpty();
             if (satisfied) {
-                if (managed.registration == null) {
-                    managed.register();
+                managed.wovenService.aspecioServiceObject.setInterceptor(context.getInterceptor());
+                endGracePeriod(managed, context.getInterceptor());
+                if (!managed.isPublished()) {
+                    managed.publish();
+                    changed.add(managed);
                 }
-            } else if (managed.registration != null) {
-                managed.unregister();
+            } else if (managed.isPublished() && gracePeriodScheduler != null) {
+                startGracePeriod(managed, context);
+            } else {
+                managed.wovenService.aspecioServiceObject.setInterceptor(context.getInterceptor());
+                if (managed.isPublished()) {
+                    managed.unpublish();
+                    changed.add(managed);
+                }
+            }
+        }
+        if (servicePropertiesChanged || overtaken) {
+            managed.wovenService = current;
+            managed.updateProperties();
+            changed.add(managed);
+        }
+    }
+
+    // Keeps a registered service whose required aspects went away, so that its
+    // consumers are not deactivated if the aspects return within the grace period
+    private void startGracePeriod(final ManagedWovenService managed, final AspectInterceptorContext context) {
+        if (managed.graceExpiry != null) {
+            // already waiting, possibly for other aspects, until the same deadline
+            return;
+        }
+        final WovenService wovenService = managed.wovenService;
+        final Set<String> missingAspects = context.getUnsatisfiedRequiredAspects();
+        final GracePeriodInterceptor graceInterceptor = gracePeriodPolicy == GracePeriodPolicy.PASSTHROUGH ? null
+                : new GracePeriodInterceptor(gracePeriodPolicy, wovenService.originalServiceId, missingAspects,
+                                             gracePeriodMillis);
+        wovenService.aspecioServiceObject
+                    .setInterceptor(graceInterceptor != null ? graceInterceptor : Interceptor.DEFAULT);
+        managed.graceInterceptor = graceInterceptor;
+        managed.graceDeadline = System.currentTimeMillis() + gracePeriodMillis;
+        // the task only expires its own period, read under the lock once scheduled
+        final AtomicReference<ScheduledFuture<?>> expiry = new AtomicReference<>();
+        expiry.set(gracePeriodScheduler.schedule(() -> expireGracePeriod(wovenService.originalReference, expiry),
+                                                 gracePeriodMillis, TimeUnit.MILLISECONDS));
+        managed.graceExpiry = expiry.get();
+        logger.info("Service ID {} is missing its required aspects {}, keeping it registered for {} ms ({})",
+                    wovenService.originalServiceId, missingAspects, gracePeriodMillis, gracePeriodPolicy);
+    }
+
+    private void endGracePeriod(final ManagedWovenService managed, final Interceptor interceptor) {
+        if (managed.graceExpiry == null) {
+            return;
+        }
+        managed.graceExpiry.cancel(false);
+        if (managed.graceInterceptor != null) {
+            if (interceptor != null) {
+                managed.graceInterceptor.resume(interceptor);
+            } else {
+                managed.graceInterceptor.expire();
             }
-        } else if (servicePropertiesChanged) {
-            managed.wovenService = wovenService;
-            managed.registration.setProperties(managed.getProperties());
+        }
+        managed.graceExpiry = null;
+        managed.graceInterceptor = null;
+        managed.graceDeadline = 0;
+        if (interceptor != null) {
+            serviceWeavingManager.getStatistics().gracePeriodRecovered();
+            logger.info("Service ID {} got its required aspects back within its grace period",
+                        managed.wovenService.originalServiceId);
         }
     }
 
-    private synchronized void handleServiceDeparture(final WovenService wovenService) {
-        final ManagedWovenService managed = managedServices.remove(wovenService.originalReference);
-        if (managed == null) {
-            logger.warn("Notified of the departure of a service we couldn't find with service ID {}",
-                        wovenService.originalServiceId);
+    private void expireGracePeriod(final ServiceReference<?> reference,
+                                   final AtomicReference<ScheduledFuture<?>> expiry) {
+        final List<ManagedWovenService> changed = new ArrayList<>(1);
+        final Lock lock = serviceLocks.get(reference);
+        lock.lock();
+        try {
+            final ManagedWovenService managed = managedServices.get(reference);
+            if (managed == null || managed.graceExpiry == null || managed.graceExpiry != expiry.get()) {
+                // ended before the task could take the lock, possibly replaced by a newer period
+                return;
+            }
+            endGracePeriod(managed, null);
+            serviceWeavingManager.getStatistics().gracePeriodExpired();
+            logger.info("Service ID {} did not get its required aspects back within its grace period, unregistering it",
+                        managed.wovenService.originalServiceId);
+            managed.wovenService.aspecioServiceObject.setInterceptor(managed.aspectContext.getInterceptor());
+            if (managed.isPublished()) {
+                managed.unpublish();
+                changed.add(managed);
+            }
+        } finally {
+            publish(reference);
+            lock.unlock();
+        }
+        apply(changed);
+    }
+
+    private void handleServiceDeparture(final WovenService wovenService) {
+        final List<ManagedWovenService> changed = new ArrayList<>(1);
+        final Lock lock = serviceLocks.get(wovenService.originalReference);
+        lock.lock();
+        try {
+            final ManagedWovenService managed = managedServices.get(wovenService.originalReference);
+            if (managed == null) {
+                logger.warn("Notified of the departure of a service we couldn't find with service ID {}",
+                            wovenService.originalServiceId);
+                return;
+            }
+            if (managed.wovenService.aspecioServiceObject != wovenService.aspecioServiceObject) {
+                // the service already came back and replaced the departed one
+                return;
+            }
+            managedServices.remove(wovenService.originalReference);
+            endGracePeriod(managed, null);
+            managed.unpublish();
+            changed.add(managed);
+        } finally {
+            publish(wovenService.originalReference);
+            lock.unlock();
+        }
+        apply(changed);
+    }
+
+    // Applies the decided states once the lock of their service is released
+    private static void apply(final List<ManagedWovenService> changed) {
+        changed.forEach(ManagedWovenService::apply);
+    }
+
+    // Publishes the current state of a service, under the lock of that service
+    private void publish(final ServiceReference<?> reference) {
+        final long serviceId = asLong(reference.getProperty(SERVICE_ID));
+        final InterceptedServiceDTO previous = serviceDescriptions.get(serviceId);
+        final ManagedWovenService managed = managedServices.get(reference);
+        final InterceptedServiceDTO current = managed == null ? null : toDTO(managed);
+        if (sameDescription(previous, current)) {
+            // handled events that change nothing keep the snapshot current
             return;
         }
-        managed.unregister();
+        if (current == null) {
+            serviceDescriptions.remove(serviceId);
+        } else {
+            serviceDescriptions.put(managed.wovenService.originalReference, current);
+        }
+        version.incrementAndGet();
+        if (eventDispatcher.hasListeners()) {
+            final InterceptedServiceEventDTO event = InterceptedServiceEventDispatcher.changeOf(previous, current);
+            if (event != null) {
+                eventDispatcher.dispatch(event);
+            }
+        }
+    }
+
+    private static boolean sameDescription(final InterceptedServiceDTO previous,
+                                           final InterceptedServiceDTO current) {
+        if (previous == null || current == null) {
+            return previous == current;
+        }
+        return previous.serviceId == current.serviceId
+                && previous.bundleId == current.bundleId
+                && previous.published == current.published
+                && previous.gracePeriodDeadline == current.gracePeriodDeadline
+                && Objects.equals(previous.objectClass, current.objectClass)
+                && Objects.equals(previous.satisfiedAspects, current.satisfiedAspects)
+                && Objects.equals(previous.unsatisfiedRequiredAspects, current.unsatisfiedRequiredAspects)
+                && Objects.equals(previous.requiredAspects, current.requiredAspects)
+                && Objects.equals(previous.optionalAspects, current.optionalAspects);
+    }
+
+    private static InterceptedServiceDTO toDTO(final ManagedWovenService mws) {
+        final long bundleId = asLong(mws.wovenService.originalReference.getProperty(SERVICE_BUNDLEID));
+
+        final InterceptedServiceDTO dto = new InterceptedServiceDTO();
+        dto.serviceId = mws.wovenService.originalServiceId;
+        dto.bundleId = bundleId;
+        dto.objectClass = unmodifiableList(new ArrayList<>(mws.wovenService.objectClass));
+        dto.published = mws.isPublished();
+        dto.gracePeriodDeadline = mws.graceDeadline;
+        dto.satisfiedAspects = unmodifiableSet(asSet(mws.aspectContext.getSatisfiedAspects()));
+        dto.unsatisfiedRequiredAspects = unmodifiableSet(asSet(mws.aspectContext.getUnsatisfiedRequiredAspects()));
+        dto.requiredAspects = unmodifiableSet(asSet(mws.wovenService.requiredAspects));
+        dto.optionalAspects = unmodifiableSet(asSet(mws.wovenService.optionalAspects));
+        return dto;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public List<InterceptedServiceDTO> getInterceptedServices() {
+        final long currentVersion = version.get();
+        final Snapshot current = snapshot;
+        if (current.version == currentVersion) {
+            return current.services;
+        }
+        // readers racing on a new version may each assemble it, at worst
+        // publishing an outdated snapshot that the next read replaces
+        final Snapshot updated = new Snapshot(currentVersion,
+                                              serviceDescriptions.getAll());
+        snapshot = updated;
+        return updated.services;
+    }
+
+    public List<InterceptedServiceDTO> queryInterceptedServices(final InterceptedServiceQueryDTO query) {
+        return serviceDescriptions.query(query);
+    }
+
+    public int countInterceptedServices(final InterceptedServiceQueryDTO query) {
+        return serviceDescriptions.count(query);
+    }
+
+    public void addInterceptedServiceListener(final InterceptedServiceListener listener) {
+        eventDispatcher.addListener(listener);
+    }
+
+    public void removeInterceptedServiceListener(final InterceptedServiceListener listener) {
+        eventDispatcher.removeListener(listener);
     }
 
-    public synchronized List<InterceptedServiceDTO> getInterceptedServices() {
-        final List<InterceptedServiceDTO> isds = new ArrayList<>(managedServices.size());
-        for (final ManagedWovenService mws : managedServices.values()) {
-            final long bundleId = asLong(mws.wovenService.originalReference.getProperty(SERVICE_BUNDLEID));
+    private static final class Snapshot {
 
-            final InterceptedServiceDTO dto = new InterceptedServiceDTO();
-            dto.serviceId = mws.wovenService.originalServiceId;
-            dto.bundleId = bundleId;
-            dto.objectClass = new ArrayList<>(mws.wovenService.objectClass);
-            dto.published = mws.registration != null;
-            dto.satisfiedAspects = asSet(mws.aspectContext.getSatisfiedAspects());
-            dto.unsatisfiedRequiredAspects = asSet(mws.aspectContext.getUnsatisfiedRequiredAspects());
-            dto.requiredAspects = asSet(mws.wovenService.requiredAspects);
-            dto.optionalAspects = asSet(mws.wovenService.optionalAspects);
+        final long version;
+        final List<InterceptedServiceDTO> services;
 
-            isds.add(dto);
+        Snapshot(final long version, final List<InterceptedServiceDTO> services) {
+            this.version = version;
+            this.services = services;
         }
-        return isds;
     }
 }
\ No newline at end of file
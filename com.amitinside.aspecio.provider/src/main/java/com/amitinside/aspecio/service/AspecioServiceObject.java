@@ -18,8 +18,6 @@ package com.amitinside.aspecio.service;
 
 import static io.primeval.reflex.proxy.Interceptor.DEFAULT;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 import org.osgi.framework.Bundle;
@@ -29,6 +27,8 @@ import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 
+import com.amitinside.aspecio.util.ConcurrentIdentitySet;
+
 import io.primeval.reflex.proxy.Interceptor;
 import io.primeval.reflex.proxy.bytecode.Proxy;
 
@@ -37,21 +37,68 @@ public final class AspecioServiceObject {
     private final ServiceScope serviceScope;
     private final ServiceReference<?> originalRef;
     private final Function<Object, Proxy> proxyFunction;
-    private final List<Proxy> instances = new CopyOnWriteArrayList<>();
-    private final ServicePool<Proxy> servicePool = new ServicePool<>();
+    private final ConcurrentIdentitySet<Proxy> instances = new ConcurrentIdentitySet<>();
+    private final ServicePool<Proxy> servicePool;
+    // all the proxies read the interceptor chain through this single holder
+    private final SharedInterceptor interceptor = new SharedInterceptor(DEFAULT);
+    // guards the binding of the proxies, to the holder or directly to the no-op
+    // interceptor when the service has no satisfied aspect, in which case they
+    // delegate straight to the service object
+    private final Object bindingLock = new Object();
+    private boolean passThrough = true;
     private Object serviceToRegister;
-    private volatile Interceptor interceptor = DEFAULT;
 
     public AspecioServiceObject(final ServiceScope serviceScope, final ServiceReference<?> originalRef,
-                                final Function<Object, Proxy> proxyFunction) {
+                                final Function<Object, Proxy> proxyFunction, final WeavingStatistics statistics) {
         this.serviceScope = serviceScope;
         this.originalRef = originalRef;
         this.proxyFunction = proxyFunction;
+        servicePool = new ServicePool<>(statistics);
     }
 
     public void setInterceptor(final Interceptor interceptor) {
-        this.interceptor = interceptor;
-        instances.forEach(proxy -> proxy.setInterceptor(interceptor));
+        this.interceptor.set(interceptor);
+        final boolean noAspect = interceptor == DEFAULT;
+        synchronized (bindingLock) {
+            if (noAspect != passThrough) {
+                // only switching between pass-through and interception touches the proxies
+                passThrough = noAspect;
+                final Interceptor binding = boundInterceptor();
+                instances.forEach(proxy -> proxy.setInterceptor(binding));
+            }
+        }
+    }
+
+    /**
+     * Returns the holder of the current interceptor chain of the service.
+     */
+    public Interceptor getInterceptor() {
+        return interceptor;
+    }
+
+    /**
+     * Creates an untracked proxy of a service object, for the classes woven in
+     * bytecode mode which bind their proxies themselves.
+     */
+    public Proxy newProxy(final Object serviceObject) {
+        return proxyFunction.apply(serviceObject);
+    }
+
+    // wrapped so as to bypass the proxy while bound to the no-op interceptor
+    private Proxy newInstance(final Object originalService) {
+        return DirectDelegation.wrap(proxyFunction.apply(originalService), originalService);
+    }
+
+    private Interceptor boundInterceptor() {
+        return passThrough ? DEFAULT : interceptor;
+    }
+
+    private Proxy track(final Proxy proxy) {
+        synchronized (bindingLock) {
+            proxy.setInterceptor(boundInterceptor());
+            instances.add(proxy);
+        }
+        return proxy;
     }
 
     public synchronized Object getServiceObjectToRegister() {
@@ -77,10 +124,7 @@ public final class AspecioServiceObject {
             @Override
             public Proxy getService(final Bundle bundle, final ServiceRegistration<Proxy> registration) {
                 final Object originalService = bundle.getBundleContext().getService(originalRef);
-                final Proxy instance = proxyFunction.apply(originalService);
-                instance.setInterceptor(interceptor);
-                instances.add(instance);
-                return instance;
+                return track(newInstance(originalService));
             }
 
             @Override
@@ -97,12 +141,7 @@ public final class AspecioServiceObject {
             @Override
             public Proxy getService(final Bundle bundle, final ServiceRegistration<Proxy> registration) {
                 final Object originalService = bundle.getBundleContext().getService(originalRef);
-                return servicePool.get(originalService, () -> {
-                    final Proxy proxy = proxyFunction.apply(originalService);
-                    proxy.setInterceptor(interceptor);
-                    instances.add(proxy);
-                    return proxy;
-                });
+                return servicePool.get(originalService, () -> track(newInstance(originalService)));
             }
 
             @Override
@@ -118,10 +157,7 @@ public final class AspecioServiceObject {
 
     private Object createDefaultServiceObject() {
         final Object originalService = originalRef.getBundle().getBundleContext().getService(originalRef);
-        final Proxy instance = proxyFunction.apply(originalService);
-        instance.setInterceptor(interceptor);
-        instances.add(instance);
-        return instance;
+        return track(newInstance(originalService));
     }
 
     private void ungetOriginalService(final Bundle bundle) {
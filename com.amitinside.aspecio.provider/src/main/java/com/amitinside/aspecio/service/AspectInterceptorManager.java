@@ -15,6 +15,7 @@
  ******************************************************************************/
 package com.amitinside.aspecio.service;
 
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_FUSED_CHAINS;
 import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT;
 import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_EXTRAPROPERTIES;
 import static com.amitinside.aspecio.service.AspectInterceptorListener.EventKind.NEW_MATCH;
@@ -24,8 +25,13 @@ import static com.amitinside.aspecio.util.AspecioUtil.asLong;
 import static com.amitinside.aspecio.util.AspecioUtil.asSet;
 import static com.amitinside.aspecio.util.AspecioUtil.asString;
 import static com.amitinside.aspecio.util.AspecioUtil.firstOrNull;
+import static com.amitinside.aspecio.util.AspecioUtil.getBooleanProperty;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
 import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
 import static org.osgi.framework.Constants.SERVICE_BUNDLEID;
 import static org.osgi.framework.Constants.SERVICE_ID;
 import static org.osgi.framework.Constants.SERVICE_RANKING;
@@ -43,7 +49,10 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Stream;
 
 import org.osgi.framework.BundleContext;
@@ -58,6 +67,8 @@ import org.slf4j.LoggerFactory;
 import com.amitinside.aspecio.api.AspectDTO;
 import com.amitinside.aspecio.api.InterceptorDTO;
 import com.amitinside.aspecio.service.AspectInterceptorListener.EventKind;
+import com.amitinside.aspecio.util.IdentityKey;
+import com.amitinside.aspecio.util.StripedLock;
 
 import io.primeval.reflex.proxy.Interceptor;
 import io.primeval.reflex.proxy.Interceptors;
@@ -73,11 +84,39 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 	private final Map<String, SortedSet<AspectInterceptor>> aspectServicesByAspectName = new ConcurrentHashMap<>();
 	private final List<AspectInterceptorListener> aspectInterceptorListeners = new CopyOnWriteArrayList<>();
 
+	// Chains built for each distinct ordered set of interceptors, shared by all
+	// woven services requesting the same aspects. Interceptors are compared by
+	// identity, their own equals and hashCode are never called. Cleared on every
+	// aspect change.
+	private final Map<List<IdentityKey>, Interceptor> chains = new ConcurrentHashMap<>();
+	// generates a specialized class per chain, when enabled
+	private final FusedChainGenerator fusedChainGenerator;
+
+	// Contexts shared by the woven services requesting the same required and
+	// optional aspects, invalidated per aspect on every aspect change
+	private final Map<ContextKey, AspectInterceptorContext> contexts = new ConcurrentHashMap<>();
+	private final AtomicLong contextGeneration = new AtomicLong();
+
+	// Mutations are serialized per aspect service and per aspect name, while
+	// contexts are computed from the concurrent collections without locking
+	private final StripedLock referenceLocks = new StripedLock(StripedLock.defaultStripes());
+	private final StripedLock aspectLocks = new StripedLock(StripedLock.defaultStripes());
+
+	// Read-only descriptions of the registered aspects, replaced under the lock of
+	// their aspect, and the set of their names assembled on the first read of
+	// each version
+	private final Map<String, AspectDTO> aspectDescriptions = new ConcurrentHashMap<>();
+	private final AtomicLong version = new AtomicLong();
+	private volatile AspectNames aspectNames = new AspectNames(0, emptySet());
+
 	private ServiceTracker<Object, Object> tracker;
 
 	public AspectInterceptorManager(final BundleContext bundleContext) {
 		requireNonNull(bundleContext, "'Bundle context cannot be null'");
 		this.bundleContext = bundleContext;
+		fusedChainGenerator = getBooleanProperty(bundleContext, ASPECIO_FUSED_CHAINS, false)
+				? new FusedChainGenerator()
+				: null;
 	}
 
 	public void open() throws InvalidSyntaxException {
@@ -88,10 +127,8 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 
 	public void close() {
 		tracker.close();
-		synchronized (this) {
-			aspectServiceByServiceRef.keySet().forEach(bundleContext::ungetService);
-			aspectServiceByServiceRef.clear();
-		}
+		aspectServiceByServiceRef.keySet().forEach(bundleContext::ungetService);
+		aspectServiceByServiceRef.clear();
 	}
 
 	@Override
@@ -111,7 +148,7 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 		onServiceDeparture(reference);
 	}
 
-	public synchronized void onServiceRegistration(final ServiceReference<?> reference, final Object service) {
+	public void onServiceRegistration(final ServiceReference<?> reference, final Object service) {
 		final String aspect = asString(reference.getProperty(SERVICE_ASPECT));
 		final Set<String> extraProperties = asSet(reference.getProperty(SERVICE_ASPECT_EXTRAPROPERTIES));
 		final int serviceRanking = asInt(reference.getProperty(SERVICE_RANKING), 0);
@@ -124,37 +161,57 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 		logger.debug("Added aspect: {} (extraProps: {})", aspect, extraProperties);
 		final AspectInterceptor aspectService = new AspectInterceptor(aspect, (Interceptor) service, reference,
 				serviceRanking, extraProperties);
-		aspectServiceByServiceRef.put(reference, aspectService);
-
-		// Deal with aspect map.
-		final SortedSet<AspectInterceptor> as = aspectServicesByAspectName.computeIfAbsent(aspect,
-				k -> new TreeSet<>());
-		final AspectInterceptor firstBefore = firstOrNull(as);
-		// The trick here is that we use a SortedSet with the right compareTo method on
-		// aspectService.
-		as.add(aspectService);
-
-		final AspectInterceptor firstAfter = firstOrNull(as);
-		if (firstAfter != firstBefore) {
-			// still in lock, should we?
-			fireEvent(NEW_MATCH, aspect, firstAfter);
+		final List<AspectEvent> events = new ArrayList<>(1);
+		final Lock referenceLock = referenceLocks.get(reference);
+		referenceLock.lock();
+		try {
+			aspectServiceByServiceRef.put(reference, aspectService);
+
+			// Deal with aspect map.
+			final Lock aspectLock = aspectLocks.get(aspect);
+			aspectLock.lock();
+			try {
+				final SortedSet<AspectInterceptor> as = aspectServicesByAspectName.computeIfAbsent(aspect,
+						k -> new ConcurrentSkipListSet<>());
+				final AspectInterceptor firstBefore = firstOrNull(as);
+				// The trick here is that we use a SortedSet with the right compareTo method on
+				// aspectService.
+				as.add(aspectService);
+
+				final AspectInterceptor firstAfter = firstOrNull(as);
+				if (firstAfter != firstBefore) {
+					events.add(new AspectEvent(NEW_MATCH, aspect, firstAfter));
+				}
+			} finally {
+				publishDescription(aspect);
+				aspectLock.unlock();
+			}
+		} finally {
+			referenceLock.unlock();
 		}
+		fireEvents(events);
 	}
 
-	public synchronized void onServiceUpdate(final ServiceReference<?> reference) {
-		final AspectInterceptor aspectService = aspectServiceByServiceRef.get(reference);
-		if (aspectService == null) {
-			return;
-		}
-		final String newAspect = asString(reference.getProperty(SERVICE_ASPECT));
-		final Set<String> extraProperties = asSet(reference.getProperty(SERVICE_ASPECT_EXTRAPROPERTIES));
-		final int serviceRanking = asInt(reference.getProperty(SERVICE_RANKING), 0);
+	public void onServiceUpdate(final ServiceReference<?> reference) {
+		final List<AspectEvent> events = new ArrayList<>(2);
+		final Lock referenceLock = referenceLocks.get(reference);
+		referenceLock.lock();
+		try {
+			final AspectInterceptor aspectService = aspectServiceByServiceRef.get(reference);
+			if (aspectService == null) {
+				return;
+			}
+			final String newAspect = asString(reference.getProperty(SERVICE_ASPECT));
+			final Set<String> extraProperties = asSet(reference.getProperty(SERVICE_ASPECT_EXTRAPROPERTIES));
+			final int serviceRanking = asInt(reference.getProperty(SERVICE_RANKING), 0);
 
-		final boolean rankingChanged = aspectService.serviceRanking != serviceRanking;
-		final boolean aspectChanged = !Objects.equals(aspectService.aspect, newAspect);
-		final boolean extraPropsChanged = !Objects.equals(aspectService.extraProperties, extraProperties);
+			final boolean rankingChanged = aspectService.serviceRanking != serviceRanking;
+			final boolean aspectChanged = !Objects.equals(aspectService.aspect, newAspect);
+			final boolean extraPropsChanged = !Objects.equals(aspectService.extraProperties, extraProperties);
 
-		if (rankingChanged || aspectChanged || extraPropsChanged) {
+			if (!rankingChanged && !aspectChanged && !extraPropsChanged) {
+				return;
+			}
 			if (!aspectChanged) {
 				logger.debug("Updating aspect: {} (extraProps: {})", newAspect, extraProperties);
 			} else {
@@ -167,68 +224,116 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 
 			final Iterator<String> aspectsToProcess = Stream.of(aspectService.aspect, newAspect).distinct().iterator();
 
+			// the aspects are locked one at a time, so that their locks cannot be
+			// acquired in different orders
 			while (aspectsToProcess.hasNext()) {
 				final String aspect = aspectsToProcess.next();
 				final boolean toPublish = newAspect.equals(aspect);
-				final SortedSet<AspectInterceptor> as = aspectServicesByAspectName.computeIfAbsent(aspect,
-						k -> new TreeSet<>());
-				final AspectInterceptor firstBefore = firstOrNull(as);
-
-				if (toPublish) {
-					if (rankingChanged) {
-						// special case where we must force the re-ordering
-						// by cleanly removing from the set first
+				final Lock aspectLock = aspectLocks.get(aspect);
+				aspectLock.lock();
+				try {
+					final SortedSet<AspectInterceptor> as = aspectServicesByAspectName.computeIfAbsent(aspect,
+							k -> new ConcurrentSkipListSet<>());
+					final AspectInterceptor firstBefore = firstOrNull(as);
+
+					if (toPublish) {
+						if (rankingChanged) {
+							// special case where we must force the re-ordering
+							// by cleanly removing from the set first
+							as.remove(aspectService);
+						}
+						// The trick here is that we use a SortedSet
+						// with the right compareTo method on aspectService.
+						// It will replace the pre-existing service that has
+						// a different entity, but compareTo() == 0.
+						as.add(updatedService);
+					} else {
+						// here it is the *old* service we remove.
 						as.remove(aspectService);
+						// clean-up
+						if (as.isEmpty()) {
+							aspectServicesByAspectName.remove(aspect);
+						}
 					}
-					// The trick here is that we use a SortedSet
-					// with the right compareTo method on aspectService.
-					// It will replace the pre-existing service that has
-					// a different entity, but compareTo() == 0.
-					as.add(updatedService);
-				} else {
-					// here it is the *old* service we remove.
+					final AspectInterceptor firstAfter = firstOrNull(as);
+					if (firstAfter != firstBefore) {
+						events.add(new AspectEvent(firstAfter != null ? NEW_MATCH : NO_MATCH, aspect, firstAfter));
+					}
+				} finally {
+					publishDescription(aspect);
+					aspectLock.unlock();
+				}
+			}
+		} finally {
+			referenceLock.unlock();
+		}
+		fireEvents(events);
+	}
+
+	public void onServiceDeparture(final ServiceReference<?> reference) {
+		final List<AspectEvent> events = new ArrayList<>(1);
+		final Lock referenceLock = referenceLocks.get(reference);
+		referenceLock.lock();
+		try {
+			final AspectInterceptor aspectService = aspectServiceByServiceRef.remove(reference);
+			if (aspectService == null) {
+				return;
+			}
+			final String aspect = aspectService.aspect;
+			logger.debug("Removed aspect: {} (extraProps: {})", aspect, aspectService.extraProperties);
+
+			final Lock aspectLock = aspectLocks.get(aspect);
+			aspectLock.lock();
+			try {
+				final SortedSet<AspectInterceptor> as = aspectServicesByAspectName.get(aspect);
+				final AspectInterceptor firstBefore = firstOrNull(as);
+
+				if (as != null) {
 					as.remove(aspectService);
-					// clean-up
 					if (as.isEmpty()) {
 						aspectServicesByAspectName.remove(aspect);
 					}
 				}
 				final AspectInterceptor firstAfter = firstOrNull(as);
 				if (firstAfter != firstBefore) {
-					// still in lock, should we?
-					fireEvent(firstAfter != null ? NEW_MATCH : NO_MATCH, aspect, firstAfter);
+					events.add(new AspectEvent(firstAfter != null ? NEW_MATCH : NO_MATCH, aspect, firstAfter));
 				}
+			} finally {
+				publishDescription(aspect);
+				aspectLock.unlock();
 			}
+		} finally {
+			referenceLock.unlock();
 		}
-
+		fireEvents(events);
 	}
 
-	public synchronized void onServiceDeparture(final ServiceReference<?> reference) {
-		final AspectInterceptor aspectService = aspectServiceByServiceRef.get(reference);
-		if (aspectService == null) {
-			return;
+	/**
+	 * Returns the context of a set of required and optional aspects, shared by all
+	 * the woven services requesting the same aspects until one of them changes.
+	 */
+	public AspectInterceptorContext getContext(final List<String> requiredAspects,
+			final List<String> optionalAspects) {
+		final ContextKey key = new ContextKey(requiredAspects, optionalAspects);
+		AspectInterceptorContext context = contexts.get(key);
+		if (context != null) {
+			return context;
 		}
-		final String aspect = aspectService.aspect;
-		logger.debug("Removed aspect: {} (extraProps: {})", aspect, aspectService.extraProperties);
-		aspectServiceByServiceRef.remove(reference);
-
-		final SortedSet<AspectInterceptor> as = aspectServicesByAspectName.get(aspect);
-		final AspectInterceptor firstBefore = firstOrNull(as);
-
-		if (as != null) {
-			as.remove(aspectService);
-			if (as.isEmpty()) {
-				aspectServicesByAspectName.remove(aspect);
-			}
+		final long generation = contextGeneration.get();
+		context = computeContext(requiredAspects, optionalAspects);
+		final AspectInterceptorContext cached = contexts.putIfAbsent(key, context);
+		if (cached != null) {
+			return cached;
 		}
-		final AspectInterceptor firstAfter = firstOrNull(as);
-		if (firstAfter != firstBefore) {
-			// still in lock, should we?
-			fireEvent(firstAfter != null ? NEW_MATCH : NO_MATCH, aspect, firstAfter);
+		// An aspect may have changed while computing the context, after which it
+		// must not stay cached, as its invalidation may have already happened
+		if (contextGeneration.get() != generation) {
+			contexts.remove(key, context);
 		}
+		return context;
 	}
 
-	public synchronized AspectInterceptorContext getContext(final List<String> requiredAspects,
+	private AspectInterceptorContext computeContext(final List<String> requiredAspects,
 			final List<String> optionalAspects) {
 		final Set<AspectInterceptor> interceptors = new TreeSet<>(
 				comparing((final AspectInterceptor a) -> a.aspect).thenComparingInt(a -> a.serviceRanking));
@@ -260,15 +365,55 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 		}
 		final Set<String> satisfiedAspects = new LinkedHashSet<>(satisfiedRequiredAspects);
 		satisfiedAspects.addAll(satisfiedOptionalAspects);
-		final Interceptor interceptor = Interceptors.stack(interceptors.stream().map(ai -> ai.interceptor).iterator());
+		final Interceptor interceptor = MethodDispatchInterceptor
+				.create(interceptors.stream().map(ai -> ai.interceptor).collect(toList()), this::getChain);
 
 		return new AspectInterceptorContext(interceptor, satisfiedAspects, satisfiedRequiredAspects,
 				unsatisfiedRequiredAspects, satisfiedOptionalAspects, unsatisfiedOptionalAspects, extraProperties);
 	}
 
-	private void fireEvent(final EventKind eventKind, final String aspectName,
-			final AspectInterceptor aspectInterceptor) {
-		aspectInterceptorListeners.forEach(l -> l.onAspectChange(eventKind, aspectName, aspectInterceptor));
+	private Interceptor getChain(final List<Interceptor> interceptors) {
+		// without interceptor, proxies delegate straight to the service object
+		if (interceptors.isEmpty()) {
+			return Interceptor.DEFAULT;
+		}
+		// a single interceptor is used as is, sparing the proxies a megamorphic stack
+		if (interceptors.size() == 1) {
+			return interceptors.get(0);
+		}
+		final List<IdentityKey> key = interceptors.stream().map(IdentityKey::new).collect(toList());
+		return chains.computeIfAbsent(key, k -> stack(interceptors));
+	}
+
+	private Interceptor stack(final List<Interceptor> interceptors) {
+		if (fusedChainGenerator != null) {
+			try {
+				return fusedChainGenerator.generate(interceptors);
+			} catch (final RuntimeException | LinkageError e) {
+				logger.warn("Could not generate a fused chain for {}, stacking them instead", interceptors, e);
+			}
+		}
+		return Interceptors.stack(interceptors.iterator());
+	}
+
+	// Listeners are notified once the locks are released, so that they can
+	// register or unregister services without blocking other aspects. An event
+	// only asks the listeners to re-evaluate an aspect against the current state,
+	// which makes the last one notified for an aspect always up to date.
+	private void fireEvents(final List<AspectEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		// contexts and chains are rebuilt before the listeners ask for new contexts
+		contextGeneration.incrementAndGet();
+		for (final AspectEvent event : events) {
+			contexts.keySet().removeIf(key -> key.involves(event.aspectName));
+		}
+		chains.clear();
+		for (final AspectEvent event : events) {
+			aspectInterceptorListeners
+					.forEach(l -> l.onAspectChange(event.eventKind, event.aspectName, event.aspectInterceptor));
+		}
 	}
 
 	public void addListener(final AspectInterceptorListener aspectInterceptorListener) {
@@ -283,15 +428,38 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 		return firstOrNull(aspectServicesByAspectName.get(aspectName));
 	}
 
-	public synchronized Set<String> getRegisteredAspects() {
-		return asSet(aspectServicesByAspectName.keySet());
-	}
-
-	public synchronized Optional<AspectDTO> getAspectDescription(final String aspectName) {
+	// Publishes the current state of an aspect, under the lock of that aspect
+	private void publishDescription(final String aspectName) {
 		final SortedSet<AspectInterceptor> ais = aspectServicesByAspectName.get(aspectName);
 		if (ais == null || ais.isEmpty()) {
-			return Optional.empty();
+			aspectDescriptions.remove(aspectName);
+		} else {
+			aspectDescriptions.put(aspectName, makeAspectDTO(aspectName, ais));
+		}
+		version.incrementAndGet();
+	}
+
+	public long getVersion() {
+		return version.get();
+	}
+
+	public Set<String> getRegisteredAspects() {
+		final long currentVersion = version.get();
+		final AspectNames current = aspectNames;
+		if (current.version == currentVersion) {
+			return current.names;
 		}
+		final AspectNames updated = new AspectNames(currentVersion,
+				unmodifiableSet(new LinkedHashSet<>(aspectDescriptions.keySet())));
+		aspectNames = updated;
+		return updated.names;
+	}
+
+	public Optional<AspectDTO> getAspectDescription(final String aspectName) {
+		return Optional.ofNullable(aspectDescriptions.get(aspectName));
+	}
+
+	private AspectDTO makeAspectDTO(final String aspectName, final SortedSet<AspectInterceptor> ais) {
 		final Iterator<AspectInterceptor> iterator = ais.iterator();
 
 		AspectInterceptor interceptor = iterator.next();
@@ -306,9 +474,9 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 		final AspectDTO ad = new AspectDTO();
 		ad.aspectName = aspectName;
 		ad.interceptor = id;
-		ad.backupInterceptors = backupIds;
+		ad.backupInterceptors = unmodifiableList(backupIds);
 
-		return Optional.of(ad);
+		return ad;
 	}
 
 	private InterceptorDTO makeInterceptorDTO(final AspectInterceptor ai) {
@@ -320,9 +488,67 @@ public final class AspectInterceptorManager implements ServiceTrackerCustomizer<
 		dto.bundleId = bundleId;
 		dto.serviceRanking = ai.serviceRanking;
 		dto.interceptorClass = ai.interceptor.getClass();
-		dto.extraProperties = asSet(ai.extraProperties);
+		dto.extraProperties = unmodifiableSet(asSet(ai.extraProperties));
 
 		return dto;
 	}
 
+	private static final class ContextKey {
+
+		private final List<String> requiredAspects;
+		private final List<String> optionalAspects;
+		private final int hash;
+
+		ContextKey(final List<String> requiredAspects, final List<String> optionalAspects) {
+			this.requiredAspects = new ArrayList<>(requiredAspects);
+			this.optionalAspects = new ArrayList<>(optionalAspects);
+			hash = 31 * this.requiredAspects.hashCode() + this.optionalAspects.hashCode();
+		}
+
+		boolean involves(final String aspect) {
+			return requiredAspects.contains(aspect) || optionalAspects.contains(aspect);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ContextKey)) {
+				return false;
+			}
+			final ContextKey other = (ContextKey) obj;
+			return hash == other.hash && requiredAspects.equals(other.requiredAspects)
+					&& optionalAspects.equals(other.optionalAspects);
+		}
+	}
+
+	private static final class AspectNames {
+
+		final long version;
+		final Set<String> names;
+
+		AspectNames(final long version, final Set<String> names) {
+			this.version = version;
+			this.names = names;
+		}
+	}
+
+	private static final class AspectEvent {
+
+		final EventKind eventKind;
+		final String aspectName;
+		final AspectInterceptor aspectInterceptor;
+
+		AspectEvent(final EventKind eventKind, final String aspectName, final AspectInterceptor aspectInterceptor) {
+			this.eventKind = eventKind;
+			this.aspectName = aspectName;
+			this.aspectInterceptor = aspectInterceptor;
+		}
+	}
 }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.wiring.BundleRevision;
+
+import com.amitinside.aspecio.util.AspecioUtil;
+import com.amitinside.aspecio.util.CachingClassLoader;
+
+import io.primeval.reflex.proxy.bytecode.BridgingClassLoader;
+import io.primeval.reflex.proxy.bytecode.ProxyBuilder;
+import io.primeval.reflex.proxy.bytecode.ProxyClass;
+import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
+
+/**
+ * Proxy engine defining proxies in a class loader bridging the class loaders of
+ * all the bundles of the class hierarchy of the woven class, in case the
+ * abstract classes or interfaces live in non-imported packages. One class
+ * loader is created per distinct path of bundle revisions, caching the classes
+ * found and not found through the bridged class loaders. The caches of a path
+ * are only invalidated by the generation of the dynamic wirings if one of its
+ * bundles imports packages dynamically, as the path is released along with the
+ * revisions it bridges.
+ */
+public final class BridgingProxyEngine implements ProxyEngine {
+
+	// Everything in here is weak, using identity equality, and released when
+	// bundles are unresolved
+	private final BundleRevisionPath root = new BundleRevisionPath();
+
+	private final WeavingStatistics statistics;
+	private final ProxyClassRegistry registry;
+	private final LongSupplier dynamicWiringGeneration;
+
+	public BridgingProxyEngine(final WeavingStatistics statistics, final ProxyClassRegistry registry,
+			final LongSupplier dynamicWiringGeneration) {
+		this.statistics = requireNonNull(statistics, "'Statistics cannot be null'");
+		this.registry = requireNonNull(registry, "'Registry cannot be null'");
+		this.dynamicWiringGeneration = requireNonNull(dynamicWiringGeneration,
+				"'Dynamic wiring generation cannot be null'");
+	}
+
+	@Override
+	public String getName() {
+		return BRIDGING;
+	}
+
+	@Override
+	public void release(final Bundle bundle) {
+		root.prune(revision -> revision.getBundle().equals(bundle));
+	}
+
+	@Override
+	public ProxyClass<?> getProxyClass(final Class<?> clazz, final List<Class<?>> interfaces) {
+		final List<BundleRevision> bundleRevs = new ArrayList<>();
+		final BundleRevisionPath bundleRevPath = getBundleRevisionPath(clazz, bundleRevs);
+
+		statistics.proxyClassRequested();
+		return bundleRevPath.computeProxyClassIfAbsent(clazz, interfaces, () -> {
+			statistics.proxyClassGenerated();
+			final ProxyClassLoader classLoader = getDynamicClassLoader(bundleRevPath, bundleRevs);
+			final long start = System.nanoTime();
+			final ProxyClass<?> proxyClass = ProxyBuilder.build(classLoader, clazz,
+					interfaces.toArray(new Class<?>[0]));
+			registry.proxyClassGenerated(classLoader, clazz, interfaces, System.nanoTime() - start);
+			return proxyClass;
+		});
+	}
+
+	private BundleRevisionPath getBundleRevisionPath(final Class<?> clazz, final List<BundleRevision> bundleRevs) {
+		// Find all bundles required to instantiate the class and bridge their
+		// classloaders in case the abstract class or interface lives in non-imported
+		// packages
+		Class<?> currClazz = clazz;
+		BundleRevisionPath bundleRevPath = root;
+		do {
+			final BundleRevision bundleRev = FrameworkUtil.getBundle(currClazz).adapt(BundleRevision.class);
+			if (!bundleRevs.contains(bundleRev)) {
+				bundleRevs.add(bundleRev);
+				bundleRevPath = bundleRevPath.getSubPath(bundleRev);
+			}
+			currClazz = currClazz.getSuperclass();
+		} while (currClazz != null && currClazz != Object.class);
+
+		return bundleRevPath;
+	}
+
+	private ProxyClassLoader getDynamicClassLoader(final BundleRevisionPath bundleRevPath,
+			final List<BundleRevision> bundleRevs) {
+		return bundleRevPath.computeClassLoaderIfAbsent(() -> {
+			// the bundles set is now prioritized ...
+			final ClassLoader[] classLoaders = bundleRevs.stream().map(b -> b.getWiring().getClassLoader())
+					.toArray(ClassLoader[]::new);
+			final BridgingClassLoader bridgingClassLoader = new BridgingClassLoader(classLoaders);
+			final ProxyClassLoader classLoader = new ProxyClassLoader(
+					bundleRevs.stream().anyMatch(AspecioUtil::hasDynamicImports)
+							? new CachingClassLoader(bridgingClassLoader, dynamicWiringGeneration)
+							: new CachingClassLoader(bridgingClassLoader));
+			registry.classLoaderCreated(BRIDGING, classLoader, bundleRevs);
+			return classLoader;
+		});
+	}
+
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static org.osgi.framework.Bundle.START_TRANSIENT;
+import static org.osgi.framework.Bundle.STOP_TRANSIENT;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amitinside.aspecio.util.AspecioThreadFactory;
+
+/**
+ * Restarts the bundles providing services to weave.
+ * <p>
+ * The bundles are split into groups of bundles wired to each other. Each group
+ * is stopped starting with the dependent bundles, then started starting with
+ * the providing ones, while independent groups are restarted in parallel.
+ */
+public final class BundleRestarter {
+
+	private final Logger logger = LoggerFactory.getLogger(BundleRestarter.class);
+
+	private final int concurrency;
+
+	public BundleRestarter(final int concurrency) {
+		this.concurrency = Math.max(1, concurrency);
+	}
+
+	public void restart(final Collection<Bundle> bundles) {
+		final List<List<Bundle>> groups = plan(bundles);
+		if (groups.size() <= 1 || concurrency == 1) {
+			groups.forEach(this::restartGroup);
+			return;
+		}
+		final List<Callable<Void>> tasks = new ArrayList<>(groups.size());
+		for (final List<Bundle> group : groups) {
+			tasks.add(() -> {
+				restartGroup(group);
+				return null;
+			});
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, groups.size()),
+				new AspecioThreadFactory("Restart"));
+		try {
+			executor.invokeAll(tasks);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Splits the bundles into groups of wired bundles, each group listing its
+	 * bundles in start order, i.e. providers before their dependents. Groups and
+	 * bundles without wiring constraints are ordered by bundle ID.
+	 */
+	static List<List<Bundle>> plan(final Collection<Bundle> bundles) {
+		final Set<Bundle> sorted = new TreeSet<>(bundles);
+		final Map<Bundle, Set<Bundle>> providers = new HashMap<>();
+		final Map<Bundle, Bundle> parents = new HashMap<>();
+		for (final Bundle bundle : sorted) {
+			parents.put(bundle, bundle);
+		}
+		for (final Bundle bundle : sorted) {
+			final Set<Bundle> bundleProviders = new TreeSet<>();
+			final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+			final List<BundleWire> wires = wiring == null ? null : wiring.getRequiredWires(null);
+			if (wires != null) {
+				for (final BundleWire wire : wires) {
+					final Bundle provider = wire.getProviderWiring().getBundle();
+					if (provider != bundle && sorted.contains(provider)) {
+						bundleProviders.add(provider);
+						union(parents, bundle, provider);
+					}
+				}
+			}
+			providers.put(bundle, bundleProviders);
+		}
+
+		final Map<Bundle, List<Bundle>> groupsByRoot = new LinkedHashMap<>();
+		final Set<Bundle> visited = new HashSet<>();
+		for (final Bundle bundle : sorted) {
+			final List<Bundle> group = groupsByRoot.computeIfAbsent(find(parents, bundle), k -> new ArrayList<>());
+			visit(bundle, providers, visited, group);
+		}
+		return new ArrayList<>(groupsByRoot.values());
+	}
+
+	// depth-first post-order, adding the providers of a bundle before it; wiring
+	// cycles are broken at the first bundle visited
+	private static void visit(final Bundle bundle, final Map<Bundle, Set<Bundle>> providers,
+			final Set<Bundle> visited, final List<Bundle> order) {
+		if (!visited.add(bundle)) {
+			return;
+		}
+		for (final Bundle provider : providers.get(bundle)) {
+			visit(provider, providers, visited, order);
+		}
+		order.add(bundle);
+	}
+
+	private static Bundle find(final Map<Bundle, Bundle> parents, final Bundle bundle) {
+		Bundle root = bundle;
+		while (parents.get(root) != root) {
+			root = parents.get(root);
+		}
+		return root;
+	}
+
+	private static void union(final Map<Bundle, Bundle> parents, final Bundle a, final Bundle b) {
+		final Bundle rootA = find(parents, a);
+		final Bundle rootB = find(parents, b);
+		if (rootA == rootB) {
+			return;
+		}
+		// keep the lowest bundle ID as root so that groups are ordered by bundle ID
+		if (rootA.compareTo(rootB) < 0) {
+			parents.put(rootB, rootA);
+		} else {
+			parents.put(rootA, rootB);
+		}
+	}
+
+	private void restartGroup(final List<Bundle> group) {
+		for (int i = group.size() - 1; i >= 0; i--) {
+			stopBundle(group.get(i));
+		}
+		group.forEach(this::startBundle);
+	}
+
+	private void startBundle(final Bundle b) {
+		try {
+			b.start(START_TRANSIENT);
+		} catch (final BundleException e) {
+			logger.error("Could not start bundle {}", b, e);
+		}
+	}
+
+	private void stopBundle(final Bundle b) {
+		try {
+			b.stop(STOP_TRANSIENT);
+		} catch (final BundleException e) {
+			logger.error("Could not stop bundle {}", b, e);
+		}
+	}
+}
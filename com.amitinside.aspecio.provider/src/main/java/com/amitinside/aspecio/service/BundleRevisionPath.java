@@ -15,29 +15,67 @@
  ******************************************************************************/
 package com.amitinside.aspecio.service;
 
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import org.osgi.framework.wiring.BundleRevision;
 
+import com.amitinside.aspecio.util.ConcurrentWeakIdentityMap;
+
+import io.primeval.reflex.proxy.bytecode.ProxyClass;
 import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
 
+/**
+ * A node of the trie of bundle revision paths, holding the proxy class loader
+ * and the proxy classes of its path.
+ * <p>
+ * Lookups take no lock. Class loaders and proxy classes are created at most
+ * once per node.
+ */
 public final class BundleRevisionPath {
 
-	private ProxyClassLoader classLoader;
-	private Map<BundleRevision, BundleRevisionPath> subMap;
+	private final ConcurrentWeakIdentityMap<BundleRevision, BundleRevisionPath> subPaths = new ConcurrentWeakIdentityMap<>();
+
+	// Proxy classes defined by this path's class loader, weakly keyed by the woven
+	// implementation class and then by the ordered list of proxied interfaces
+	private final ConcurrentWeakIdentityMap<Class<?>, Map<List<Class<?>>, ProxyClass<?>>> proxyClasses = new ConcurrentWeakIdentityMap<>();
+
+	private volatile ProxyClassLoader classLoader;
+
+	public ProxyClassLoader computeClassLoaderIfAbsent(final Supplier<ProxyClassLoader> classLoaderSupplier) {
+		ProxyClassLoader loader = classLoader;
+		if (loader == null) {
+			synchronized (this) {
+				loader = classLoader;
+				if (loader == null) {
+					loader = classLoaderSupplier.get();
+					classLoader = loader;
+				}
+			}
+		}
+		return loader;
+	}
+
+	public BundleRevisionPath getSubPath(final BundleRevision bundleRevision) {
+		return subPaths.computeIfAbsent(bundleRevision, k -> new BundleRevisionPath());
+	}
 
-	public synchronized ProxyClassLoader computeClassLoaderIfAbsent(
-			final Supplier<ProxyClassLoader> classLoaderSupplier) {
-		classLoader = Optional.ofNullable(classLoader).orElse(classLoaderSupplier.get());
-		return classLoader;
+	public ProxyClass<?> computeProxyClassIfAbsent(final Class<?> implementationClass,
+			final List<Class<?>> interfaces, final Supplier<ProxyClass<?>> proxyClassSupplier) {
+		return proxyClasses.computeIfAbsent(implementationClass, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(interfaces, k -> proxyClassSupplier.get());
 	}
 
-	public synchronized Map<BundleRevision, BundleRevisionPath> computeSubMapIfAbsent(
-			final Supplier<Map<BundleRevision, BundleRevisionPath>> subMapSupplier) {
-		subMap = Optional.ofNullable(subMap).orElse(subMapSupplier.get());
-		return subMap;
+	/**
+	 * Removes the sub-paths of the matching revisions from the whole trie below
+	 * this node.
+	 */
+	public void prune(final Predicate<BundleRevision> predicate) {
+		subPaths.removeIf(predicate);
+		subPaths.forEachValue(subPath -> subPath.prune(predicate));
 	}
 
 }
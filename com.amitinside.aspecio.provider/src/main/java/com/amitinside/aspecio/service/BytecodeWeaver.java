@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_BRIDGE;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_NATIVE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SYNCHRONIZED;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ACC_TRANSIENT;
+import static org.objectweb.asm.Opcodes.ACC_VOLATILE;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASM9;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.F_SAME1;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.IF_ACMPEQ;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.V1_6;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+import com.amitinside.aspecio.weaving.WovenDispatch;
+
+/**
+ * Rewrites the service methods of a component class so that they call the
+ * interceptor chain of their woven service, as an alternative to registering a
+ * proxy of the service.
+ * <p>
+ * The original body of each method declared by the class and implementing one
+ * of the service interfaces is moved to a synthetic method suffixed with
+ * {@value #ORIGINAL_SUFFIX}, and the method itself, which keeps the
+ * annotations, asks {@link WovenDispatch} for the dispatcher of the instance
+ * and calls it through the service interface. Without binding, or once the
+ * chain calls the instance back, the method runs its original body. The class
+ * gets a public static {@value #BINDING_FIELD} field, holding the
+ * {@link WovenDispatch.Binding} of the class, and a field caching the
+ * dispatcher of each instance.
+ */
+public final class BytecodeWeaver {
+
+	/** Name of the static field holding the binding of a woven class. */
+	public static final String BINDING_FIELD = "aspecio$binding";
+
+	/** Suffix of the synthetic methods holding the original bodies. */
+	public static final String ORIGINAL_SUFFIX = "$aspecio";
+
+	/** Name of the instance field caching the dispatcher of each instance. */
+	public static final String DISPATCHER_FIELD = "aspecio$dispatcher";
+	private static final String OBJECT_DESC = Type.getDescriptor(Object.class);
+	private static final String OBJECT = Type.getInternalName(Object.class);
+	private static final String WOVEN_DISPATCH = Type.getInternalName(WovenDispatch.class);
+	private static final String DISPATCHER_DESC = Type.getMethodDescriptor(Type.getType(Object.class),
+			Type.getType(Object.class), Type.getType(Object.class), Type.getType(Object.class));
+
+	private BytecodeWeaver() {
+		// no instances
+	}
+
+	/**
+	 * Lists the methods of the given service interfaces that woven classes
+	 * dispatch, mapping their name and descriptor to the internal name of the
+	 * interface declaring them.
+	 */
+	public static Map<String, String> serviceMethods(final List<Class<?>> interfaces) {
+		final Map<String, String> methods = new HashMap<>();
+		for (final Class<?> intf : interfaces) {
+			for (final Method method : intf.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers())
+						|| !Modifier.isPublic(method.getDeclaringClass().getModifiers()) || isObjectMethod(method)) {
+					continue;
+				}
+				methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method),
+						Type.getInternalName(method.getDeclaringClass()));
+			}
+		}
+		return methods;
+	}
+
+	private static boolean isObjectMethod(final Method method) {
+		try {
+			Object.class.getMethod(method.getName(), method.getParameterTypes());
+			return true;
+		} catch (final NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Weaves a class.
+	 *
+	 * @param classBytes     the bytes of the class
+	 * @param serviceMethods the methods to dispatch, as listed by
+	 *                       {@link #serviceMethods(List)}
+	 * @return the bytes of the woven class, or {@code null} if the class declares
+	 *         none of the methods
+	 */
+	public static byte[] weave(final byte[] classBytes, final Map<String, String> serviceMethods) {
+		final ClassReader reader = new ClassReader(classBytes);
+		final ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		final WeavingClassVisitor visitor = new WeavingClassVisitor(writer, serviceMethods);
+		reader.accept(visitor, 0);
+		return visitor.wovenMethods == 0 ? null : writer.toByteArray();
+	}
+
+	private static final class WeavingClassVisitor extends ClassVisitor {
+
+		private final Map<String, String> serviceMethods;
+		private String owner;
+		private boolean interfaceType;
+		private boolean frames;
+		private int wovenMethods;
+
+		WeavingClassVisitor(final ClassVisitor cv, final Map<String, String> serviceMethods) {
+			super(ASM9, cv);
+			this.serviceMethods = serviceMethods;
+		}
+
+		@Override
+		public void visit(final int version, final int access, final String name, final String signature,
+				final String superName, final String[] interfaces) {
+			owner = name;
+			interfaceType = (access & ACC_INTERFACE) != 0;
+			// stack map frames are only written from Java 6 on
+			frames = (version & 0xFFFF) >= V1_6;
+			super.visit(version, access, name, signature, superName, interfaces);
+		}
+
+		@Override
+		public MethodVisitor visitMethod(final int access, final String name, final String descriptor,
+				final String signature, final String[] exceptions) {
+			final String service = interfaceType ? null : serviceMethods.get(name + descriptor);
+			if (service == null || (access & (ACC_STATIC | ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+				return super.visitMethod(access, name, descriptor, signature, exceptions);
+			}
+			wovenMethods++;
+			// the method keeps its name and annotations, which the aspects look up
+			final MethodVisitor dispatch = super.visitMethod(access & ~ACC_SYNCHRONIZED, name, descriptor,
+					signature, exceptions);
+			final MethodVisitor original = super.visitMethod((access & ~ACC_BRIDGE) | ACC_SYNTHETIC,
+					name + ORIGINAL_SUFFIX, descriptor, signature, exceptions);
+			return new MethodVisitor(ASM9, original) {
+
+				@Override
+				public void visitParameter(final String parameterName, final int parameterAccess) {
+					dispatch.visitParameter(parameterName, parameterAccess);
+					super.visitParameter(parameterName, parameterAccess);
+				}
+
+				@Override
+				public AnnotationVisitor visitAnnotation(final String annotationDescriptor, final boolean visible) {
+					return dispatch.visitAnnotation(annotationDescriptor, visible);
+				}
+
+				@Override
+				public AnnotationVisitor visitTypeAnnotation(final int typeRef, final TypePath typePath,
+						final String annotationDescriptor, final boolean visible) {
+					return dispatch.visitTypeAnnotation(typeRef, typePath, annotationDescriptor, visible);
+				}
+
+				@Override
+				public void visitAnnotableParameterCount(final int parameterCount, final boolean visible) {
+					dispatch.visitAnnotableParameterCount(parameterCount, visible);
+				}
+
+				@Override
+				public AnnotationVisitor visitParameterAnnotation(final int parameter,
+						final String annotationDescriptor, final boolean visible) {
+					return dispatch.visitParameterAnnotation(parameter, annotationDescriptor, visible);
+				}
+
+				@Override
+				public void visitCode() {
+					// the annotations are all visited by now
+					generateDispatch(dispatch, service, name, descriptor);
+					super.visitCode();
+				}
+			};
+		}
+
+		@Override
+		public void visitEnd() {
+			if (wovenMethods > 0) {
+				super.visitField(ACC_PUBLIC | ACC_STATIC | ACC_VOLATILE | ACC_SYNTHETIC, BINDING_FIELD, OBJECT_DESC,
+						null, null).visitEnd();
+				super.visitField(ACC_PRIVATE | ACC_VOLATILE | ACC_TRANSIENT | ACC_SYNTHETIC, DISPATCHER_FIELD,
+						OBJECT_DESC, null, null).visitEnd();
+			}
+			super.visitEnd();
+		}
+
+		private void generateDispatch(final MethodVisitor mv, final String service, final String name,
+				final String descriptor) {
+			final Label invoke = new Label();
+			final Label original = new Label();
+			mv.visitCode();
+			mv.visitFieldInsn(GETSTATIC, owner, BINDING_FIELD, OBJECT_DESC);
+			mv.visitInsn(DUP);
+			mv.visitJumpInsn(IFNULL, original);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, owner, DISPATCHER_FIELD, OBJECT_DESC);
+			mv.visitMethodInsn(INVOKESTATIC, WOVEN_DISPATCH, "dispatcher", DISPATCHER_DESC, false);
+			mv.visitInsn(DUP);
+			mv.visitJumpInsn(IFNULL, original);
+			// caches the dispatcher in the instance, only writing it once
+			mv.visitInsn(DUP);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, owner, DISPATCHER_FIELD, OBJECT_DESC);
+			mv.visitJumpInsn(IF_ACMPEQ, invoke);
+			mv.visitInsn(DUP);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitInsn(SWAP);
+			mv.visitFieldInsn(PUTFIELD, owner, DISPATCHER_FIELD, OBJECT_DESC);
+
+			mv.visitLabel(invoke);
+			if (frames) {
+				mv.visitFrame(F_SAME1, 0, null, 1, new Object[] { OBJECT });
+			}
+			mv.visitTypeInsn(CHECKCAST, service);
+			loadArguments(mv, descriptor);
+			mv.visitMethodInsn(INVOKEINTERFACE, service, name, descriptor, true);
+			mv.visitInsn(Type.getReturnType(descriptor).getOpcode(IRETURN));
+
+			mv.visitLabel(original);
+			if (frames) {
+				mv.visitFrame(F_SAME1, 0, null, 1, new Object[] { OBJECT });
+			}
+			mv.visitInsn(POP);
+			mv.visitVarInsn(ALOAD, 0);
+			loadArguments(mv, descriptor);
+			mv.visitMethodInsn(INVOKEVIRTUAL, owner, name + ORIGINAL_SUFFIX, descriptor, false);
+			mv.visitInsn(Type.getReturnType(descriptor).getOpcode(IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+
+		private static void loadArguments(final MethodVisitor mv, final String descriptor) {
+			int slot = 1;
+			for (final Type argument : Type.getArgumentTypes(descriptor)) {
+				mv.visitVarInsn(argument.getOpcode(ILOAD), slot);
+				slot += argument.getSize();
+			}
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_WEAVE_HEADER;
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE;
+import static com.amitinside.aspecio.util.AspecioUtil.asList;
+import static com.amitinside.aspecio.util.AspecioUtil.asSet;
+import static java.util.Objects.requireNonNull;
+import static org.osgi.framework.Constants.OBJECTCLASS;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.hooks.weaving.WeavingHook;
+import org.osgi.framework.hooks.weaving.WovenClass;
+import org.osgi.framework.hooks.weaving.WovenClassListener;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amitinside.aspecio.weaving.WovenDispatch;
+
+/**
+ * Weaves the weave candidates of the bundles in bytecode mode, as their
+ * classes are loaded.
+ * <p>
+ * Candidates are read, as by {@link WeaveCandidateTracker}, from the
+ * {@link com.amitinside.aspecio.api.AspecioConstants#ASPECIO_WEAVE_HEADER}
+ * manifest header and the Declarative Services component descriptions of each
+ * bundle revision. A service whose bundle declares a single candidate with the
+ * same service interfaces is woven through the {@link ClassBinding} of that
+ * candidate, which {@link BytecodeWeaver} rewrites, rather than through a
+ * registered proxy. The revisions already resolved when the hook is registered
+ * may have loaded their classes unwoven and are left to the proxies, until they
+ * are refreshed.
+ */
+public final class BytecodeWeavingHook implements WeavingHook, WovenClassListener {
+
+	private static final String WEAVING_PACKAGE = WovenDispatch.class.getPackage().getName();
+
+	private final Logger logger = LoggerFactory.getLogger(BytecodeWeavingHook.class);
+
+	private final BundleContext bundleContext;
+	private final long aspecioBundleId;
+	private final WeavingStatistics statistics;
+	private final Map<BundleRevision, RevisionState> states = new ConcurrentHashMap<>();
+	private final Set<BundleRevision> preexistingRevisions = ConcurrentHashMap.newKeySet();
+	private ServiceRegistration<?> registration;
+
+	public BytecodeWeavingHook(final BundleContext bundleContext, final WeavingStatistics statistics) {
+		this.bundleContext = requireNonNull(bundleContext, "'Bundle context cannot be null'");
+		this.statistics = requireNonNull(statistics, "'Statistics cannot be null'");
+		aspecioBundleId = bundleContext.getBundle().getBundleId();
+	}
+
+	public void open() {
+		registration = bundleContext.registerService(
+				new String[] { WeavingHook.class.getName(), WovenClassListener.class.getName() }, this, null);
+		// taken once the hook is registered, so that no revision slips through
+		for (final Bundle bundle : bundleContext.getBundles()) {
+			final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+			if (wiring != null) {
+				preexistingRevisions.add(wiring.getRevision());
+			}
+		}
+	}
+
+	public void close() {
+		if (registration != null) {
+			registration.unregister();
+			registration = null;
+		}
+		states.clear();
+		preexistingRevisions.clear();
+	}
+
+	/**
+	 * Forgets the revisions of an unresolved bundle, along with their classes.
+	 */
+	public void release(final Bundle bundle) {
+		states.keySet().removeIf(revision -> revision.getBundle().equals(bundle));
+		preexistingRevisions.removeIf(revision -> revision.getBundle().equals(bundle));
+	}
+
+	/**
+	 * Returns the binding of the class implementing a service, if the service is
+	 * woven in bytecode mode. The binding is claimed by the service, the other
+	 * services implemented by the same class being proxied. Services requesting
+	 * required aspects are proxied too, so that they stay hidden while their
+	 * aspects are missing.
+	 *
+	 * @return the binding, or {@code null} if the service must be proxied
+	 */
+	public ClassBinding getBinding(final ServiceReference<?> reference) {
+		if (!asList(reference.getProperty(SERVICE_ASPECT_WEAVE)).isEmpty()) {
+			return null;
+		}
+		final ClassBinding binding = getClassBinding(reference);
+		return binding != null && binding.claim(reference) ? binding : null;
+	}
+
+	/**
+	 * Returns the binding of the class implementing a service, whether or not it
+	 * is held by that service.
+	 *
+	 * @return the binding, or {@code null} if the class is not woven
+	 */
+	public ClassBinding getClassBinding(final ServiceReference<?> reference) {
+		final Bundle bundle = reference.getBundle();
+		if (bundle == null) {
+			return null; // unregistered meanwhile
+		}
+		final BundleRevision revision = bundle.adapt(BundleRevision.class);
+		if (!isWeavable(revision)) {
+			return null;
+		}
+		return stateOf(revision).bindingOf(asSet(reference.getProperty(OBJECTCLASS)));
+	}
+
+	private boolean isWeavable(final BundleRevision revision) {
+		if (revision == null || preexistingRevisions.contains(revision)) {
+			return false;
+		}
+		final long bundleId = revision.getBundle().getBundleId();
+		return bundleId != 0 && bundleId != aspecioBundleId;
+	}
+
+	private RevisionState stateOf(final BundleRevision revision) {
+		final RevisionState state = states.get(revision);
+		if (state != null) {
+			return state;
+		}
+		// read outside of the map, as it may load classes
+		final Bundle bundle = revision.getBundle();
+		final String header = bundle.getHeaders("").get(ASPECIO_WEAVE_HEADER);
+		final List<WeaveCandidate> candidates = WeaveCandidate.parse(header);
+		if (ComponentDescriptionReader.hasComponentDescriptions(bundle)) {
+			candidates.addAll(ComponentDescriptionReader.read(bundle));
+		}
+		final RevisionState previous = states.putIfAbsent(revision, new RevisionState(candidates));
+		return previous != null ? previous : states.get(revision);
+	}
+
+	@Override
+	public void weave(final WovenClass wovenClass) {
+		final BundleWiring wiring = wovenClass.getBundleWiring();
+		final BundleRevision revision = wiring.getRevision();
+		if (!isWeavable(revision)) {
+			return;
+		}
+		final RevisionState state = stateOf(revision);
+		final String className = wovenClass.getClassName();
+		final WeaveCandidate candidate = state.candidates.get(className);
+		if (candidate == null) {
+			return;
+		}
+		// a failure must not get the hook denied by the framework
+		try {
+			final ClassLoader classLoader = wiring.getClassLoader();
+			final List<Class<?>> interfaces = new ArrayList<>();
+			for (final String intf : candidate.objectClass) {
+				interfaces.add(classLoader.loadClass(intf));
+			}
+			final byte[] bytes = BytecodeWeaver.weave(wovenClass.getBytes(), BytecodeWeaver.serviceMethods(interfaces));
+			if (bytes == null) {
+				logger.warn("{} provided by {} declares no method of {}, not weaving it", className,
+						revision.getSymbolicName(), candidate.objectClass);
+				state.failedClasses.add(className);
+				return;
+			}
+			wovenClass.setBytes(bytes);
+			wovenClass.getDynamicImports().add(WEAVING_PACKAGE);
+			state.wovenClasses.add(className);
+			statistics.classWovenInBytecode();
+			logger.debug("Woven {} provided by {} in bytecode mode", className, revision.getSymbolicName());
+		} catch (final ClassNotFoundException | RuntimeException | LinkageError e) {
+			state.failedClasses.add(className);
+			logger.error("Could not weave {} provided by {}, its services will not be intercepted", className,
+					revision.getSymbolicName(), e);
+		}
+	}
+
+	@Override
+	public void modified(final WovenClass wovenClass) {
+		final int wovenState = wovenClass.getState();
+		if (wovenState != WovenClass.DEFINED && wovenState != WovenClass.DEFINE_FAILED) {
+			return;
+		}
+		final RevisionState state = states.get(wovenClass.getBundleWiring().getRevision());
+		final String className = wovenClass.getClassName();
+		if (state == null || !state.wovenClasses.contains(className)) {
+			return;
+		}
+		if (wovenState == WovenClass.DEFINED) {
+			state.binding(className).classDefined(wovenClass.getDefinedClass());
+		} else {
+			state.wovenClasses.remove(className);
+			state.failedClasses.add(className);
+		}
+	}
+
+	private static final class RevisionState {
+
+		final Map<String, WeaveCandidate> candidates = new HashMap<>();
+		// the implementation class of each set of service interfaces, null if ambiguous
+		final Map<Set<String>, String> classNames = new HashMap<>();
+		final Set<String> wovenClasses = ConcurrentHashMap.newKeySet();
+		final Set<String> failedClasses = ConcurrentHashMap.newKeySet();
+		final Map<String, ClassBinding> bindings = new ConcurrentHashMap<>();
+
+		RevisionState(final List<WeaveCandidate> candidates) {
+			for (final WeaveCandidate candidate : candidates) {
+				this.candidates.putIfAbsent(candidate.implementationClass, candidate);
+				final Set<String> objectClass = new HashSet<>(candidate.objectClass);
+				final String className = classNames.get(objectClass);
+				if (className == null && !classNames.containsKey(objectClass)) {
+					classNames.put(objectClass, candidate.implementationClass);
+				} else if (className != null && !className.equals(candidate.implementationClass)) {
+					classNames.put(objectClass, null);
+				}
+			}
+		}
+
+		ClassBinding bindingOf(final Set<String> objectClass) {
+			final String className = classNames.get(objectClass);
+			if (className == null || failedClasses.contains(className)) {
+				return null;
+			}
+			return binding(className);
+		}
+
+		ClassBinding binding(final String className) {
+			return bindings.computeIfAbsent(className, ClassBinding::new);
+		}
+	}
+}
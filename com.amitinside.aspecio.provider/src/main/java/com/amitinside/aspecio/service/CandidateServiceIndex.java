@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE;
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_OPTIONAL;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.osgi.framework.ServiceReference;
+
+/**
+ * The registered services requesting weaving, whose originals the service hooks
+ * hide from other bundles.
+ * <p>
+ * Service references are tracked directly rather than by service ID, as reading
+ * the ID of a reference is a property lookup in itself. Candidates woven without a
+ * proxy, which stay visible, are left out through a filter.
+ */
+public final class CandidateServiceIndex {
+
+	private final Set<ServiceReference<?>> candidates = ConcurrentHashMap.newKeySet();
+	private final Predicate<ServiceReference<?>> hidden;
+
+	public CandidateServiceIndex() {
+		this(reference -> true);
+	}
+
+	/**
+	 * @param hidden tells whether a candidate is woven through a proxy, and so
+	 *               hidden
+	 */
+	public CandidateServiceIndex(final Predicate<ServiceReference<?>> hidden) {
+		this.hidden = hidden;
+	}
+
+	public static boolean isCandidate(final ServiceReference<?> reference) {
+		return reference.getProperty(SERVICE_ASPECT_WEAVE) != null
+				|| reference.getProperty(SERVICE_ASPECT_WEAVE_OPTIONAL) != null;
+	}
+
+	/**
+	 * Indexes or unindexes a service according to its current properties.
+	 *
+	 * @return whether the service requests weaving and is hidden
+	 */
+	public boolean update(final ServiceReference<?> reference) {
+		if (isCandidate(reference) && hidden.test(reference)) {
+			candidates.add(reference);
+			return true;
+		}
+		candidates.remove(reference);
+		return false;
+	}
+
+	public void add(final ServiceReference<?> reference) {
+		if (hidden.test(reference)) {
+			candidates.add(reference);
+		}
+	}
+
+	public void remove(final ServiceReference<?> reference) {
+		candidates.remove(reference);
+	}
+
+	public boolean contains(final ServiceReference<?> reference) {
+		return candidates.contains(reference);
+	}
+
+	public boolean isEmpty() {
+		return candidates.isEmpty();
+	}
+
+	public int size() {
+		return candidates.size();
+	}
+
+	public void clear() {
+		candidates.clear();
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static io.primeval.reflex.proxy.Interceptor.DEFAULT;
+import static java.util.Arrays.asList;
+
+import java.lang.reflect.Field;
+
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amitinside.aspecio.util.ConcurrentWeakIdentityMap;
+import com.amitinside.aspecio.weaving.WovenDispatch;
+
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.Interceptors;
+import io.primeval.reflex.proxy.bytecode.Proxy;
+
+/**
+ * Binding of a class woven in bytecode mode to the woven service it
+ * implements.
+ * <p>
+ * A binding lives as long as its class, and the dispatchers it creates, which
+ * the instances of the class cache, stay valid across services: binding it to
+ * another service only retargets the interceptor they share. The binding is
+ * published in the static field of the class while a service is bound and the
+ * class is defined, whichever comes first, as a delayed component registers
+ * its service before loading its class.
+ * <p>
+ * Several services may share a class, e.g. the configurations of a component.
+ * The first one claims the binding, while the others are proxied and their
+ * instances excluded from the binding, so that they run their original methods
+ * behind their proxies.
+ */
+public final class ClassBinding implements WovenDispatch.Binding {
+
+	private final Logger logger = LoggerFactory.getLogger(ClassBinding.class);
+
+	private final String className;
+	// the interceptor of the bound service, then the original method
+	private final SharedInterceptor interceptor = new SharedInterceptor(DEFAULT);
+	private final Interceptor chain = Interceptors
+			.stack(asList(interceptor, OriginalCallInterceptor.INSTANCE).iterator());
+
+	// written under the lock of the binding
+	private Field bindingField;
+	private volatile Field dispatcherField;
+	private ServiceReference<?> owner;
+	private volatile AspecioServiceObject boundService;
+	private final ConcurrentWeakIdentityMap<Object, Boolean> proxiedInstances = new ConcurrentWeakIdentityMap<>();
+
+	public ClassBinding(final String className) {
+		this.className = className;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * Called once the woven class is defined.
+	 */
+	public synchronized void classDefined(final Class<?> wovenClass) {
+		try {
+			bindingField = wovenClass.getField(BytecodeWeaver.BINDING_FIELD);
+			// the class itself need not be public
+			bindingField.setAccessible(true);
+			final Field field = wovenClass.getDeclaredField(BytecodeWeaver.DISPATCHER_FIELD);
+			field.setAccessible(true);
+			dispatcherField = field;
+		} catch (final NoSuchFieldException | RuntimeException e) {
+			logger.error("Could not find the binding of the woven class {}, its service will not be intercepted",
+					className, e);
+			return;
+		}
+		publish();
+	}
+
+	/**
+	 * Claims the binding for a service, unless another live service holds it.
+	 *
+	 * @return whether the service holds the binding
+	 */
+	public synchronized boolean claim(final ServiceReference<?> reference) {
+		if (owner != null && !owner.equals(reference) && owner.getBundle() != null) {
+			return false;
+		}
+		owner = reference;
+		return true;
+	}
+
+	/**
+	 * Releases the binding held by a departed service.
+	 */
+	public synchronized void release(final ServiceReference<?> reference) {
+		if (reference.equals(owner)) {
+			owner = null;
+		}
+	}
+
+	/**
+	 * Lets an instance of the class run its original methods whatever the bound
+	 * service, as it is proxied on behalf of another service.
+	 */
+	public void excludeInstance(final Object instance) {
+		proxiedInstances.computeIfAbsent(instance, k -> Boolean.TRUE);
+		final Field field = dispatcherField;
+		if (field == null) {
+			return;
+		}
+		try {
+			// drops the dispatcher the instance may have cached meanwhile
+			field.set(instance, null);
+		} catch (final IllegalAccessException e) {
+			logger.error("Could not reset the dispatcher of an instance of the woven class {}", className, e);
+		}
+	}
+
+	/**
+	 * Dispatches the calls of the instances of the class to the interceptor chain
+	 * of a service.
+	 */
+	public synchronized void bind(final AspecioServiceObject service) {
+		if (boundService != null && boundService != service) {
+			logger.warn("Woven class {} was bound to another service, only its last service is intercepted",
+					className);
+		}
+		boundService = service;
+		interceptor.set(service.getInterceptor());
+		publish();
+	}
+
+	/**
+	 * Lets the instances of the class run their original methods, unless the
+	 * class was bound to another service meanwhile.
+	 */
+	public synchronized void unbind(final AspecioServiceObject service) {
+		if (boundService != service) {
+			return;
+		}
+		boundService = null;
+		interceptor.set(DEFAULT);
+		publish();
+	}
+
+	public synchronized boolean isBound(final AspecioServiceObject service) {
+		return boundService == service;
+	}
+
+	private void publish() {
+		if (bindingField == null) {
+			return;
+		}
+		try {
+			bindingField.set(null, boundService != null ? this : null);
+		} catch (final IllegalAccessException e) {
+			logger.error("Could not bind the woven class {}", className, e);
+		}
+	}
+
+	@Override
+	public Object dispatcherOf(final Object self) {
+		final AspecioServiceObject service = boundService;
+		if (service == null || proxiedInstances.get(self) != null) {
+			// unbound meanwhile, a later call creates the dispatcher, or proxied
+			return null;
+		}
+		final Proxy dispatcher = service.newProxy(self);
+		dispatcher.setInterceptor(chain);
+		return dispatcher;
+	}
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE;
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_ENGINE;
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_OPTIONAL;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Reads the Declarative Services component descriptions of a bundle and
+ * extracts the components registering a service with weaving properties.
+ */
+public final class ComponentDescriptionReader {
+
+	private static final String SERVICE_COMPONENT_HEADER = "Service-Component";
+	private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+
+	private static final Logger logger = LoggerFactory.getLogger(ComponentDescriptionReader.class);
+
+	private ComponentDescriptionReader() {
+		throw new IllegalAccessError("Cannot be instantiated");
+	}
+
+	public static boolean hasComponentDescriptions(final Bundle bundle) {
+		return bundle.getHeaders("").get(SERVICE_COMPONENT_HEADER) != null;
+	}
+
+	public static List<WeaveCandidate> read(final Bundle bundle) {
+		final List<WeaveCandidate> candidates = new ArrayList<>();
+		final String header = bundle.getHeaders("").get(SERVICE_COMPONENT_HEADER);
+		if (header == null) {
+			return candidates;
+		}
+		final DocumentBuilder documentBuilder;
+		try {
+			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.setExpandEntityReferences(false);
+			// component descriptions come from arbitrary bundles, never resolve
+			// external entities or DTDs while reading them
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			factory.setFeature(LOAD_EXTERNAL_DTD, false);
+			documentBuilder = factory.newDocumentBuilder();
+		} catch (final Exception e) {
+			logger.warn("Could not create an XML parser to read component descriptions", e);
+			return candidates;
+		}
+		for (final String path : header.split(",")) {
+			final String trimmed = path.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+			final int slash = trimmed.lastIndexOf('/');
+			final String directory = slash < 0 ? "/" : trimmed.substring(0, slash);
+			final String pattern = trimmed.substring(slash + 1);
+			final Enumeration<URL> entries = bundle.findEntries(directory, pattern, false);
+			while (entries != null && entries.hasMoreElements()) {
+				final URL entry = entries.nextElement();
+				try (InputStream in = entry.openStream()) {
+					collect(documentBuilder.parse(in), candidates);
+				} catch (final Exception e) {
+					logger.debug("Could not read component description {} of {}", entry, bundle.getSymbolicName(), e);
+				}
+			}
+		}
+		return candidates;
+	}
+
+	private static void collect(final Document document, final List<WeaveCandidate> candidates) {
+		final NodeList components = document.getElementsByTagNameNS("*", "component");
+		for (int i = 0; i < components.getLength(); i++) {
+			final Element component = (Element) components.item(i);
+			final Element implementation = firstChild(component, "implementation");
+			final Element service = firstChild(component, "service");
+			if (implementation == null || service == null || !requestsWeaving(component)) {
+				continue;
+			}
+			final List<String> objectClass = new ArrayList<>();
+			for (final Element provide : children(service, "provide")) {
+				objectClass.add(provide.getAttribute("interface"));
+			}
+			if (!objectClass.isEmpty()) {
+				candidates.add(new WeaveCandidate(implementation.getAttribute("class"), objectClass,
+						propertyValue(component, SERVICE_ASPECT_WEAVE_ENGINE)));
+			}
+		}
+	}
+
+	private static boolean requestsWeaving(final Element component) {
+		for (final Element property : children(component, "property")) {
+			final String name = property.getAttribute("name");
+			if (SERVICE_ASPECT_WEAVE.equals(name) || SERVICE_ASPECT_WEAVE_OPTIONAL.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// a single valued property is either set by its value attribute or by its text
+	private static String propertyValue(final Element component, final String name) {
+		for (final Element property : children(component, "property")) {
+			if (name.equals(property.getAttribute("name"))) {
+				final String value = property.hasAttribute("value") ? property.getAttribute("value")
+						: property.getTextContent();
+				return value == null || value.trim().isEmpty() ? null : value.trim();
+			}
+		}
+		return null;
+	}
+
+	private static Element firstChild(final Element parent, final String localName) {
+		final List<Element> children = children(parent, localName);
+		return children.isEmpty() ? null : children.get(0);
+	}
+
+	private static List<Element> children(final Element parent, final String localName) {
+		final List<Element> children = new ArrayList<>();
+		for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node instanceof Element && localName.equals(node.getLocalName())) {
+				children.add((Element) node);
+			}
+		}
+		return children;
+	}
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_VOLATILE;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IF_ACMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import com.amitinside.aspecio.util.Exceptions;
+
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.bytecode.Proxy;
+
+/**
+ * Wraps the proxies of woven services so that they delegate straight to their
+ * service object while bound to {@link Interceptor#DEFAULT}.
+ * <p>
+ * A generated wrapper implements the service interfaces of its proxy and calls
+ * its current target through them: the service object while no aspect is
+ * satisfied, at the cost of a plain interface call without any argument array
+ * or call context, and the proxy otherwise. Binding the wrapper to another
+ * interceptor binds the proxy first and then switches the target with a single
+ * volatile write. One wrapper class is generated per proxy class, in a class
+ * loader of its own child of the proxy class loader, and is released along with
+ * it.
+ */
+public final class DirectDelegation {
+
+	private static final String WRAPPER_PREFIX = DirectDelegation.class.getPackage().getName().replace('.', '/')
+			+ "/DirectDelegation$$";
+	private static final String OBJECT = Type.getInternalName(Object.class);
+	private static final String PROXY = Type.getInternalName(Proxy.class);
+	private static final String INTERCEPTOR = Type.getInternalName(Interceptor.class);
+	private static final String INTERCEPTOR_DESC = Type.getDescriptor(Interceptor.class);
+	private static final String PROXY_DESC = Type.getDescriptor(Proxy.class);
+	private static final String OBJECT_DESC = Type.getDescriptor(Object.class);
+
+	private static final AtomicLong ids = new AtomicLong();
+
+	// null for the proxy classes that cannot be wrapped
+	private static final ClassValue<Constructor<?>> wrappers = new ClassValue<Constructor<?>>() {
+		@Override
+		protected Constructor<?> computeValue(final Class<?> proxyClass) {
+			return generate(proxyClass);
+		}
+	};
+
+	private DirectDelegation() {
+		// no instance
+	}
+
+	/**
+	 * Wraps a proxy of the given service object, or returns the proxy itself if
+	 * one of its service interfaces is not public.
+	 */
+	public static Proxy wrap(final Proxy proxy, final Object delegate) {
+		final Constructor<?> wrapper = wrappers.get(proxy.getClass());
+		if (wrapper == null) {
+			return proxy;
+		}
+		try {
+			return (Proxy) wrapper.newInstance(delegate, proxy);
+		} catch (final ReflectiveOperationException e) {
+			throw Exceptions.duck(e);
+		}
+	}
+
+	private static Constructor<?> generate(final Class<?> proxyClass) {
+		final List<Class<?>> interfaces = new ArrayList<>();
+		for (final Class<?> intf : proxyClass.getInterfaces()) {
+			if (intf == Proxy.class) {
+				continue;
+			}
+			if (!Modifier.isPublic(intf.getModifiers())) {
+				return null;
+			}
+			interfaces.add(intf);
+		}
+		if (interfaces.isEmpty()) {
+			return null;
+		}
+		final String wrapper = WRAPPER_PREFIX + ids.incrementAndGet();
+		final WrapperClassLoader classLoader = new WrapperClassLoader(proxyClass.getClassLoader());
+		try {
+			return classLoader.define(wrapper, generateWrapper(wrapper, interfaces)).getConstructor(Object.class,
+					Proxy.class);
+		} catch (final NoSuchMethodException e) {
+			throw Exceptions.duck(e);
+		}
+	}
+
+	private static byte[] generateWrapper(final String wrapper, final List<Class<?>> interfaces) {
+		final String[] interfaceNames = new String[interfaces.size() + 1];
+		for (int i = 0; i < interfaces.size(); i++) {
+			interfaceNames[i] = Type.getInternalName(interfaces.get(i));
+		}
+		interfaceNames[interfaces.size()] = PROXY;
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+			@Override
+			protected String getCommonSuperClass(final String type1, final String type2) {
+				// only the service object and the proxy meet, without loading their types
+				return OBJECT;
+			}
+		};
+		cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, wrapper, null, OBJECT, interfaceNames);
+		cw.visitField(ACC_PRIVATE | ACC_FINAL, "delegate", OBJECT_DESC, null, null).visitEnd();
+		cw.visitField(ACC_PRIVATE | ACC_FINAL, "proxy", PROXY_DESC, null, null).visitEnd();
+		cw.visitField(ACC_PRIVATE | ACC_VOLATILE, "target", OBJECT_DESC, null, null).visitEnd();
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + OBJECT_DESC + PROXY_DESC + ")V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitFieldInsn(PUTFIELD, wrapper, "delegate", OBJECT_DESC);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitFieldInsn(PUTFIELD, wrapper, "proxy", PROXY_DESC);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitFieldInsn(PUTFIELD, wrapper, "target", OBJECT_DESC);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// binds the proxy, then targets the service object or the proxy
+		mv = cw.visitMethod(ACC_PUBLIC, "setInterceptor", "(" + INTERCEPTOR_DESC + ")V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, wrapper, "proxy", PROXY_DESC);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitMethodInsn(INVOKEINTERFACE, PROXY, "setInterceptor", "(" + INTERCEPTOR_DESC + ")V", true);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitFieldInsn(GETSTATIC, INTERCEPTOR, "DEFAULT", INTERCEPTOR_DESC);
+		final Label intercepted = new Label();
+		final Label set = new Label();
+		mv.visitJumpInsn(IF_ACMPNE, intercepted);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, wrapper, "delegate", OBJECT_DESC);
+		mv.visitJumpInsn(GOTO, set);
+		mv.visitLabel(intercepted);
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, wrapper, "proxy", PROXY_DESC);
+		mv.visitLabel(set);
+		mv.visitFieldInsn(PUTFIELD, wrapper, "target", OBJECT_DESC);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for (final Map.Entry<String, Method> entry : serviceMethods(interfaces).entrySet()) {
+			final Method method = entry.getValue();
+			final Type methodType = Type.getType(method);
+			final String owner = Type.getInternalName(method.getDeclaringClass());
+			mv = cw.visitMethod(ACC_PUBLIC, method.getName(), methodType.getDescriptor(), null,
+					exceptionNames(method));
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, wrapper, "target", OBJECT_DESC);
+			mv.visitTypeInsn(CHECKCAST, owner);
+			int slot = 1;
+			for (final Type argumentType : methodType.getArgumentTypes()) {
+				mv.visitVarInsn(argumentType.getOpcode(ILOAD), slot);
+				slot += argumentType.getSize();
+			}
+			mv.visitMethodInsn(INVOKEINTERFACE, owner, method.getName(), methodType.getDescriptor(), true);
+			mv.visitInsn(methodType.getReturnType().getOpcode(IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	// the instance methods of the interfaces by name and descriptor, except the
+	// ones of Object which the wrapper keeps as is
+	private static Map<String, Method> serviceMethods(final List<Class<?>> interfaces) {
+		final Map<String, Method> methods = new LinkedHashMap<>();
+		for (final Class<?> intf : interfaces) {
+			for (final Method method : intf.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers()) || isObjectMethod(method)) {
+					continue;
+				}
+				methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
+			}
+		}
+		return methods;
+	}
+
+	private static boolean isObjectMethod(final Method method) {
+		try {
+			Object.class.getMethod(method.getName(), method.getParameterTypes());
+			return true;
+		} catch (final NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static String[] exceptionNames(final Method method) {
+		final Class<?>[] exceptionTypes = method.getExceptionTypes();
+		if (exceptionTypes.length == 0) {
+			return null;
+		}
+		final String[] names = new String[exceptionTypes.length];
+		for (int i = 0; i < exceptionTypes.length; i++) {
+			names[i] = Type.getInternalName(exceptionTypes[i]);
+		}
+		return names;
+	}
+
+	private static final class WrapperClassLoader extends ClassLoader {
+
+		static {
+			registerAsParallelCapable();
+		}
+
+		WrapperClassLoader(final ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(final String internalName, final byte[] bytes) {
+			return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,440 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import com.amitinside.aspecio.util.Exceptions;
+
+import io.primeval.reflex.proxy.CallContext;
+import io.primeval.reflex.proxy.Interceptor;
+
+/**
+ * Generates a chain class specialized for an ordered list of interceptors, as
+ * an alternative to {@link io.primeval.reflex.proxy.Interceptors#stack}.
+ * <p>
+ * Each stage of a generated chain calls its interceptor from its own call site
+ * and passes it a handler class of its own continuing with the next stage, so
+ * that the calls between stages stay monomorphic and can be inlined by the
+ * JIT, where a generic stack shares its call sites among all its stages and
+ * all the woven services.
+ * <p>
+ * The handler classes are derived from the {@code onCall} overloads of
+ * {@link Interceptor} and the methods of their handler interfaces. In a stage
+ * handler, {@code invoke()} continues with the next stage, a method returning
+ * another handler type (such as {@code boxed()}) returns a stage handler of
+ * that type, and {@code invoke} with arguments continues with the next stage
+ * through a handler bound to these arguments. Other methods delegate to the
+ * handler of the proxy. Each chain has a class loader of its own, so that its
+ * classes are unloaded along with it.
+ */
+public final class FusedChainGenerator {
+
+	private static final String CHAIN_PREFIX = FusedChainGenerator.class.getPackage().getName().replace('.', '/')
+			+ "/FusedChain$$";
+	private static final String OBJECT = Type.getInternalName(Object.class);
+	private static final String INTERCEPTOR = Type.getInternalName(Interceptor.class);
+	private static final String CALL_CONTEXT_DESC = Type.getDescriptor(CallContext.class);
+
+	private static final List<HandlerType> HANDLER_TYPES = handlerTypes();
+
+	private final AtomicLong ids = new AtomicLong();
+
+	/**
+	 * Returns a chain calling the given interceptors in order, the first one
+	 * being the outermost.
+	 */
+	public Interceptor generate(final List<Interceptor> interceptors) {
+		final String chain = CHAIN_PREFIX + ids.incrementAndGet();
+		final ChainClassLoader classLoader = new ChainClassLoader(Interceptor.class.getClassLoader());
+		// nested classes first, they are only linked on the first call
+		for (final HandlerType handlerType : HANDLER_TYPES) {
+			for (int stage = 1; stage < interceptors.size(); stage++) {
+				classLoader.define(stageHandlerName(chain, handlerType, stage),
+						generateStageHandler(chain, handlerType, stage));
+			}
+			for (final String arguments : handlerType.argumentInvokers.keySet()) {
+				classLoader.define(boundHandlerName(chain, handlerType, arguments),
+						generateBoundHandler(chain, handlerType, arguments));
+			}
+		}
+		try {
+			return (Interceptor) classLoader.define(chain, generateChain(chain, interceptors.size()))
+					.getConstructor(Interceptor[].class).newInstance((Object) interceptors.toArray(new Interceptor[0]));
+		} catch (final ReflectiveOperationException e) {
+			throw Exceptions.duck(e);
+		}
+	}
+
+	private static byte[] generateChain(final String chain, final int size) {
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, chain, null, OBJECT, new String[] { INTERCEPTOR });
+		for (int i = 0; i < size; i++) {
+			cw.visitField(ACC_FINAL, "i" + i, Type.getDescriptor(Interceptor.class), null, null).visitEnd();
+		}
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([" + Type.getDescriptor(Interceptor.class) + ")V",
+				null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+		for (int i = 0; i < size; i++) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitLdcInsn(i);
+			mv.visitInsn(AALOAD);
+			mv.visitFieldInsn(PUTFIELD, chain, "i" + i, Type.getDescriptor(Interceptor.class));
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for (final HandlerType handlerType : HANDLER_TYPES) {
+			// the first stage is the interceptor itself, the next ones are reached
+			// from the stage handlers
+			for (int stage = 0; stage < size; stage++) {
+				mv = cw.visitMethod(stage == 0 ? ACC_PUBLIC : ACC_FINAL, stage == 0 ? "onCall" : "s" + stage,
+						handlerType.onCallDescriptor, null, null);
+				mv.visitCode();
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, chain, "i" + stage, Type.getDescriptor(Interceptor.class));
+				mv.visitVarInsn(ALOAD, 1);
+				if (stage + 1 < size) {
+					final String stageHandler = stageHandlerName(chain, handlerType, stage + 1);
+					mv.visitTypeInsn(NEW, stageHandler);
+					mv.visitInsn(DUP);
+					mv.visitVarInsn(ALOAD, 0);
+					mv.visitVarInsn(ALOAD, 1);
+					mv.visitVarInsn(ALOAD, 2);
+					mv.visitMethodInsn(INVOKESPECIAL, stageHandler, "<init>",
+							stageHandlerConstructor(chain, handlerType), false);
+				} else {
+					mv.visitVarInsn(ALOAD, 2);
+				}
+				mv.visitMethodInsn(INVOKEINTERFACE, INTERCEPTOR, "onCall", handlerType.onCallDescriptor, true);
+				mv.visitInsn(handlerType.returnType.getOpcode(IRETURN));
+				mv.visitMaxs(0, 0);
+				mv.visitEnd();
+			}
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	// the handler passed to the interceptor of the previous stage
+	private static byte[] generateStageHandler(final String chain, final HandlerType handlerType, final int stage) {
+		final String name = stageHandlerName(chain, handlerType, stage);
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_8, ACC_FINAL | ACC_SUPER, name, null, OBJECT, new String[] { handlerType.internalName });
+		cw.visitField(ACC_FINAL, "chain", "L" + chain + ";", null, null).visitEnd();
+		cw.visitField(ACC_FINAL, "context", CALL_CONTEXT_DESC, null, null).visitEnd();
+		cw.visitField(ACC_FINAL, "handler", handlerType.descriptor, null, null).visitEnd();
+
+		MethodVisitor mv = cw.visitMethod(0, "<init>", stageHandlerConstructor(chain, handlerType), null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+		putField(mv, name, "chain", "L" + chain + ";", 1);
+		putField(mv, name, "context", CALL_CONTEXT_DESC, 2);
+		putField(mv, name, "handler", handlerType.descriptor, 3);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for (final Method method : handlerType.methods) {
+			final Type methodType = Type.getType(method);
+			mv = cw.visitMethod(ACC_PUBLIC, method.getName(), methodType.getDescriptor(), null, null);
+			mv.visitCode();
+			final HandlerType converted = handlerType.conversions.get(method);
+			if (handlerType.invoker.equals(method)) {
+				// continues with the next stage
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "chain", "L" + chain + ";");
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "context", CALL_CONTEXT_DESC);
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "handler", handlerType.descriptor);
+				mv.visitMethodInsn(INVOKEVIRTUAL, chain, "s" + stage, handlerType.onCallDescriptor, false);
+			} else if (converted != null) {
+				// a stage handler of the other type, continuing with the same stage
+				final String other = stageHandlerName(chain, converted, stage);
+				mv.visitTypeInsn(NEW, other);
+				mv.visitInsn(DUP);
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "chain", "L" + chain + ";");
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "context", CALL_CONTEXT_DESC);
+				delegate(mv, name, handlerType, method);
+				mv.visitMethodInsn(INVOKESPECIAL, other, "<init>", stageHandlerConstructor(chain, converted), false);
+			} else if (handlerType.argumentInvokers.containsValue(method)) {
+				// continues with the next stage, which ends up invoking the service with
+				// these arguments
+				final String arguments = argumentsDescriptor(method);
+				final String bound = boundHandlerName(chain, handlerType, arguments);
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "chain", "L" + chain + ";");
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "context", CALL_CONTEXT_DESC);
+				mv.visitTypeInsn(NEW, bound);
+				mv.visitInsn(DUP);
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "handler", handlerType.descriptor);
+				loadArguments(mv, methodType);
+				mv.visitMethodInsn(INVOKESPECIAL, bound, "<init>",
+						boundHandlerConstructor(handlerType, arguments), false);
+				mv.visitMethodInsn(INVOKEVIRTUAL, chain, "s" + stage, handlerType.onCallDescriptor, false);
+			} else {
+				delegate(mv, name, handlerType, method);
+			}
+			mv.visitInsn(methodType.getReturnType().getOpcode(IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	// the handler invoking the service with the arguments given by an interceptor
+	private static byte[] generateBoundHandler(final String chain, final HandlerType handlerType,
+			final String arguments) {
+		final String name = boundHandlerName(chain, handlerType, arguments);
+		final Type[] argumentTypes = Type.getArgumentTypes(arguments + "V");
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_8, ACC_FINAL | ACC_SUPER, name, null, OBJECT, new String[] { handlerType.internalName });
+		cw.visitField(ACC_FINAL, "handler", handlerType.descriptor, null, null).visitEnd();
+		for (int i = 0; i < argumentTypes.length; i++) {
+			cw.visitField(ACC_FINAL, "a" + i, argumentTypes[i].getDescriptor(), null, null).visitEnd();
+		}
+
+		MethodVisitor mv = cw.visitMethod(0, "<init>", boundHandlerConstructor(handlerType, arguments), null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+		putField(mv, name, "handler", handlerType.descriptor, 1);
+		int slot = 2;
+		for (int i = 0; i < argumentTypes.length; i++) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(argumentTypes[i].getOpcode(ILOAD), slot);
+			mv.visitFieldInsn(PUTFIELD, name, "a" + i, argumentTypes[i].getDescriptor());
+			slot += argumentTypes[i].getSize();
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		final Method boundInvoker = handlerType.argumentInvokers.get(arguments);
+		for (final Method method : handlerType.methods) {
+			final Type methodType = Type.getType(method);
+			mv = cw.visitMethod(ACC_PUBLIC, method.getName(), methodType.getDescriptor(), null, null);
+			mv.visitCode();
+			final HandlerType converted = handlerType.conversions.get(method);
+			if (handlerType.invoker.equals(method)) {
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, name, "handler", handlerType.descriptor);
+				loadFields(mv, name, argumentTypes);
+				mv.visitMethodInsn(INVOKEINTERFACE, handlerType.internalName, boundInvoker.getName(),
+						Type.getMethodDescriptor(boundInvoker), true);
+			} else if (converted != null && converted.argumentInvokers.containsKey(arguments)) {
+				// keeps the arguments when converted, e.g. boxed
+				final String other = boundHandlerName(chain, converted, arguments);
+				mv.visitTypeInsn(NEW, other);
+				mv.visitInsn(DUP);
+				delegate(mv, name, handlerType, method);
+				loadFields(mv, name, argumentTypes);
+				mv.visitMethodInsn(INVOKESPECIAL, other, "<init>", boundHandlerConstructor(converted, arguments),
+						false);
+			} else {
+				delegate(mv, name, handlerType, method);
+			}
+			mv.visitInsn(methodType.getReturnType().getOpcode(IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	// calls the same method on the handler of the proxy
+	private static void delegate(final MethodVisitor mv, final String owner, final HandlerType handlerType,
+			final Method method) {
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitFieldInsn(GETFIELD, owner, "handler", handlerType.descriptor);
+		loadArguments(mv, Type.getType(method));
+		mv.visitMethodInsn(INVOKEINTERFACE, handlerType.internalName, method.getName(), Type.getMethodDescriptor(method),
+				true);
+	}
+
+	private static void putField(final MethodVisitor mv, final String owner, final String field,
+			final String descriptor, final int slot) {
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, slot);
+		mv.visitFieldInsn(PUTFIELD, owner, field, descriptor);
+	}
+
+	private static void loadArguments(final MethodVisitor mv, final Type methodType) {
+		int slot = 1;
+		for (final Type argumentType : methodType.getArgumentTypes()) {
+			mv.visitVarInsn(argumentType.getOpcode(ILOAD), slot);
+			slot += argumentType.getSize();
+		}
+	}
+
+	private static void loadFields(final MethodVisitor mv, final String owner, final Type[] types) {
+		for (int i = 0; i < types.length; i++) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, owner, "a" + i, types[i].getDescriptor());
+		}
+	}
+
+	private static String stageHandlerName(final String chain, final HandlerType handlerType, final int stage) {
+		return chain + "$H" + handlerType.index + "_" + stage;
+	}
+
+	private static String stageHandlerConstructor(final String chain, final HandlerType handlerType) {
+		return "(L" + chain + ";" + CALL_CONTEXT_DESC + handlerType.descriptor + ")V";
+	}
+
+	private static String boundHandlerName(final String chain, final HandlerType handlerType,
+			final String arguments) {
+		return chain + "$B" + handlerType.index + "_" + handlerType.boundIndex(arguments);
+	}
+
+	private static String boundHandlerConstructor(final HandlerType handlerType, final String arguments) {
+		return "(" + handlerType.descriptor + arguments.substring(1) + "V";
+	}
+
+	// "(I)" for a method taking an int
+	private static String argumentsDescriptor(final Method method) {
+		final String descriptor = Type.getMethodDescriptor(method);
+		return descriptor.substring(0, descriptor.indexOf(')') + 1);
+	}
+
+	// The handler types of the onCall overloads of Interceptor, and how their
+	// methods are implemented by the generated handlers
+	private static List<HandlerType> handlerTypes() {
+		final List<HandlerType> handlerTypes = new ArrayList<>();
+		final Map<Class<?>, HandlerType> byClass = new LinkedHashMap<>();
+		for (final Method onCall : Interceptor.class.getMethods()) {
+			final Class<?>[] parameterTypes = onCall.getParameterTypes();
+			if (!"onCall".equals(onCall.getName()) || parameterTypes.length != 2
+					|| parameterTypes[0] != CallContext.class || !parameterTypes[1].isInterface()) {
+				continue;
+			}
+			final HandlerType handlerType = new HandlerType(handlerTypes.size(), parameterTypes[1], onCall);
+			handlerTypes.add(handlerType);
+			byClass.put(handlerType.type, handlerType);
+		}
+		for (final HandlerType handlerType : handlerTypes) {
+			handlerType.resolve(byClass);
+		}
+		return Collections.unmodifiableList(handlerTypes);
+	}
+
+	private static final class HandlerType {
+
+		final int index;
+		final Class<?> type;
+		final String internalName;
+		final String descriptor;
+		final String onCallDescriptor;
+		final Type returnType;
+		final List<Method> methods = new ArrayList<>();
+		Method invoker;
+		final Map<String, Method> argumentInvokers = new LinkedHashMap<>();
+		final Map<Method, HandlerType> conversions = new LinkedHashMap<>();
+
+		HandlerType(final int index, final Class<?> type, final Method onCall) {
+			this.index = index;
+			this.type = type;
+			internalName = Type.getInternalName(type);
+			descriptor = Type.getDescriptor(type);
+			onCallDescriptor = Type.getMethodDescriptor(onCall);
+			returnType = Type.getReturnType(onCall);
+		}
+
+		void resolve(final Map<Class<?>, HandlerType> byClass) {
+			final Set<String> signatures = new LinkedHashSet<>();
+			for (final Method method : type.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers())
+						|| !signatures.add(method.getName() + Type.getMethodDescriptor(method))) {
+					continue;
+				}
+				methods.add(method);
+				final boolean invoking = "invoke".equals(method.getName())
+						&& Type.getReturnType(method).equals(returnType);
+				if (invoking && method.getParameterCount() == 0) {
+					invoker = method;
+				} else if (invoking) {
+					argumentInvokers.put(argumentsDescriptor(method), method);
+				} else if (method.getParameterCount() == 0 && byClass.containsKey(method.getReturnType())) {
+					conversions.put(method, byClass.get(method.getReturnType()));
+				}
+			}
+			if (invoker == null) {
+				throw new IllegalStateException("No invoke() method in " + type.getName());
+			}
+		}
+
+		int boundIndex(final String arguments) {
+			return new ArrayList<>(argumentInvokers.keySet()).indexOf(arguments);
+		}
+	}
+
+	private static final class ChainClassLoader extends ClassLoader {
+
+		static {
+			registerAsParallelCapable();
+		}
+
+		ChainClassLoader(final ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(final String internalName, final byte[] bytes) {
+			return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.osgi.framework.ServiceException;
+
+import io.primeval.reflex.proxy.CallContext;
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.handler.BooleanInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ByteInterceptionHandler;
+import io.primeval.reflex.proxy.handler.CharInterceptionHandler;
+import io.primeval.reflex.proxy.handler.DoubleInterceptionHandler;
+import io.primeval.reflex.proxy.handler.FloatInterceptionHandler;
+import io.primeval.reflex.proxy.handler.IntInterceptionHandler;
+import io.primeval.reflex.proxy.handler.InterceptionHandler;
+import io.primeval.reflex.proxy.handler.LongInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ShortInterceptionHandler;
+import io.primeval.reflex.proxy.handler.VoidInterceptionHandler;
+
+/**
+ * Interceptor of a woven service kept registered while some of its required
+ * aspects are missing, applying the {@link GracePeriodPolicy#BLOCK} or
+ * {@link GracePeriodPolicy#FAIL} policy.
+ * <p>
+ * The grace period ends either when the aspects return, in which case blocked
+ * calls resume with the new interceptor, or when it expires, in which case
+ * they fail with a {@link ServiceException}.
+ */
+public final class GracePeriodInterceptor implements Interceptor {
+
+	private final GracePeriodPolicy policy;
+	private final long originalServiceId;
+	private final Set<String> missingAspects;
+	private final long deadlineNanos;
+	private final CountDownLatch ended = new CountDownLatch(1);
+	private volatile Interceptor resumed;
+
+	public GracePeriodInterceptor(final GracePeriodPolicy policy, final long originalServiceId,
+			final Set<String> missingAspects, final long gracePeriodMillis) {
+		this.policy = policy;
+		this.originalServiceId = originalServiceId;
+		this.missingAspects = missingAspects;
+		deadlineNanos = System.nanoTime() + MILLISECONDS.toNanos(gracePeriodMillis);
+	}
+
+	/**
+	 * Ends the grace period as the missing aspects returned, resuming the blocked
+	 * calls with the given interceptor.
+	 */
+	public void resume(final Interceptor interceptor) {
+		resumed = interceptor;
+		ended.countDown();
+	}
+
+	/**
+	 * Ends the grace period without the missing aspects, failing the blocked
+	 * calls.
+	 */
+	public void expire() {
+		ended.countDown();
+	}
+
+	private Interceptor awaitInterceptor() {
+		if (policy == GracePeriodPolicy.BLOCK) {
+			final long remaining = deadlineNanos - System.nanoTime();
+			try {
+				if (remaining > 0) {
+					ended.await(remaining, NANOSECONDS);
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			final Interceptor interceptor = resumed;
+			if (interceptor != null) {
+				return interceptor;
+			}
+		}
+		throw new ServiceException("Service ID " + originalServiceId + " is missing its required aspects "
+				+ missingAspects, ServiceException.UNREGISTERED);
+	}
+
+	@Override
+	public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> void onCall(final CallContext context, final VoidInterceptionHandler handler)
+			throws E {
+		awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> boolean onCall(final CallContext context, final BooleanInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> byte onCall(final CallContext context, final ByteInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> char onCall(final CallContext context, final CharInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> double onCall(final CallContext context, final DoubleInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> float onCall(final CallContext context, final FloatInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> long onCall(final CallContext context, final LongInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> short onCall(final CallContext context, final ShortInterceptionHandler handler)
+			throws E {
+		return awaitInterceptor().onCall(context, handler);
+	}
+}
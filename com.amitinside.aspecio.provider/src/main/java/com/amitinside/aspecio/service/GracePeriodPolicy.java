@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import java.util.stream.Stream;
+
+/**
+ * How the proxies of a woven service handle calls while a required aspect is
+ * missing and the service is kept registered for a grace period.
+ */
+public enum GracePeriodPolicy {
+
+	/**
+	 * Calls wait for the aspect to return, until the end of the grace period,
+	 * after which they fail.
+	 */
+	BLOCK("block"),
+
+	/**
+	 * Calls fail right away.
+	 */
+	FAIL("fail"),
+
+	/**
+	 * Calls reach the original service without interception.
+	 */
+	PASSTHROUGH("passthrough");
+
+	private final String value;
+
+	GracePeriodPolicy(final String value) {
+		this.value = value;
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+
+	public static GracePeriodPolicy fromString(final String policy) {
+		return Stream.of(values()).filter(p -> p.value.equals(policy)).findAny().orElse(BLOCK);
+	}
+}
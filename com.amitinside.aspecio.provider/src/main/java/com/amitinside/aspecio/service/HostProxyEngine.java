@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.util.AspecioUtil.hasDynamicImports;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.wiring.BundleWiring;
+
+import com.amitinside.aspecio.util.CachingClassLoader;
+
+import io.primeval.reflex.proxy.bytecode.BridgingClassLoader;
+import io.primeval.reflex.proxy.bytecode.ProxyBuilder;
+import io.primeval.reflex.proxy.bytecode.ProxyClass;
+import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
+
+/**
+ * Proxy engine defining all the proxies of a bundle revision in a single class
+ * loader delegating to the bundle of the woven class only, whatever the bundles
+ * of its class hierarchy. The class loader is released along with the bundle
+ * revision.
+ * <p>
+ * Classes whose hierarchy or interfaces are not visible from their own bundle
+ * are woven by the fallback engine.
+ */
+public final class HostProxyEngine implements ProxyEngine {
+
+	private final BundleRevisionPath root = new BundleRevisionPath();
+
+	private final WeavingStatistics statistics;
+	private final ProxyClassRegistry registry;
+	private final LongSupplier dynamicWiringGeneration;
+	private final ProxyEngine fallback;
+
+	public HostProxyEngine(final WeavingStatistics statistics, final ProxyClassRegistry registry,
+			final LongSupplier dynamicWiringGeneration, final ProxyEngine fallback) {
+		this.statistics = requireNonNull(statistics, "'Statistics cannot be null'");
+		this.registry = requireNonNull(registry, "'Registry cannot be null'");
+		this.dynamicWiringGeneration = requireNonNull(dynamicWiringGeneration,
+				"'Dynamic wiring generation cannot be null'");
+		this.fallback = requireNonNull(fallback, "'Fallback engine cannot be null'");
+	}
+
+	@Override
+	public String getName() {
+		return HOST;
+	}
+
+	@Override
+	public void release(final Bundle bundle) {
+		root.prune(revision -> revision.getBundle().equals(bundle));
+	}
+
+	@Override
+	public ProxyClass<?> getProxyClass(final Class<?> clazz, final List<Class<?>> interfaces) {
+		final Bundle host = FrameworkUtil.getBundle(clazz);
+		final BundleWiring wiring = host == null ? null : host.adapt(BundleWiring.class);
+		final ClassLoader hostClassLoader = wiring == null ? null : wiring.getClassLoader();
+		if (hostClassLoader == null || !isVisible(hostClassLoader, clazz, interfaces)) {
+			return fallback.getProxyClass(clazz, interfaces);
+		}
+		final BundleRevisionPath bundleRevPath = root.getSubPath(wiring.getRevision());
+
+		statistics.proxyClassRequested();
+		return bundleRevPath.computeProxyClassIfAbsent(clazz, interfaces, () -> {
+			statistics.proxyClassGenerated();
+			final ProxyClassLoader classLoader = bundleRevPath.computeClassLoaderIfAbsent(() -> {
+				final BridgingClassLoader bridgingClassLoader = new BridgingClassLoader(
+						new ClassLoader[] { hostClassLoader });
+				final ProxyClassLoader loader = new ProxyClassLoader(hasDynamicImports(wiring.getRevision())
+						? new CachingClassLoader(bridgingClassLoader, dynamicWiringGeneration)
+						: new CachingClassLoader(bridgingClassLoader));
+				registry.classLoaderCreated(HOST, loader, Collections.singletonList(wiring.getRevision()));
+				return loader;
+			});
+			final long start = System.nanoTime();
+			final ProxyClass<?> proxyClass = ProxyBuilder.build(classLoader, clazz,
+					interfaces.toArray(new Class<?>[0]));
+			registry.proxyClassGenerated(classLoader, clazz, interfaces, System.nanoTime() - start);
+			return proxyClass;
+		});
+	}
+
+	private static boolean isVisible(final ClassLoader classLoader, final Class<?> clazz,
+			final List<Class<?>> interfaces) {
+		for (Class<?> currClazz = clazz; currClazz != null
+				&& currClazz != Object.class; currClazz = currClazz.getSuperclass()) {
+			if (!isVisible(classLoader, currClazz)) {
+				return false;
+			}
+		}
+		return interfaces.stream().allMatch(intf -> isVisible(classLoader, intf));
+	}
+
+	private static boolean isVisible(final ClassLoader classLoader, final Class<?> clazz) {
+		try {
+			return Class.forName(clazz.getName(), false, classLoader) == clazz;
+		} catch (final ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.ADDED;
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.MODIFIED;
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.OVERFLOW;
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.REMOVED;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amitinside.aspecio.api.InterceptedServiceDTO;
+import com.amitinside.aspecio.api.InterceptedServiceEventDTO;
+import com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType;
+import com.amitinside.aspecio.api.InterceptedServiceListener;
+import com.amitinside.aspecio.util.AspecioThreadFactory;
+
+/**
+ * Delivers the changes of the intercepted services to the
+ * {@link InterceptedServiceListener}s.
+ * <p>
+ * Dispatching never blocks: each listener has a bounded queue, drained by a
+ * task of a shared pool, and the events that do not fit in it are dropped and
+ * coalesced into a single overflow event, delivered once the queue is drained.
+ * Events of a listener are delivered in dispatch order, by a single task at a
+ * time.
+ */
+public final class InterceptedServiceEventDispatcher {
+
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	private final Logger logger = LoggerFactory.getLogger(InterceptedServiceEventDispatcher.class);
+
+	private final int queueSize;
+	private final WeavingStatistics statistics;
+	private final Map<InterceptedServiceListener, Subscriber> subscribers = new ConcurrentHashMap<>();
+	private final ExecutorService executor = Executors.newCachedThreadPool(new AspecioThreadFactory("Events"));
+
+	public InterceptedServiceEventDispatcher(final int queueSize, final WeavingStatistics statistics) {
+		this.queueSize = queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE;
+		this.statistics = requireNonNull(statistics, "'Statistics cannot be null'");
+	}
+
+	public void addListener(final InterceptedServiceListener listener) {
+		requireNonNull(listener, "'Listener cannot be null'");
+		subscribers.computeIfAbsent(listener, Subscriber::new);
+	}
+
+	public void removeListener(final InterceptedServiceListener listener) {
+		final Subscriber subscriber = subscribers.remove(listener);
+		if (subscriber != null) {
+			subscriber.closed = true;
+		}
+	}
+
+	public boolean hasListeners() {
+		return !subscribers.isEmpty();
+	}
+
+	public void dispatch(final InterceptedServiceEventDTO event) {
+		for (final Subscriber subscriber : subscribers.values()) {
+			subscriber.offer(event);
+		}
+	}
+
+	public void close() {
+		subscribers.values().forEach(s -> s.closed = true);
+		subscribers.clear();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns the change between two descriptions of a service, either of which
+	 * may be {@code null} if the service was added or removed, or {@code null} if
+	 * nothing that events carry changed.
+	 */
+	public static InterceptedServiceEventDTO changeOf(final InterceptedServiceDTO previous,
+			final InterceptedServiceDTO current) {
+		if (previous == null && current == null) {
+			return null;
+		}
+		final InterceptedServiceDTO service = current != null ? current : previous;
+		final EventType type = previous == null ? ADDED : current == null ? REMOVED : MODIFIED;
+		final Set<String> satisfiedBefore = previous == null ? emptySet() : previous.satisfiedAspects;
+		final Set<String> satisfiedAfter = current == null ? emptySet() : current.satisfiedAspects;
+		final Set<String> unsatisfiedBefore = previous == null ? emptySet() : previous.unsatisfiedRequiredAspects;
+		final Set<String> unsatisfiedAfter = current == null ? emptySet() : current.unsatisfiedRequiredAspects;
+
+		final InterceptedServiceEventDTO event = new InterceptedServiceEventDTO();
+		event.type = type;
+		event.serviceId = service.serviceId;
+		event.bundleId = service.bundleId;
+		event.published = current != null && current.published;
+		event.satisfiedAspectsAdded = difference(satisfiedAfter, satisfiedBefore);
+		event.satisfiedAspectsRemoved = difference(satisfiedBefore, satisfiedAfter);
+		event.unsatisfiedRequiredAspectsAdded = difference(unsatisfiedAfter, unsatisfiedBefore);
+		event.unsatisfiedRequiredAspectsRemoved = difference(unsatisfiedBefore, unsatisfiedAfter);
+		if (type == MODIFIED && previous.published == current.published && event.satisfiedAspectsAdded.isEmpty()
+				&& event.satisfiedAspectsRemoved.isEmpty() && event.unsatisfiedRequiredAspectsAdded.isEmpty()
+				&& event.unsatisfiedRequiredAspectsRemoved.isEmpty()) {
+			return null;
+		}
+		return event;
+	}
+
+	private static Set<String> difference(final Set<String> set, final Set<String> removed) {
+		final Set<String> difference = new LinkedHashSet<>(set);
+		difference.removeAll(removed);
+		return difference.isEmpty() ? emptySet() : unmodifiableSet(difference);
+	}
+
+	private static InterceptedServiceEventDTO overflow() {
+		final InterceptedServiceEventDTO event = new InterceptedServiceEventDTO();
+		event.type = OVERFLOW;
+		event.satisfiedAspectsAdded = emptySet();
+		event.satisfiedAspectsRemoved = emptySet();
+		event.unsatisfiedRequiredAspectsAdded = emptySet();
+		event.unsatisfiedRequiredAspectsRemoved = emptySet();
+		return event;
+	}
+
+	private final class Subscriber implements Runnable {
+
+		private final InterceptedServiceListener listener;
+		private final Queue<InterceptedServiceEventDTO> events = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final AtomicBoolean overflowed = new AtomicBoolean();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		volatile boolean closed;
+
+		Subscriber(final InterceptedServiceListener listener) {
+			this.listener = listener;
+		}
+
+		void offer(final InterceptedServiceEventDTO event) {
+			if (size.incrementAndGet() > queueSize) {
+				size.decrementAndGet();
+				overflowed.set(true);
+				statistics.serviceEventDropped();
+			} else {
+				events.add(event);
+			}
+			schedule();
+		}
+
+		private void schedule() {
+			if (closed || !scheduled.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				executor.execute(this);
+			} catch (final RejectedExecutionException e) {
+				// the dispatcher is closed
+				scheduled.set(false);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!closed) {
+					InterceptedServiceEventDTO event = events.poll();
+					if (event != null) {
+						size.decrementAndGet();
+					} else if (overflowed.compareAndSet(true, false)) {
+						event = overflow();
+					} else {
+						break;
+					}
+					deliver(event);
+				}
+			} finally {
+				scheduled.set(false);
+			}
+			// an event offered after the queue was found empty, but before the task
+			// was unscheduled, is picked up by a new task
+			if (!events.isEmpty() || overflowed.get()) {
+				schedule();
+			}
+		}
+
+		private void deliver(final InterceptedServiceEventDTO event) {
+			try {
+				listener.serviceChanged(event);
+			} catch (final Exception e) { // NOSONAR
+				logger.error("Intercepted service listener {} failed to handle an event", listener, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+import com.amitinside.aspecio.api.InterceptedServiceDTO;
+import com.amitinside.aspecio.api.InterceptedServiceQueryDTO;
+
+/**
+ * Index of the published descriptions of the intercepted services, by aspect,
+ * by providing bundle and by satisfaction of their required aspects.
+ * <p>
+ * All the entries are ordered by service ID, so that queries walk a single
+ * index in order and stop as soon as their page is full. A query walks the
+ * index of its aspect, or else of its bundle, or else of its satisfaction, and
+ * checks its remaining criteria on each service of that index. Updating a
+ * service only moves it between the index entries it left or joined, so
+ * queries are weakly consistent with concurrent updates. Callers are expected
+ * to serialize the updates of a given service.
+ */
+public final class InterceptedServiceIndex {
+
+	private final ConcurrentSkipListMap<Long, Entry> services = new ConcurrentSkipListMap<>();
+	private final Map<String, ConcurrentSkipListMap<Long, Entry>> servicesByAspect = new ConcurrentHashMap<>();
+	private final Map<Long, ConcurrentSkipListMap<Long, Entry>> servicesByBundle = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, Entry> satisfiedServices = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap<Long, Entry> unsatisfiedServices = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Adds the description of a service, or replaces the previous description of
+	 * that service.
+	 */
+	public void put(final ServiceReference<?> reference, final InterceptedServiceDTO description) {
+		final Entry entry = new Entry(reference, description);
+		final long serviceId = description.serviceId;
+		final Entry previous = services.put(serviceId, entry);
+		if (previous != null) {
+			for (final String aspect : previous.aspects) {
+				if (!entry.aspects.contains(aspect)) {
+					removeFrom(servicesByAspect, aspect, serviceId);
+				}
+			}
+			if (previous.description.bundleId != description.bundleId) {
+				removeFrom(servicesByBundle, previous.description.bundleId, serviceId);
+			}
+			if (previous.satisfied != entry.satisfied) {
+				(previous.satisfied ? satisfiedServices : unsatisfiedServices).remove(serviceId);
+			}
+		}
+		for (final String aspect : entry.aspects) {
+			addTo(servicesByAspect, aspect, entry);
+		}
+		addTo(servicesByBundle, description.bundleId, entry);
+		(entry.satisfied ? satisfiedServices : unsatisfiedServices).put(serviceId, entry);
+	}
+
+	public void remove(final long serviceId) {
+		final Entry entry = services.remove(serviceId);
+		if (entry == null) {
+			return;
+		}
+		for (final String aspect : entry.aspects) {
+			removeFrom(servicesByAspect, aspect, serviceId);
+		}
+		removeFrom(servicesByBundle, entry.description.bundleId, serviceId);
+		(entry.satisfied ? satisfiedServices : unsatisfiedServices).remove(serviceId);
+	}
+
+	private static <K> void addTo(final Map<K, ConcurrentSkipListMap<Long, Entry>> index, final K key,
+			final Entry entry) {
+		index.compute(key, (k, entries) -> {
+			final ConcurrentSkipListMap<Long, Entry> keyEntries = entries != null ? entries
+					: new ConcurrentSkipListMap<>();
+			keyEntries.put(entry.description.serviceId, entry);
+			return keyEntries;
+		});
+	}
+
+	private static <K> void removeFrom(final Map<K, ConcurrentSkipListMap<Long, Entry>> index, final K key,
+			final long serviceId) {
+		index.computeIfPresent(key, (k, entries) -> {
+			entries.remove(serviceId);
+			return entries.isEmpty() ? null : entries;
+		});
+	}
+
+	public InterceptedServiceDTO get(final long serviceId) {
+		final Entry entry = services.get(serviceId);
+		return entry == null ? null : entry.description;
+	}
+
+	/**
+	 * Returns the descriptions of all the services, ordered by service ID.
+	 */
+	public List<InterceptedServiceDTO> getAll() {
+		return unmodifiableList(services.values().stream().map(e -> e.description).collect(toList()));
+	}
+
+	public List<InterceptedServiceDTO> query(final InterceptedServiceQueryDTO query) {
+		Stream<Entry> selected = select(query).skip(Math.max(0, query.offset));
+		if (query.limit > 0) {
+			selected = selected.limit(query.limit);
+		}
+		return unmodifiableList(selected.map(e -> e.description).collect(toList()));
+	}
+
+	public int count(final InterceptedServiceQueryDTO query) {
+		return (int) select(query).count();
+	}
+
+	public int size() {
+		return services.size();
+	}
+
+	public void clear() {
+		services.clear();
+		servicesByAspect.clear();
+		servicesByBundle.clear();
+		satisfiedServices.clear();
+		unsatisfiedServices.clear();
+	}
+
+	private Stream<Entry> select(final InterceptedServiceQueryDTO query) {
+		requireNonNull(query, "'Query cannot be null'");
+		final Filter filter = createFilter(query.filter);
+		final Collection<Entry> candidates;
+		if (query.aspect != null) {
+			candidates = valuesOf(servicesByAspect.get(query.aspect));
+		} else if (query.bundleId != null) {
+			candidates = valuesOf(servicesByBundle.get(query.bundleId));
+		} else if (query.satisfied != null) {
+			candidates = (query.satisfied ? satisfiedServices : unsatisfiedServices).values();
+		} else {
+			candidates = services.values();
+		}
+		// the indexed criteria are checked again, as the entries of an index may
+		// be replaced while walking it
+		return candidates.stream().filter(e -> e.matches(query, filter));
+	}
+
+	private static Collection<Entry> valuesOf(final ConcurrentSkipListMap<Long, Entry> entries) {
+		return entries == null ? emptyList() : entries.values();
+	}
+
+	private static Filter createFilter(final String filter) {
+		if (filter == null) {
+			return null;
+		}
+		try {
+			return FrameworkUtil.createFilter(filter);
+		} catch (final InvalidSyntaxException e) {
+			throw new IllegalArgumentException("Invalid filter: " + filter, e);
+		}
+	}
+
+	private static final class Entry {
+
+		final ServiceReference<?> reference;
+		final InterceptedServiceDTO description;
+		final Set<String> aspects;
+		final boolean satisfied;
+
+		Entry(final ServiceReference<?> reference, final InterceptedServiceDTO description) {
+			this.reference = reference;
+			this.description = description;
+			aspects = new HashSet<>(description.requiredAspects);
+			aspects.addAll(description.optionalAspects);
+			satisfied = description.unsatisfiedRequiredAspects.isEmpty();
+		}
+
+		boolean matches(final InterceptedServiceQueryDTO query, final Filter filter) {
+			if (query.aspect != null && !aspects.contains(query.aspect)) {
+				return false;
+			}
+			if (query.bundleId != null && query.bundleId != description.bundleId) {
+				return false;
+			}
+			if (query.satisfied != null && query.satisfied != satisfied) {
+				return false;
+			}
+			if (query.objectClassContains != null
+					&& description.objectClass.stream().noneMatch(o -> o.contains(query.objectClassContains))) {
+				return false;
+			}
+			return filter == null || filter.match(reference);
+		}
+	}
+}
@@ -21,25 +21,120 @@ import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.osgi.framework.ServiceRegistration;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
-import com.amitinside.aspecio.util.Exceptions;
-
 /**
- * Manages the registration and unregistration of a woven service.
+ * Manages the registration and unregistration of a woven service, or the
+ * binding of its class when it is woven in bytecode mode.
  * <p>
- * This class is controlled by AspecioServiceController to ensure thread safety.
+ * This class is controlled by AspecioServiceController, which decides the state
+ * of a given instance under the lock of its service only. The fields are
+ * volatile so that the state can be read without that lock. The decided state
+ * is applied to the framework by {@link #apply()}, once the lock is released.
  */
 public final class ManagedWovenService {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    public WovenService wovenService;
-    public ServiceRegistration<?> registration;
-    public AspectInterceptorContext aspectContext;
+    public volatile WovenService wovenService;
+    public volatile AspectInterceptorContext aspectContext;
+
+    // set while the service is kept registered without its required aspects
+    public volatile ScheduledFuture<?> graceExpiry;
+    public volatile GracePeriodInterceptor graceInterceptor;
+    public volatile long graceDeadline;
+
+    // the decided state, numbered on every change
+    private volatile boolean published;
+    private final AtomicBoolean propertiesChanged = new AtomicBoolean();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // the applied state, only touched by the thread applying it, the hand-over
+    // between threads going through the pending count
+    private final AtomicInteger pendingApplies = new AtomicInteger();
+    private long appliedSequence;
+    private ServiceRegistration<?> registration;
+    // set while the class of a service woven in bytecode mode is bound to it
+    private boolean bound;
+
+    /**
+     * Tells whether the woven service is decided to be visible to its consumers,
+     * either as a registered proxy or through its bound class.
+     */
+    public boolean isPublished() {
+        return published;
+    }
+
+    /**
+     * Decides to publish the woven service.
+     */
+    public void publish() {
+        published = true;
+        sequence.incrementAndGet();
+    }
+
+    /**
+     * Decides to withdraw the woven service.
+     */
+    public void unpublish() {
+        published = false;
+        sequence.incrementAndGet();
+    }
+
+    /**
+     * Decides to update the properties of the registered proxy, if any. A service
+     * woven in bytecode mode keeps the properties of the original service.
+     */
+    public void updateProperties() {
+        propertiesChanged.set(true);
+        sequence.incrementAndGet();
+    }
+
+    /**
+     * Applies the latest decided state to the framework, without the lock of the
+     * service since registering a service calls out to its consumers. A thread
+     * finding another one applying the state of the service leaves its own
+     * change to that thread, which applies again until no change is pending, so
+     * that the framework always ends up with the latest decided state.
+     */
+    public void apply() {
+        if (pendingApplies.getAndIncrement() > 0) {
+            return;
+        }
+        do {
+            final long current = sequence.get();
+            if (current != appliedSequence) {
+                appliedSequence = current;
+                try {
+                    applyState();
+                } catch (RuntimeException e) {
+                    logger.error("Failed to apply the state of service ID {}", wovenService.originalServiceId, e);
+                }
+            }
+        } while (pendingApplies.decrementAndGet() > 0);
+    }
+
+    private void applyState() {
+        final boolean registered = registration != null || bound;
+        if (!published) {
+            if (registered) {
+                unregister();
+            }
+        } else if (!registered) {
+            // registered with the latest properties
+            propertiesChanged.set(false);
+            register();
+        } else if (propertiesChanged.getAndSet(false) && registration != null) {
+            registration.setProperties(getProperties());
+        }
+    }
 
     /**
      * Creates a dictionary of service properties with the current aspect weaving state.
@@ -56,32 +151,34 @@ public final class ManagedWovenService {
     /**
      * Registers the woven service with the OSGi framework.
      */
-    public void register() {
-        if (registration != null) {
-            logger.warn("Service is already registered: {}", wovenService.originalServiceId);
+    private void register() {
+        if (wovenService.classBinding != null) {
+            logger.debug("Binding the woven class {} to service {} with aspects {}",
+                    wovenService.classBinding.getClassName(), wovenService.originalServiceId,
+                    aspectContext.getSatisfiedAspects());
+            wovenService.classBinding.bind(wovenService.aspecioServiceObject);
+            bound = true;
             return;
         }
-        
+
         logger.debug("Registering aspect proxy for service {} with aspects {}", 
                 wovenService.originalServiceId, aspectContext.getSatisfiedAspects());
 
-        try {
-            registration = wovenService.originalReference.getBundle().getBundleContext().registerService(
-                    wovenService.objectClass.toArray(new String[0]),
-                    wovenService.aspecioServiceObject.getServiceObjectToRegister(), 
-                    getProperties());
-        } catch (Exception e) {
-            logger.error("Failed to register service {}: {}", wovenService.originalServiceId, e.getMessage());
-            throw Exceptions.duck(e);
-        }
+        registration = wovenService.originalReference.getBundle().getBundleContext().registerService(
+                wovenService.objectClass.toArray(new String[0]),
+                wovenService.aspecioServiceObject.getServiceObjectToRegister(), 
+                getProperties());
     }
 
     /**
      * Unregisters the woven service from the OSGi framework.
      */
-    public void unregister() {
-        if (registration == null) {
-            logger.warn("Service is not registered: {}", wovenService.originalServiceId);
+    private void unregister() {
+        if (bound) {
+            logger.debug("Unbinding the woven class {} from service ID {}", wovenService.classBinding.getClassName(),
+                    wovenService.originalServiceId);
+            wovenService.classBinding.unbind(wovenService.aspecioServiceObject);
+            bound = false;
             return;
         }
 
@@ -90,9 +187,8 @@ public final class ManagedWovenService {
             registration.unregister();
         } catch (IllegalStateException e) {
             logger.error("Service already unregistered or in invalid state: {}", e.getMessage());
-            throw Exceptions.duck(e);
         } finally {
             registration = null;
         }
     }
-}
\ No newline at end of file
+}
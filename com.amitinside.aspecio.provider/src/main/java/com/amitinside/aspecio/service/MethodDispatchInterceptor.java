@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.stream.Collectors.toList;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.amitinside.aspecio.api.MethodMatcher;
+
+import io.primeval.reflex.proxy.CallContext;
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.annotation.AnnotationInterceptor;
+import io.primeval.reflex.proxy.handler.BooleanInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ByteInterceptionHandler;
+import io.primeval.reflex.proxy.handler.CharInterceptionHandler;
+import io.primeval.reflex.proxy.handler.DoubleInterceptionHandler;
+import io.primeval.reflex.proxy.handler.FloatInterceptionHandler;
+import io.primeval.reflex.proxy.handler.IntInterceptionHandler;
+import io.primeval.reflex.proxy.handler.InterceptionHandler;
+import io.primeval.reflex.proxy.handler.LongInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ShortInterceptionHandler;
+import io.primeval.reflex.proxy.handler.VoidInterceptionHandler;
+
+/**
+ * Interceptor dispatching each call to the chain of the interceptors that
+ * actually apply to the called method.
+ * <p>
+ * The chain of a method is computed on its first call on a given target class
+ * and kept for the lifetime of the interceptor context, which may be shared by
+ * services of different classes. An {@link AnnotationInterceptor} applies
+ * to the methods carrying its annotation, directly or through their class, and
+ * a {@link MethodMatcher} to the methods it matches. Other interceptors apply
+ * to all methods. Methods without any applicable interceptor invoke the
+ * delegate right away.
+ */
+public final class MethodDispatchInterceptor implements Interceptor {
+
+	private final List<Interceptor> interceptors;
+	private final Function<List<Interceptor>, Interceptor> chainFactory;
+	// stored in the target classes, so that they can still be unloaded
+	private final ClassValue<Map<Method, Interceptor>> dispatchTables = new ClassValue<Map<Method, Interceptor>>() {
+		@Override
+		protected Map<Method, Interceptor> computeValue(final Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+	private final Map<Method, Interceptor> untargetedDispatchTable = new ConcurrentHashMap<>();
+
+	private MethodDispatchInterceptor(final List<Interceptor> interceptors,
+			final Function<List<Interceptor>, Interceptor> chainFactory) {
+		this.interceptors = interceptors;
+		this.chainFactory = chainFactory;
+	}
+
+	/**
+	 * Creates the interceptor of an ordered list of interceptors, which only
+	 * needs a dispatch table if some of them do not apply to every method.
+	 */
+	public static Interceptor create(final List<Interceptor> interceptors,
+			final Function<List<Interceptor>, Interceptor> chainFactory) {
+		if (interceptors.stream().noneMatch(MethodDispatchInterceptor::isSelective)) {
+			return chainFactory.apply(interceptors);
+		}
+		return new MethodDispatchInterceptor(interceptors, chainFactory);
+	}
+
+	private static boolean isSelective(final Interceptor interceptor) {
+		return interceptor instanceof AnnotationInterceptor || interceptor instanceof MethodMatcher;
+	}
+
+	private Interceptor chainOf(final CallContext context) {
+		final Map<Method, Interceptor> dispatchTable = context.target == null ? untargetedDispatchTable
+				: dispatchTables.get(context.target);
+		final Interceptor chain = dispatchTable.get(context.method);
+		if (chain != null) {
+			return chain;
+		}
+		return dispatchTable.computeIfAbsent(context.method, m -> {
+			final List<Interceptor> applicable = interceptors.stream().filter(i -> applies(i, context.target, m))
+					.collect(toList());
+			return applicable.isEmpty() ? DEFAULT : chainFactory.apply(applicable);
+		});
+	}
+
+	private static boolean applies(final Interceptor interceptor, final Class<?> target, final Method method) {
+		if (interceptor instanceof MethodMatcher) {
+			return ((MethodMatcher) interceptor).matches(target, method);
+		}
+		if (interceptor instanceof AnnotationInterceptor) {
+			final Class<? extends Annotation> annotation = ((AnnotationInterceptor<?>) interceptor).intercept();
+			return annotation == null || isAnnotated(annotation, target, method);
+		}
+		return true;
+	}
+
+	private static boolean isAnnotated(final Class<? extends Annotation> annotation, final Class<?> target,
+			final Method method) {
+		if (method.isAnnotationPresent(annotation) || method.getDeclaringClass().isAnnotationPresent(annotation)) {
+			return true;
+		}
+		if (target == null) {
+			return false;
+		}
+		if (target.isAnnotationPresent(annotation)) {
+			return true;
+		}
+		try {
+			return target.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(annotation);
+		} catch (final NoSuchMethodException | SecurityException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> void onCall(final CallContext context, final VoidInterceptionHandler handler)
+			throws E {
+		chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> boolean onCall(final CallContext context, final BooleanInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> byte onCall(final CallContext context, final ByteInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> char onCall(final CallContext context, final CharInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> double onCall(final CallContext context, final DoubleInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> float onCall(final CallContext context, final FloatInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> long onCall(final CallContext context, final LongInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> short onCall(final CallContext context, final ShortInterceptionHandler handler)
+			throws E {
+		return chainOf(context).onCall(context, handler);
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import com.amitinside.aspecio.weaving.WovenDispatch;
+
+import io.primeval.reflex.proxy.CallContext;
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.handler.BooleanInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ByteInterceptionHandler;
+import io.primeval.reflex.proxy.handler.CharInterceptionHandler;
+import io.primeval.reflex.proxy.handler.DoubleInterceptionHandler;
+import io.primeval.reflex.proxy.handler.FloatInterceptionHandler;
+import io.primeval.reflex.proxy.handler.IntInterceptionHandler;
+import io.primeval.reflex.proxy.handler.InterceptionHandler;
+import io.primeval.reflex.proxy.handler.LongInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ShortInterceptionHandler;
+import io.primeval.reflex.proxy.handler.VoidInterceptionHandler;
+
+/**
+ * Last stage of the chain of a class woven in bytecode mode, which lets the
+ * dispatcher call the woven method back into its original body.
+ */
+public final class OriginalCallInterceptor implements Interceptor {
+
+	public static final OriginalCallInterceptor INSTANCE = new OriginalCallInterceptor();
+
+	private OriginalCallInterceptor() {
+		// singleton
+	}
+
+	@Override
+	public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> void onCall(final CallContext context, final VoidInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> boolean onCall(final CallContext context, final BooleanInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> byte onCall(final CallContext context, final ByteInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> char onCall(final CallContext context, final CharInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> double onCall(final CallContext context, final DoubleInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> float onCall(final CallContext context, final FloatInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> long onCall(final CallContext context, final LongInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+
+	@Override
+	public <E extends Throwable> short onCall(final CallContext context, final ShortInterceptionHandler handler)
+			throws E {
+		WovenDispatch.bypassNextCall();
+		try {
+			return handler.invoke();
+		} finally {
+			WovenDispatch.clearBypass();
+		}
+	}
+}
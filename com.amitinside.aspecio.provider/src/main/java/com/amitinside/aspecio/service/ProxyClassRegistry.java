@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWiring;
+
+import com.amitinside.aspecio.api.ProxyClassDTO;
+import com.amitinside.aspecio.api.ProxyClassLoaderDTO;
+import com.amitinside.aspecio.util.ConcurrentWeakIdentityMap;
+
+/**
+ * Keeps track of the proxy class loaders created by the proxy engines and of
+ * the proxy classes they define, until the class loaders are
+ * garbage-collected.
+ * <p>
+ * Nothing in here strongly references a class loader, a proxy class or a
+ * bundle revision, so that tracking does not prevent their unloading.
+ */
+public final class ProxyClassRegistry {
+
+	private final WeavingStatistics statistics;
+	private final AtomicLong ids = new AtomicLong();
+	private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+	private final Map<Long, LoaderRecord> records = new ConcurrentHashMap<>();
+	private final ConcurrentWeakIdentityMap<ClassLoader, LoaderRecord> recordsByLoader = new ConcurrentWeakIdentityMap<>();
+
+	public ProxyClassRegistry(final WeavingStatistics statistics) {
+		this.statistics = requireNonNull(statistics, "'Statistics cannot be null'");
+	}
+
+	public void classLoaderCreated(final String engine, final ClassLoader classLoader,
+			final List<BundleRevision> bundleRevisions) {
+		expungeReleasedClassLoaders();
+		final LoaderRecord record = new LoaderRecord(ids.incrementAndGet(), engine, classLoader, queue,
+				bundleRevisions);
+		records.put(record.id, record);
+		recordsByLoader.computeIfAbsent(classLoader, k -> record);
+		statistics.proxyClassLoaderCreated();
+	}
+
+	public void proxyClassGenerated(final ClassLoader classLoader, final Class<?> implementationClass,
+			final List<Class<?>> interfaces, final long durationNanos) {
+		final LoaderRecord record = recordsByLoader.get(classLoader);
+		if (record == null) {
+			return;
+		}
+		final ProxyClassDTO dto = new ProxyClassDTO();
+		dto.implementationClass = implementationClass.getName();
+		dto.interfaces = interfaces.stream().map(Class::getName).collect(toList());
+		dto.generatedAt = System.currentTimeMillis();
+		dto.generationMicros = NANOSECONDS.toMicros(durationNanos);
+		record.proxyClasses.add(dto);
+	}
+
+	public List<ProxyClassLoaderDTO> getProxyClassLoaders() {
+		expungeReleasedClassLoaders();
+		final List<ProxyClassLoaderDTO> dtos = new ArrayList<>(records.size());
+		for (final LoaderRecord record : records.values()) {
+			dtos.add(record.toDTO());
+		}
+		dtos.sort((a, b) -> Long.compare(a.id, b.id));
+		return dtos;
+	}
+
+	private void expungeReleasedClassLoaders() {
+		LoaderReference reference;
+		while ((reference = (LoaderReference) queue.poll()) != null) {
+			final LoaderRecord record = records.remove(reference.id);
+			if (record != null) {
+				statistics.proxyClassLoaderReleased(record.proxyClasses.size());
+			}
+		}
+	}
+
+	private static final class LoaderReference extends WeakReference<ClassLoader> {
+
+		final long id;
+
+		LoaderReference(final long id, final ClassLoader classLoader, final ReferenceQueue<ClassLoader> queue) {
+			super(classLoader, queue);
+			this.id = id;
+		}
+	}
+
+	private static final class LoaderRecord {
+
+		final long id;
+		final String engine;
+		// keeps the weak reference reachable until it gets enqueued
+		final LoaderReference reference;
+		final List<WeakReference<BundleRevision>> bundleRevisions = new ArrayList<>();
+		final List<Long> bundleIds = new ArrayList<>();
+		final long createdAt = System.currentTimeMillis();
+		final List<ProxyClassDTO> proxyClasses = new CopyOnWriteArrayList<>();
+
+		LoaderRecord(final long id, final String engine, final ClassLoader classLoader,
+				final ReferenceQueue<ClassLoader> queue, final List<BundleRevision> bundleRevisions) {
+			this.id = id;
+			this.engine = engine;
+			reference = new LoaderReference(id, classLoader, queue);
+			for (final BundleRevision bundleRevision : bundleRevisions) {
+				this.bundleRevisions.add(new WeakReference<>(bundleRevision));
+				bundleIds.add(bundleRevision.getBundle().getBundleId());
+			}
+		}
+
+		boolean isStale() {
+			for (final WeakReference<BundleRevision> bundleRevision : bundleRevisions) {
+				final BundleRevision revision = bundleRevision.get();
+				final BundleWiring wiring = revision == null ? null : revision.getWiring();
+				if (wiring == null || !wiring.isCurrent()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		ProxyClassLoaderDTO toDTO() {
+			final ProxyClassLoaderDTO dto = new ProxyClassLoaderDTO();
+			dto.id = id;
+			dto.engine = engine;
+			dto.bundleIds = new ArrayList<>(bundleIds);
+			dto.createdAt = createdAt;
+			dto.stale = isStale();
+			dto.proxyClasses = proxyClasses.stream().map(LoaderRecord::copy).collect(toList());
+			return dto;
+		}
+
+		private static ProxyClassDTO copy(final ProxyClassDTO proxyClass) {
+			final ProxyClassDTO dto = new ProxyClassDTO();
+			dto.implementationClass = proxyClass.implementationClass;
+			dto.interfaces = new ArrayList<>(proxyClass.interfaces);
+			dto.generatedAt = proxyClass.generatedAt;
+			dto.generationMicros = proxyClass.generationMicros;
+			return dto;
+		}
+	}
+}
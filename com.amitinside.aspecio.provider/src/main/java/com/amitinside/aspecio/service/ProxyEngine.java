@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import java.util.List;
+
+import org.osgi.framework.Bundle;
+
+import io.primeval.reflex.proxy.bytecode.ProxyClass;
+
+/**
+ * Generates and caches the proxy classes used to weave services.
+ * <p>
+ * The engine of a woven service is selected by its
+ * {@link com.amitinside.aspecio.api.AspecioConstants#SERVICE_ASPECT_WEAVE_ENGINE}
+ * service property, or else by the
+ * {@link com.amitinside.aspecio.api.AspecioConstants#ASPECIO_PROXY_ENGINE}
+ * framework property.
+ */
+public interface ProxyEngine {
+
+	/**
+	 * Name of the default engine, defining proxies in a class loader bridging all
+	 * the bundles of the class hierarchy of the woven class.
+	 */
+	String BRIDGING = "bridging";
+
+	/**
+	 * Name of the engine defining proxies in a single class loader per bundle
+	 * revision, delegating to the bundle of the woven class.
+	 */
+	String HOST = "host";
+
+	String getName();
+
+	ProxyClass<?> getProxyClass(Class<?> implementationClass, List<Class<?>> interfaces);
+
+	/**
+	 * Forgets the proxy classes and class loaders of all the revisions of an
+	 * unresolved bundle. Live proxies keep working.
+	 */
+	void release(Bundle bundle);
+
+}
@@ -1,52 +1,130 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
 package com.amitinside.aspecio.service;
 
-import java.util.IdentityHashMap;
+import static java.util.Objects.requireNonNull;
+
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
-public final class ServicePool<T> {
+import com.amitinside.aspecio.util.IdentityKey;
 
-    private final Map<Object, T> originalToProxy = new IdentityHashMap<>();
-    private final Map<T, Object> proxyToOriginal = new IdentityHashMap<>();
-    private final Map<T, Integer> proxyToCount = new IdentityHashMap<>();
+/**
+ * Shares a proxy per original service object between the bundles getting a
+ * bundle-scoped woven service, and tells when the last of them released it.
+ * <p>
+ * Each pooled proxy is a single entry holding its original service and its
+ * reference count, found by identity from either of them, so that the
+ * {@code equals} and {@code hashCode} methods of the services, which proxies
+ * may intercept, are never called. Reference counts are updated atomically
+ * without locking: an entry whose count drops to zero is dead and never
+ * revived, so a concurrent {@link #get(Object, Supplier)} creates a new proxy
+ * instead of handing out one being released.
+ */
+public final class ServicePool<T> {
 
-    public synchronized T get(final Object originalService, final Supplier<T> proxyFactory) {
-        T proxy = originalToProxy.computeIfAbsent(originalService, k -> createNewProxy(originalService, proxyFactory));
-        incrementProxyCount(proxy);
-        return proxy;
-    }
+    private final WeavingStatistics statistics;
+    private final Map<IdentityKey, Entry<T>> entriesByOriginal = new ConcurrentHashMap<>();
+    private final Map<IdentityKey, Entry<T>> entriesByProxy = new ConcurrentHashMap<>();
 
-    private T createNewProxy(final Object originalService, final Supplier<T> proxyFactory) {
-        T newProxy = proxyFactory.get();
-        proxyToOriginal.put(newProxy, originalService);
-        return newProxy;
+    public ServicePool(final WeavingStatistics statistics) {
+        this.statistics = requireNonNull(statistics, "'Statistics cannot be null'");
     }
 
-    private void incrementProxyCount(final T proxy) {
-        proxyToCount.merge(proxy, 1, Integer::sum);
+    public T get(final Object originalService, final Supplier<T> proxyFactory) {
+        final IdentityKey key = new IdentityKey(originalService);
+        for (;;) {
+            final boolean[] created = new boolean[1];
+            final Entry<T> entry = entriesByOriginal.computeIfAbsent(key, k -> {
+                // the proxy is indexed before any other caller can get it, so that
+                // it can always be released
+                final Entry<T> newEntry = new Entry<>(originalService, proxyFactory.get());
+                entriesByProxy.put(new IdentityKey(newEntry.proxy), newEntry);
+                created[0] = true;
+                return newEntry;
+            });
+            if (created[0]) {
+                statistics.pooledProxyCreated();
+                return entry.proxy;
+            }
+            if (entry.acquire()) {
+                statistics.pooledProxyShared();
+                return entry.proxy;
+            }
+            // released concurrently, make way for a new proxy
+            entriesByOriginal.remove(key, entry);
+        }
     }
 
-    public synchronized boolean unget(final T proxy) {
-        int count = decrementProxyCount(proxy);
-        if (count > 0) {
+    /**
+     * Releases a proxy, returning {@code true} if it was its last use.
+     */
+    public boolean unget(final T proxy) {
+        final IdentityKey proxyKey = new IdentityKey(proxy);
+        final Entry<T> entry = entriesByProxy.get(proxyKey);
+        if (entry == null || !entry.release()) {
             return false;
         }
-
-        cleanUp(proxy);
+        entriesByProxy.remove(proxyKey, entry);
+        entriesByOriginal.remove(new IdentityKey(entry.original), entry);
+        statistics.pooledProxyReleased();
         return true;
     }
 
-    private int decrementProxyCount(final T proxy) {
-        return proxyToCount.merge(proxy, -1, Integer::sum);
+    public int size() {
+        return entriesByProxy.size();
     }
 
-    private void cleanUp(final T proxy) {
-        proxyToCount.remove(proxy);
-        Object original = proxyToOriginal.remove(proxy);
-        T proxyX = originalToProxy.remove(original);
+    private static final class Entry<T> {
+
+        final Object original;
+        final T proxy;
+        // 0 once released for good
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Entry(final Object original, final T proxy) {
+            this.original = original;
+            this.proxy = proxy;
+        }
+
+        boolean acquire() {
+            for (;;) {
+                final int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
 
-        if (proxy != proxyX) {
-            throw new IllegalStateException("Service proxies do not match.");
+        // returns true when releasing the last reference
+        boolean release() {
+            for (;;) {
+                final int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count - 1)) {
+                    return count == 1;
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -15,7 +15,14 @@
  ******************************************************************************/
 package com.amitinside.aspecio.service;
 
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_PROXY_ENGINE;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_RESTART_BUNDLES;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_RESTART_CONCURRENCY;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_WEAVING_ASYNC;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_WEAVING_MODE;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_WEAVING_THREADS;
 import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE;
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_ENGINE;
 import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_OPTIONAL;
 import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WOVEN;
 import static com.amitinside.aspecio.service.ServiceScope.fromString;
@@ -30,11 +37,11 @@ import static com.amitinside.aspecio.util.AspecioUtil.asList;
 import static com.amitinside.aspecio.util.AspecioUtil.asLong;
 import static com.amitinside.aspecio.util.AspecioUtil.asString;
 import static com.amitinside.aspecio.util.AspecioUtil.asStringArray;
-import static java.util.Collections.synchronizedMap;
+import static com.amitinside.aspecio.util.AspecioUtil.getBooleanProperty;
+import static com.amitinside.aspecio.util.AspecioUtil.getIntProperty;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
-import static org.osgi.framework.Bundle.START_TRANSIENT;
-import static org.osgi.framework.Bundle.STOP_TRANSIENT;
+import static java.util.stream.Collectors.toList;
 import static org.osgi.framework.Constants.OBJECTCLASS;
 import static org.osgi.framework.Constants.SERVICE_BUNDLEID;
 import static org.osgi.framework.Constants.SERVICE_ID;
@@ -50,8 +57,8 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -60,85 +67,212 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Stream;
 
 import org.osgi.framework.AllServiceListener;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.BundleException;
-import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWiring;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amitinside.aspecio.service.WovenServiceEvent.ChangeEvent;
-import com.github.gfx.util.WeakIdentityHashMap;
+import com.amitinside.aspecio.util.AspecioThreadFactory;
+import com.amitinside.aspecio.util.OrderedExecutor;
+import com.amitinside.aspecio.util.StripedLock;
 
-import io.primeval.reflex.proxy.bytecode.BridgingClassLoader;
 import io.primeval.reflex.proxy.bytecode.Proxy;
-import io.primeval.reflex.proxy.bytecode.ProxyBuilder;
 import io.primeval.reflex.proxy.bytecode.ProxyClass;
-import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
 
 public final class ServiceWeavingManager implements AllServiceListener {
 
-	private static final String SERVICE_FILTER = MessageFormat.format("(&(|({0}=*)({1}=*))(!({2}=*)))",
-			SERVICE_ASPECT_WEAVE, SERVICE_ASPECT_WEAVE_OPTIONAL, SERVICE_ASPECT_WOVEN);
+	private static final String BYTECODE_MODE = "bytecode";
+	private static final String CANDIDATE_FILTER = MessageFormat.format("(|({0}=*)({1}=*))", SERVICE_ASPECT_WEAVE,
+			SERVICE_ASPECT_WEAVE_OPTIONAL);
 
 	private final Logger logger = LoggerFactory.getLogger(ServiceWeavingManager.class);
 
 	private final Map<ServiceReference<?>, WovenService> wovenServiceByServiceRef = new ConcurrentSkipListMap<>();
-	private final Map<String, List<WovenService>> wovenServicesByAspect = new ConcurrentHashMap<>();
+	private final WovenServiceIndex wovenServiceIndex = new WovenServiceIndex();
+	// fed by the service listener, which also sees the services already woven
+	private final CandidateServiceIndex candidateServices;
 	private final List<WovenServiceListener> wovenServiceListeners = new CopyOnWriteArrayList<>();
-
-	// Everything in here is weak, using identity equality, so it nicely cleans up
-	// by itself as
-	// bundles are cleaned-up, if there are no stale references on our bundles or
-	// services of course
-	private final Map<BundleRevision, BundleRevisionPath> revisionMap = synchronizedMap(new WeakIdentityHashMap<>());
-
+	// Without the weaving pipeline, the framework delivers the events of a service
+	// on the threads changing it, in no particular order. The map and the index
+	// are thus only changed under the lock of the service, which is never held
+	// while notifying the listeners, and the listeners re-read the latest state.
+	private final StripedLock serviceLocks = new StripedLock(StripedLock.defaultStripes());
+
+	private final WeavingStatistics statistics = new WeavingStatistics();
+	private final ProxyClassRegistry proxyClassRegistry = new ProxyClassRegistry(statistics);
+
+	// Service interfaces loaded per bundle revision, dropped when the bundle is
+	// unresolved. The generation changes whenever a bundle gets resolved, which
+	// may satisfy dynamic imports, so that the proxy class loaders bridging
+	// dynamically importing bundles drop their lookup caches. The other proxy
+	// class loaders are released along with the revisions they bridge.
+	private final Map<BundleRevision, Map<String, Class<?>>> interfacesByRevision = new ConcurrentHashMap<>();
+	private final AtomicLong dynamicWiringGeneration = new AtomicLong();
+	private final SynchronousBundleListener wiringListener = this::bundleChanged;
+	private final Map<String, ProxyEngine> proxyEngines = new HashMap<>();
+	private final ProxyEngine defaultProxyEngine;
 	private final BundleContext bundleContext;
+	private final WeaveCandidateTracker weaveCandidateTracker;
+	// only set up in bytecode mode
+	private final BytecodeWeavingHook bytecodeWeavingHook;
 	private final AtomicBoolean closed = new AtomicBoolean();
 
+	// only set up in asynchronous mode
+	private final ExecutorService weavingExecutor;
+	private final OrderedExecutor weavingPipeline;
+
 	public ServiceWeavingManager(final BundleContext bundleContext) {
 		requireNonNull(bundleContext, "'Bundle context cannot be null'");
 		this.bundleContext = bundleContext;
+		final ProxyEngine bridgingProxyEngine = new BridgingProxyEngine(statistics, proxyClassRegistry,
+				dynamicWiringGeneration::get);
+		proxyEngines.put(ProxyEngine.BRIDGING, bridgingProxyEngine);
+		proxyEngines.put(ProxyEngine.HOST, new HostProxyEngine(statistics, proxyClassRegistry,
+				dynamicWiringGeneration::get, bridgingProxyEngine));
+		defaultProxyEngine = getProxyEngine(bundleContext.getProperty(ASPECIO_PROXY_ENGINE), bridgingProxyEngine);
+		weaveCandidateTracker = new WeaveCandidateTracker(bundleContext, this);
+		if (BYTECODE_MODE.equals(bundleContext.getProperty(ASPECIO_WEAVING_MODE))) {
+			bytecodeWeavingHook = new BytecodeWeavingHook(bundleContext, statistics);
+			// the services woven in bytecode mode are not hidden
+			candidateServices = new CandidateServiceIndex(this::isProxied);
+		} else {
+			bytecodeWeavingHook = null;
+			candidateServices = new CandidateServiceIndex();
+		}
+		if (getBooleanProperty(bundleContext, ASPECIO_WEAVING_ASYNC, false)) {
+			final int threads = getIntProperty(bundleContext, ASPECIO_WEAVING_THREADS,
+					Runtime.getRuntime().availableProcessors());
+			weavingExecutor = Executors.newFixedThreadPool(Math.max(1, threads), new AspecioThreadFactory("Weaving"));
+			weavingPipeline = new OrderedExecutor(weavingExecutor);
+		} else {
+			weavingExecutor = null;
+			weavingPipeline = null;
+		}
 	}
 
 	public void open() {
+		if (bytecodeWeavingHook != null) {
+			// before any candidate class gets loaded
+			bytecodeWeavingHook.open();
+		}
+		bundleContext.addBundleListener(wiringListener);
+		weaveCandidateTracker.open();
 		try {
-			bundleContext.addServiceListener(this, SERVICE_FILTER);
-			final ServiceReference<?>[] serviceReferences = bundleContext.getAllServiceReferences((String) null,
-					SERVICE_FILTER);
-			if (serviceReferences != null) {
-				final Set<Bundle> bundlesToRestart = new TreeSet<>();
-				Stream.of(serviceReferences).forEach(sr -> bundlesToRestart.add(sr.getBundle()));
-				final int bundleRestartCount = bundlesToRestart.size();
-				if (bundleRestartCount > 0) {
-					final String bundlesList = bundlesToRestart.stream().map(Bundle::toString).collect(joining(", "));
-					if (bundlesToRestart.size() == 1) {
-						logger.info("Aspecio: active bundle {} requires weaving... restarting it", bundlesList);
-					} else if (bundlesToRestart.size() > 1) {
-						logger.info("Aspecio: active bundles {} require weaving... restarting them", bundlesList);
-					}
-					bundlesToRestart.forEach(this::stopBundle);
-					bundlesToRestart.forEach(this::startBundle);
-				}
+			bundleContext.addServiceListener(this, CANDIDATE_FILTER);
+			final ServiceReference<?>[] candidateReferences = bundleContext.getAllServiceReferences((String) null,
+					CANDIDATE_FILTER);
+			if (candidateReferences == null) {
+				return;
+			}
+			Stream.of(candidateReferences).forEach(candidateServices::add);
+			final ServiceReference<?>[] serviceReferences = Stream.of(candidateReferences)
+					.filter(sr -> sr.getProperty(SERVICE_ASPECT_WOVEN) == null).toArray(ServiceReference<?>[]::new);
+			if (serviceReferences.length == 0) {
+				return;
+			}
+			if (getBooleanProperty(bundleContext, ASPECIO_RESTART_BUNDLES, true)) {
+				restartBundles(serviceReferences);
+			} else {
+				weaveInPlace(serviceReferences);
 			}
 		} catch (final InvalidSyntaxException e) {
 			throw new AssertionError("Could not create filter!", e);
 		}
 	}
 
+	private void restartBundles(final ServiceReference<?>[] serviceReferences) {
+		final Set<Bundle> bundlesToRestart = new TreeSet<>();
+		Stream.of(serviceReferences).forEach(sr -> bundlesToRestart.add(sr.getBundle()));
+		final int bundleRestartCount = bundlesToRestart.size();
+		if (bundleRestartCount > 0) {
+			final String bundlesList = bundlesToRestart.stream().map(Bundle::toString).collect(joining(", "));
+			if (bundlesToRestart.size() == 1) {
+				logger.info("Aspecio: active bundle {} requires weaving... restarting it", bundlesList);
+			} else if (bundlesToRestart.size() > 1) {
+				logger.info("Aspecio: active bundles {} require weaving... restarting them", bundlesList);
+			}
+			final int concurrency = getIntProperty(bundleContext, ASPECIO_RESTART_CONCURRENCY,
+					Runtime.getRuntime().availableProcessors());
+			final long start = System.nanoTime();
+			new BundleRestarter(concurrency).restart(bundlesToRestart);
+			final long duration = System.nanoTime() - start;
+			statistics.bundlesRestarted(bundleRestartCount, duration);
+			logger.info("Aspecio: restarted {} bundles in {} ms", bundleRestartCount,
+					TimeUnit.NANOSECONDS.toMillis(duration));
+		}
+	}
+
+	// Registers the proxies of the existing services without restarting their
+	// providers. New lookups only see the proxies thanks to the service hooks, but
+	// the bundles that already got an original service keep calling it unwoven.
+	private void weaveInPlace(final ServiceReference<?>[] serviceReferences) {
+		logger.info("Aspecio: weaving {} existing services in place", serviceReferences.length);
+		// the consumers are taken before any proxy is registered, as the weaving
+		// itself gets the originals and may run asynchronously
+		final long aspecioBundleId = bundleContext.getBundle().getBundleId();
+		for (final ServiceReference<?> sr : serviceReferences) {
+			final Bundle[] usingBundles = sr.getUsingBundles();
+			if (usingBundles == null) {
+				continue;
+			}
+			final Bundle provider = sr.getBundle();
+			final List<Bundle> consumers = Stream.of(usingBundles)
+					.filter(b -> b.getBundleId() != 0 && b.getBundleId() != aspecioBundleId && !b.equals(provider))
+					.collect(toList());
+			statistics.serviceWovenInPlace(consumers.size());
+			if (!consumers.isEmpty()) {
+				logger.warn(
+						"Aspecio: service ID {} with objectClass {} is woven in place but is still directly used by {}, which will not see its aspects until they get the service again",
+						sr.getProperty(SERVICE_ID), asList(sr.getProperty(OBJECTCLASS)),
+						consumers.stream().map(Bundle::toString).collect(joining(", ")));
+			}
+		}
+		for (final ServiceReference<?> sr : serviceReferences) {
+			if (weavingPipeline != null) {
+				enqueue(REGISTERED, sr);
+			} else {
+				onServiceRegistration(sr);
+			}
+		}
+	}
+
 	public void close() {
 		if (closed.compareAndSet(false, true)) {
+			weaveCandidateTracker.close();
 			bundleContext.removeServiceListener(this);
+			bundleContext.removeBundleListener(wiringListener);
+			interfacesByRevision.clear();
+			if (bytecodeWeavingHook != null) {
+				bytecodeWeavingHook.close();
+			}
+			if (weavingExecutor != null) {
+				// no queue can be scheduled anymore, then the pending tasks are rejected so
+				// that no departure waits for them
+				weavingExecutor.shutdownNow();
+				weavingPipeline.close();
+			}
 			wovenServiceByServiceRef.keySet().forEach(bundleContext::ungetService);
 			wovenServiceByServiceRef.clear();
+			wovenServiceIndex.clear();
+			candidateServices.clear();
 		}
 	}
 
@@ -148,29 +282,84 @@ public final class ServiceWeavingManager implements AllServiceListener {
 			return;
 		}
 		final ServiceReference<?> sr = event.getServiceReference();
-		switch (event.getType()) {
+		int eventType = event.getType();
+		if (eventType == REGISTERED || eventType == MODIFIED) {
+			candidateServices.add(sr);
+			if (sr.getProperty(SERVICE_ASPECT_WOVEN) != null) {
+				// services already woven are hidden but never woven again
+				eventType = MODIFIED_ENDMATCH;
+			}
+		}
+		if (weavingPipeline != null) {
+			enqueue(eventType, sr);
+		} else {
+			switch (eventType) {
+			case REGISTERED:
+				onServiceRegistration(sr);
+				break;
+			case MODIFIED:
+				onServiceUpdate(sr);
+				break;
+			case MODIFIED_ENDMATCH:
+			case UNREGISTERING:
+				onServiceDeparture(sr);
+				break;
+			default:
+				break;
+			}
+		}
+		// the original stays hidden until its proxy is gone
+		if (event.getType() == MODIFIED_ENDMATCH || event.getType() == UNREGISTERING) {
+			candidateServices.remove(sr);
+		}
+	}
+
+	// Events of a given service are processed in order, while different services
+	// are woven in parallel. Departures wait for the queue of their service, so
+	// that the proxy is gone before the original service is unregistered.
+	private void enqueue(final int eventType, final ServiceReference<?> sr) {
+		switch (eventType) {
 		case REGISTERED:
-			onServiceRegistration(sr);
+			weavingPipeline.execute(sr, () -> onServiceRegistration(sr)).whenComplete((r, e) -> logFailure(sr, e));
 			break;
 		case MODIFIED:
-			onServiceUpdate(sr);
+			weavingPipeline.execute(sr, () -> onServiceUpdate(sr)).whenComplete((r, e) -> logFailure(sr, e));
 			break;
 		case MODIFIED_ENDMATCH:
 		case UNREGISTERING:
-			onServiceDeparture(sr);
+			try {
+				weavingPipeline.executeAndWait(sr, () -> onServiceDeparture(sr));
+			} catch (final RejectedExecutionException e) {
+				// closed meanwhile, the proxy is unregistered along with Aspecio
+				logger.debug("Aspecio closed before the departure of service ID {}", sr.getProperty(SERVICE_ID));
+			}
 			break;
 		default:
 			break;
 		}
 	}
 
-	private synchronized void onServiceRegistration(final ServiceReference<?> reference) {
+	private void logFailure(final ServiceReference<?> sr, final Throwable failure) {
+		if (failure != null && !closed.get()) {
+			logger.error("Could not weave service ID {}", sr.getProperty(SERVICE_ID), failure);
+		}
+	}
+
+	private void onServiceRegistration(final ServiceReference<?> reference) {
 		if (wovenServiceByServiceRef.containsKey(reference)) {
 			// This might happen if a service arrives between the listener registration and
 			// the initial
 			// getAllServiceReferences call
 			return;
 		}
+		// Loading the interfaces and copying the properties does not need the lock
+		final WovenService wovenService = createWovenService(reference);
+		if (wovenService != null && addWovenService(wovenService)) {
+			fireEvent(SERVICE_REGISTRATION, wovenService);
+		}
+	}
+
+	private WovenService createWovenService(final ServiceReference<?> reference) {
 		final long originalServiceId = asLong(reference.getProperty(SERVICE_ID));
 
 		logger.debug("Preparing the weaving service ID {} provided by {}", originalServiceId,
@@ -195,6 +384,7 @@ public final class ServiceWeavingManager implements AllServiceListener {
 			case SERVICE_SCOPE:
 			case SERVICE_ASPECT_WEAVE:
 			case SERVICE_ASPECT_WEAVE_OPTIONAL:
+			case SERVICE_ASPECT_WEAVE_ENGINE:
 				continue;
 			default:
 				serviceProperties.put(key, val);
@@ -203,51 +393,147 @@ public final class ServiceWeavingManager implements AllServiceListener {
 		serviceRanking++;
 
 		// Check if we can weave it
+		final Bundle bundle = reference.getBundle();
+		final BundleRevision revision = bundle.adapt(BundleRevision.class);
 		final List<Class<?>> interfaces = new ArrayList<>();
 		for (final String intf : objectClass) {
 			try {
-				final Class<?> cls = reference.getBundle().loadClass(intf);
+				final Class<?> cls = loadInterface(bundle, revision, intf);
 				if (!cls.isInterface()) {
 					// Cannot weave!
 					logger.warn(
 							"Cannot weave service ID {} because it does not implement well-defined service interfaces, such as {}",
 							originalServiceId, cls.getName());
 					bundleContext.ungetService(reference);
-					return;
+					return null;
 				}
 				interfaces.add(cls);
 			} catch (final ClassNotFoundException e) {
 				// Should not happen
 				logger.error("Could not find class, not weaving service ID {}", originalServiceId, e);
 				bundleContext.ungetService(reference);
-				return;
+				return null;
 			}
 		}
 		serviceProperties.put(SERVICE_RANKING, serviceRanking);
 
+		final ProxyEngine proxyEngine = getProxyEngine(asString(reference.getProperty(SERVICE_ASPECT_WEAVE_ENGINE)),
+				defaultProxyEngine);
+		final ClassBinding classBinding = bytecodeWeavingHook != null ? bytecodeWeavingHook.getBinding(reference)
+				: null;
+		// the instances of a class bound to another service are proxied as is
+		final ClassBinding sharedBinding = bytecodeWeavingHook != null && classBinding == null
+				? bytecodeWeavingHook.getClassBinding(reference)
+				: null;
 		final AspecioServiceObject aspecioServiceObject = new AspecioServiceObject(serviceScope, reference,
-				originalService -> weave(interfaces, originalService));
+				originalService -> {
+					if (sharedBinding != null) {
+						sharedBinding.excludeInstance(originalService);
+					}
+					return weave(proxyEngine, interfaces, originalService);
+				}, statistics);
 
-		final WovenService wovenService = new WovenService(originalServiceId, requiredAspectsToWeave,
-				optionalAspectsToWeave, reference, objectClass, serviceProperties, aspecioServiceObject);
-		wovenServiceByServiceRef.put(reference, wovenService);
+		return new WovenService(originalServiceId, requiredAspectsToWeave, optionalAspectsToWeave, reference,
+				objectClass, serviceProperties, aspecioServiceObject, classBinding);
+	}
+
+	private Class<?> loadInterface(final Bundle bundle, final BundleRevision revision, final String name)
+			throws ClassNotFoundException {
+		if (revision == null) {
+			return bundle.loadClass(name);
+		}
+		final Map<String, Class<?>> interfaces = interfacesByRevision.computeIfAbsent(revision,
+				k -> new ConcurrentHashMap<>());
+		Class<?> cls = interfaces.get(name);
+		if (cls == null) {
+			cls = bundle.loadClass(name);
+			interfaces.putIfAbsent(name, cls);
+		}
+		return cls;
+	}
 
-		final Iterator<String> aspectIt = Stream
-				.concat(requiredAspectsToWeave.stream(), optionalAspectsToWeave.stream()).distinct().iterator();
-		while (aspectIt.hasNext()) {
-			final String aspect = aspectIt.next();
-			final List<WovenService> wovenServices = wovenServicesByAspect.computeIfAbsent(aspect,
-					k -> new ArrayList<>());
-			wovenServices.add(wovenService);
+	private void bundleChanged(final BundleEvent event) {
+		switch (event.getType()) {
+		case BundleEvent.RESOLVED:
+			dynamicWiringGeneration.incrementAndGet();
+			break;
+		case BundleEvent.UNRESOLVED:
+			interfacesByRevision.keySet().removeIf(revision -> revision.getBundle().equals(event.getBundle()));
+			proxyEngines.values().forEach(proxyEngine -> proxyEngine.release(event.getBundle()));
+			if (bytecodeWeavingHook != null) {
+				bytecodeWeavingHook.release(event.getBundle());
+			}
+			break;
+		default:
+			break;
 		}
-		fireEvent(SERVICE_REGISTRATION, wovenService);
 	}
 
-	private synchronized void onServiceUpdate(final ServiceReference<?> reference) {
+	// The service map decides which thread adds a service
+	private boolean addWovenService(final WovenService wovenService) {
+		final ServiceReference<?> reference = wovenService.originalReference;
+		final Lock lock = serviceLocks.get(reference);
+		lock.lock();
+		try {
+			// a service unregistered meanwhile is not woven anymore
+			if (reference.getBundle() == null
+					|| wovenServiceByServiceRef.putIfAbsent(reference, wovenService) != null) {
+				return false;
+			}
+			wovenServiceIndex.put(wovenService);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// a service already woven keeps its weaving, while a new one is proxied unless
+	// it can claim the binding of its class
+	private boolean isProxied(final ServiceReference<?> reference) {
 		final WovenService wovenService = wovenServiceByServiceRef.get(reference);
-		if (wovenService == null) {
+		if (wovenService != null) {
+			return wovenService.classBinding == null;
+		}
+		return bytecodeWeavingHook.getBinding(reference) == null;
+	}
+
+	private void onServiceUpdate(final ServiceReference<?> reference) {
+		final WovenService currentWovenService = wovenServiceByServiceRef.get(reference);
+		if (currentWovenService == null) {
+			// a service that left through MODIFIED_ENDMATCH comes back as MODIFIED
+			onServiceRegistration(reference);
+			return;
+		}
+		if (currentWovenService.classBinding != null && bytecodeWeavingHook.getBinding(reference) == null) {
+			// now requesting required aspects, the service moves to a proxy hiding it
+			onServiceDeparture(reference);
+			candidateServices.add(reference);
+			onServiceRegistration(reference);
 			return;
 		}
+		final WovenService updatedWovenService;
+		final EnumSet<ChangeEvent> events = EnumSet.noneOf(ChangeEvent.class);
+		final Lock lock = serviceLocks.get(reference);
+		lock.lock();
+		try {
+			// the last update reads the latest properties, whatever the order of the
+			// updates racing on the service
+			final WovenService wovenService = wovenServiceByServiceRef.get(reference);
+			if (wovenService == null) {
+				// departed meanwhile
+				return;
+			}
+			updatedWovenService = updateWovenService(reference, wovenService, events);
+		} finally {
+			lock.unlock();
+		}
+		if (!events.isEmpty()) {
+			fireEvent(new WovenServiceEvent(SERVICE_UPDATE, events), updatedWovenService);
+		}
+	}
+
+	private WovenService updateWovenService(final ServiceReference<?> reference, final WovenService wovenService,
+			final Set<ChangeEvent> events) {
 		final List<String> requiredAspectsToWeave = new ArrayList<>(
 				Arrays.asList(asStringArray(reference.getProperty(SERVICE_ASPECT_WEAVE))));
 		final List<String> optionalAspectsToWeave = new ArrayList<>(
@@ -267,6 +553,7 @@ public final class ServiceWeavingManager implements AllServiceListener {
 			case SERVICE_SCOPE:
 			case SERVICE_ASPECT_WEAVE:
 			case SERVICE_ASPECT_WEAVE_OPTIONAL:
+			case SERVICE_ASPECT_WEAVE_ENGINE:
 				continue;
 			default:
 				serviceProperties.put(key, val);
@@ -281,8 +568,11 @@ public final class ServiceWeavingManager implements AllServiceListener {
 
 		final WovenService updatedWovenService = wovenService.update(requiredAspectsToWeave, optionalAspectsToWeave,
 				serviceProperties);
+		wovenServiceByServiceRef.put(reference, updatedWovenService);
+		if (requiredAspectsChanged || optionalAspectsChanged) {
+			wovenServiceIndex.put(updatedWovenService);
+		}
 
-		final EnumSet<ChangeEvent> events = EnumSet.noneOf(ChangeEvent.class);
 		if (requiredAspectsChanged) {
 			events.add(REQUIRED_ASPECT_CHANGE);
 		}
@@ -292,71 +582,75 @@ public final class ServiceWeavingManager implements AllServiceListener {
 		if (servicePropertiesChanged) {
 			events.add(SERVICE_PROPERTIES_CHANGE);
 		}
-		if (!events.isEmpty()) {
-			fireEvent(new WovenServiceEvent(SERVICE_UPDATE, events), updatedWovenService);
+		return updatedWovenService;
+	}
+
+	private void onServiceDeparture(final ServiceReference<?> reference) {
+		final WovenService wovenService;
+		final Lock lock = serviceLocks.get(reference);
+		lock.lock();
+		try {
+			wovenService = wovenServiceByServiceRef.remove(reference);
+			if (wovenService != null) {
+				wovenServiceIndex.remove(reference);
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (wovenService != null) {
+			if (wovenService.classBinding != null) {
+				wovenService.classBinding.release(reference);
+			}
+			fireEvent(SERVICE_DEPARTURE, wovenService);
 		}
 	}
 
-	private synchronized void onServiceDeparture(final ServiceReference<?> reference) {
-		final WovenService wovenService = wovenServiceByServiceRef.get(reference);
-		if (wovenService == null) {
+	/**
+	 * Generates the proxy class of a weave candidate declared by a bundle ahead of
+	 * the registration of its service.
+	 */
+	public void prepareProxyClass(final Bundle bundle, final WeaveCandidate candidate) {
+		final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+		if (wiring == null) {
 			return;
 		}
-		fireEvent(SERVICE_DEPARTURE, wovenService);
+		// using the class loader does not trigger a lazy activation of the bundle
+		final ClassLoader classLoader = wiring.getClassLoader();
+		try {
+			final Class<?> implementationClass = classLoader.loadClass(candidate.implementationClass);
+			final List<Class<?>> interfaces = new ArrayList<>();
+			for (final String intf : candidate.objectClass) {
+				final Class<?> cls = classLoader.loadClass(intf);
+				if (!cls.isInterface()) {
+					logger.debug("Not preparing {} as {} is not an interface", candidate.implementationClass, intf);
+					return;
+				}
+				interfaces.add(cls);
+			}
+			// the engine selected by the component, as when weaving its service
+			getProxyEngine(candidate.engine, defaultProxyEngine).getProxyClass(implementationClass, interfaces);
+		} catch (final ClassNotFoundException | LinkageError | RuntimeException e) {
+			logger.warn("Could not prepare the proxy class of {} provided by {}", candidate.implementationClass,
+					bundle.getSymbolicName(), e);
+		}
 	}
 
-	private Proxy weave(final List<Class<?>> interfaces, final Object delegateToWeave) {
-		final ProxyClassLoader dynamicClassLoader = getDynamicClassLoader(delegateToWeave);
-
-		final ProxyClass<? extends Object> proxyClass = ProxyBuilder.build(dynamicClassLoader,
-				delegateToWeave.getClass(), interfaces.toArray(new Class<?>[0]));
+	private Proxy weave(final ProxyEngine proxyEngine, final List<Class<?>> interfaces,
+			final Object delegateToWeave) {
+		final ProxyClass<?> proxyClass = proxyEngine.getProxyClass(delegateToWeave.getClass(), interfaces);
 		return proxyClass.newInstance(delegateToWeave);
 	}
 
-	private ProxyClassLoader getDynamicClassLoader(final Object delegateToWeave) {
-		return getDynamicClassLoader(delegateToWeave.getClass());
-	}
-
-	private ProxyClassLoader getDynamicClassLoader(final Class<?> clazz) {
-		// Find all bundles required to instantiate the class and bridge their
-		// classloaders in case the abstract class or interface lives in non-imported
-		// packages
-		Class<?> currClazz = clazz;
-		final List<BundleRevision> bundleRevs = new ArrayList<>();
-		Map<BundleRevision, BundleRevisionPath> revisions = revisionMap;
-		BundleRevisionPath bundleRevPath = null;
-		do {
-			final BundleRevision bundleRev = FrameworkUtil.getBundle(currClazz).adapt(BundleRevision.class);
-			if (!bundleRevs.contains(bundleRev)) {
-				bundleRevs.add(bundleRev);
-				bundleRevPath = revisions.computeIfAbsent(bundleRev, k -> new BundleRevisionPath());
-				revisions = bundleRevPath.computeSubMapIfAbsent(() -> synchronizedMap(new WeakIdentityHashMap<>()));
-			}
-			currClazz = currClazz.getSuperclass();
-		} while (currClazz != null && currClazz != Object.class);
-
-		return bundleRevPath.computeClassLoaderIfAbsent(() -> {
-			// the bundles set is now prioritized ...
-			final ClassLoader[] classLoaders = bundleRevs.stream().map(b -> b.getWiring().getClassLoader())
-					.toArray(ClassLoader[]::new);
-			return new ProxyClassLoader(new BridgingClassLoader(classLoaders));
-		});
-	}
-
-	private void startBundle(final Bundle b) {
-		try {
-			b.start(START_TRANSIENT);
-		} catch (final BundleException e) {
-			logger.error("Could not start bundle {}", b, e);
+	private ProxyEngine getProxyEngine(final String name, final ProxyEngine defaultEngine) {
+		if (name == null) {
+			return defaultEngine;
 		}
-	}
-
-	private void stopBundle(final Bundle b) {
-		try {
-			b.stop(STOP_TRANSIENT);
-		} catch (final BundleException e) {
-			logger.error("Could not stop bundle {}", b, e);
+		final ProxyEngine proxyEngine = proxyEngines.get(name);
+		if (proxyEngine == null) {
+			logger.warn("Unknown proxy engine {}, using the {} engine instead", name, defaultEngine.getName());
+			return defaultEngine;
 		}
+		return proxyEngine;
 	}
 
 	private void fireEvent(final WovenServiceEvent event, final WovenService wovenService) {
@@ -371,8 +665,34 @@ public final class ServiceWeavingManager implements AllServiceListener {
 		wovenServiceListeners.remove(wovenServiceListener);
 	}
 
+	public WeavingStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns the services requesting weaving, woven or not.
+	 */
+	public CandidateServiceIndex getCandidateServices() {
+		return candidateServices;
+	}
+
+	public ProxyClassRegistry getProxyClassRegistry() {
+		return proxyClassRegistry;
+	}
+
+	/**
+	 * Returns the latest state of a woven service, or {@code null} once it has
+	 * departed.
+	 */
+	public WovenService getWovenService(final ServiceReference<?> reference) {
+		return wovenServiceByServiceRef.get(reference);
+	}
+
+	/**
+	 * Returns the live woven services currently requesting an aspect.
+	 */
 	public List<WovenService> getWovenServicesForAspect(final String aspectName) {
-		return wovenServicesByAspect.get(aspectName);
+		return wovenServiceIndex.getServices(aspectName);
 	}
 
 }
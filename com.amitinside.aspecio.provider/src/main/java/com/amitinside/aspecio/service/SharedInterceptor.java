@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Objects.requireNonNull;
+
+import io.primeval.reflex.proxy.CallContext;
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.handler.BooleanInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ByteInterceptionHandler;
+import io.primeval.reflex.proxy.handler.CharInterceptionHandler;
+import io.primeval.reflex.proxy.handler.DoubleInterceptionHandler;
+import io.primeval.reflex.proxy.handler.FloatInterceptionHandler;
+import io.primeval.reflex.proxy.handler.IntInterceptionHandler;
+import io.primeval.reflex.proxy.handler.InterceptionHandler;
+import io.primeval.reflex.proxy.handler.LongInterceptionHandler;
+import io.primeval.reflex.proxy.handler.ShortInterceptionHandler;
+import io.primeval.reflex.proxy.handler.VoidInterceptionHandler;
+
+/**
+ * Interceptor shared by all the proxies of a woven service, delegating to the
+ * current interceptor chain of the service.
+ * <p>
+ * Proxies are bound to it once, so that changing the chain is a single
+ * volatile write whatever the number of live proxies.
+ */
+public final class SharedInterceptor implements Interceptor {
+
+	private volatile Interceptor delegate;
+
+	public SharedInterceptor(final Interceptor delegate) {
+		this.delegate = requireNonNull(delegate, "'Interceptor cannot be null'");
+	}
+
+	public Interceptor get() {
+		return delegate;
+	}
+
+	public void set(final Interceptor delegate) {
+		this.delegate = requireNonNull(delegate, "'Interceptor cannot be null'");
+	}
+
+	@Override
+	public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> void onCall(final CallContext context, final VoidInterceptionHandler handler)
+			throws E {
+		delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> boolean onCall(final CallContext context, final BooleanInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> byte onCall(final CallContext context, final ByteInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> char onCall(final CallContext context, final CharInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> double onCall(final CallContext context, final DoubleInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> float onCall(final CallContext context, final FloatInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> long onCall(final CallContext context, final LongInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+
+	@Override
+	public <E extends Throwable> short onCall(final CallContext context, final ShortInterceptionHandler handler)
+			throws E {
+		return delegate.onCall(context, handler);
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Collections.unmodifiableList;
+import static org.osgi.framework.Constants.OBJECTCLASS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A component implementation class declared as candidate for weaving, along
+ * with the service interfaces it is registered with and the proxy engine it
+ * selects, if any.
+ * <p>
+ * Candidates are read from the
+ * {@link com.amitinside.aspecio.api.AspecioConstants#ASPECIO_WEAVE_HEADER}
+ * manifest header, whose clauses are of the form
+ * {@code implementation.Class;objectClass="a.Interface,b.Interface";engine=host},
+ * the engine being optional.
+ */
+public final class WeaveCandidate {
+
+	private static final String ENGINE_ATTRIBUTE = "engine";
+
+	/** Fully qualified name of the component implementation class. */
+	public final String implementationClass;
+
+	/** Service interfaces, in the order they are registered with. */
+	public final List<String> objectClass;
+
+	/**
+	 * Name of the proxy engine selected by the component, or {@code null} for
+	 * the default engine.
+	 */
+	public final String engine;
+
+	public WeaveCandidate(final String implementationClass, final List<String> objectClass, final String engine) {
+		this.implementationClass = implementationClass;
+		this.objectClass = unmodifiableList(objectClass);
+		this.engine = engine;
+	}
+
+	public static List<WeaveCandidate> parse(final String header) {
+		final List<WeaveCandidate> candidates = new ArrayList<>();
+		if (header == null) {
+			return candidates;
+		}
+		for (final String clause : split(header, ',')) {
+			final List<String> parts = split(clause, ';');
+			if (parts.isEmpty() || parts.get(0).isEmpty()) {
+				continue;
+			}
+			final List<String> objectClass = new ArrayList<>();
+			String engine = null;
+			for (final String attribute : parts.subList(1, parts.size())) {
+				final int eq = attribute.indexOf('=');
+				if (eq < 0) {
+					continue;
+				}
+				final String name = attribute.substring(0, eq).trim();
+				if (ENGINE_ATTRIBUTE.equals(name)) {
+					engine = unquote(attribute.substring(eq + 1).trim());
+					continue;
+				}
+				if (!OBJECTCLASS.equals(name)) {
+					continue;
+				}
+				for (final String intf : unquote(attribute.substring(eq + 1).trim()).split(",")) {
+					if (!intf.trim().isEmpty()) {
+						objectClass.add(intf.trim());
+					}
+				}
+			}
+			if (!objectClass.isEmpty()) {
+				candidates.add(new WeaveCandidate(parts.get(0), objectClass, engine));
+			}
+		}
+		return candidates;
+	}
+
+	// splits on the separator, ignoring the ones in quoted values
+	private static List<String> split(final String value, final char separator) {
+		final List<String> parts = new ArrayList<>();
+		final StringBuilder current = new StringBuilder();
+		boolean quoted = false;
+		for (final char c : value.toCharArray()) {
+			if (c == '"') {
+				quoted = !quoted;
+			}
+			if (c == separator && !quoted) {
+				parts.add(current.toString().trim());
+				current.setLength(0);
+			} else {
+				current.append(c);
+			}
+		}
+		parts.add(current.toString().trim());
+		return parts;
+	}
+
+	private static String unquote(final String value) {
+		if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "WeaveCandidate{" + "implementationClass=" + implementationClass + ", objectClass=" + objectClass + ", engine="
+				+ engine + '}';
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_PREPARATION_THREADS;
+import static com.amitinside.aspecio.api.AspecioConstants.ASPECIO_WEAVE_HEADER;
+import static com.amitinside.aspecio.util.AspecioUtil.getIntProperty;
+import static java.util.Objects.requireNonNull;
+import static org.osgi.framework.Bundle.ACTIVE;
+import static org.osgi.framework.Bundle.RESOLVED;
+import static org.osgi.framework.Bundle.STARTING;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.util.tracker.BundleTracker;
+import org.osgi.util.tracker.BundleTrackerCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amitinside.aspecio.util.AspecioThreadFactory;
+
+/**
+ * Tracks resolved bundles declaring weave candidates, either through the
+ * {@link com.amitinside.aspecio.api.AspecioConstants#ASPECIO_WEAVE_HEADER}
+ * manifest header or through their Declarative Services component
+ * descriptions, and prepares their proxy classes on a background pool, so that
+ * weaving their services only has to instantiate the proxies.
+ */
+public final class WeaveCandidateTracker implements BundleTrackerCustomizer<Future<?>> {
+
+	private final Logger logger = LoggerFactory.getLogger(WeaveCandidateTracker.class);
+
+	private final ServiceWeavingManager serviceWeavingManager;
+	private final BundleTracker<Future<?>> tracker;
+	private final ExecutorService executor;
+
+	public WeaveCandidateTracker(final BundleContext bundleContext,
+			final ServiceWeavingManager serviceWeavingManager) {
+		requireNonNull(bundleContext, "'Bundle context cannot be null'");
+		this.serviceWeavingManager = requireNonNull(serviceWeavingManager, "'Weaving manager cannot be null'");
+		final int threads = getIntProperty(bundleContext, ASPECIO_PREPARATION_THREADS,
+				Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		executor = Executors.newFixedThreadPool(Math.max(1, threads), new AspecioThreadFactory("Preparation"));
+		tracker = new BundleTracker<>(bundleContext, RESOLVED | STARTING | ACTIVE, this);
+	}
+
+	public void open() {
+		tracker.open();
+	}
+
+	public void close() {
+		tracker.close();
+		executor.shutdownNow();
+	}
+
+	@Override
+	public Future<?> addingBundle(final Bundle bundle, final BundleEvent event) {
+		final String header = bundle.getHeaders("").get(ASPECIO_WEAVE_HEADER);
+		if (header == null && !ComponentDescriptionReader.hasComponentDescriptions(bundle)) {
+			return null;
+		}
+		return executor.submit(() -> prepare(bundle, header));
+	}
+
+	private void prepare(final Bundle bundle, final String header) {
+		final List<WeaveCandidate> candidates = WeaveCandidate.parse(header);
+		candidates.addAll(ComponentDescriptionReader.read(bundle));
+		if (candidates.isEmpty()) {
+			return;
+		}
+		logger.debug("Preparing the proxy classes of {} weave candidates provided by {}", candidates.size(),
+				bundle.getSymbolicName());
+		final Set<String> prepared = new HashSet<>();
+		for (final WeaveCandidate candidate : candidates) {
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+			if (prepared.add(candidate.implementationClass + candidate.objectClass + candidate.engine)) {
+				serviceWeavingManager.prepareProxyClass(bundle, candidate);
+			}
+		}
+	}
+
+	@Override
+	public void modifiedBundle(final Bundle bundle, final BundleEvent event, final Future<?> preparation) {
+		// nothing to do, proxy classes are cached per bundle revision
+	}
+
+	@Override
+	public void removedBundle(final Bundle bundle, final BundleEvent event, final Future<?> preparation) {
+		// proxy classes are released with the bundle revision
+		preparation.cancel(false);
+	}
+
+}
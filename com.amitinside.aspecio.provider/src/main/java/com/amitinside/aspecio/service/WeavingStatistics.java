@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.amitinside.aspecio.api.WeavingStatisticsDTO;
+
+/**
+ * Collects the weaving counters exposed through
+ * {@link com.amitinside.aspecio.api.Aspecio#getWeavingStatistics()}.
+ * <p>
+ * All counters are contention-free and can be updated from any thread.
+ */
+public final class WeavingStatistics {
+
+	private final LongAdder proxyClassLookups = new LongAdder();
+	private final LongAdder proxyClassesGenerated = new LongAdder();
+	private final LongAdder restartedBundles = new LongAdder();
+	private final LongAdder restartDurationNanos = new LongAdder();
+	private final LongAdder hiddenServiceReferences = new LongAdder();
+	private final LongAdder hiddenServiceEvents = new LongAdder();
+	private final LongAdder createdProxyClassLoaders = new LongAdder();
+	private final LongAdder releasedProxyClassLoaders = new LongAdder();
+	private final LongAdder releasedProxyClasses = new LongAdder();
+	private final LongAdder coalescedAspectChanges = new LongAdder();
+	private final LongAdder recoveredGracePeriods = new LongAdder();
+	private final LongAdder expiredGracePeriods = new LongAdder();
+	private final LongAdder droppedServiceEvents = new LongAdder();
+	private final LongAdder createdPooledProxies = new LongAdder();
+	private final LongAdder sharedPooledProxies = new LongAdder();
+	private final LongAdder releasedPooledProxies = new LongAdder();
+	private final LongAdder inPlaceWovenServices = new LongAdder();
+	private final LongAdder staleServiceConsumers = new LongAdder();
+	private final LongAdder bytecodeWovenClasses = new LongAdder();
+
+	public void proxyClassRequested() {
+		proxyClassLookups.increment();
+	}
+
+	public void proxyClassGenerated() {
+		proxyClassesGenerated.increment();
+	}
+
+	public void bundlesRestarted(final int count, final long durationNanos) {
+		restartedBundles.add(count);
+		restartDurationNanos.add(durationNanos);
+	}
+
+	public void serviceReferencesHidden(final int count) {
+		hiddenServiceReferences.add(count);
+	}
+
+	public void serviceEventsHidden(final int count) {
+		hiddenServiceEvents.add(count);
+	}
+
+	public void proxyClassLoaderCreated() {
+		createdProxyClassLoaders.increment();
+	}
+
+	public void proxyClassLoaderReleased(final int proxyClasses) {
+		releasedProxyClassLoaders.increment();
+		releasedProxyClasses.add(proxyClasses);
+	}
+
+	public void aspectChangeCoalesced() {
+		coalescedAspectChanges.increment();
+	}
+
+	public void gracePeriodRecovered() {
+		recoveredGracePeriods.increment();
+	}
+
+	public void gracePeriodExpired() {
+		expiredGracePeriods.increment();
+	}
+
+	public void serviceEventDropped() {
+		droppedServiceEvents.increment();
+	}
+
+	public void pooledProxyCreated() {
+		createdPooledProxies.increment();
+	}
+
+	public void pooledProxyShared() {
+		sharedPooledProxies.increment();
+	}
+
+	public void pooledProxyReleased() {
+		releasedPooledProxies.increment();
+	}
+
+	public void serviceWovenInPlace(final int directConsumers) {
+		inPlaceWovenServices.increment();
+		staleServiceConsumers.add(directConsumers);
+	}
+
+	public void classWovenInBytecode() {
+		bytecodeWovenClasses.increment();
+	}
+
+	public WeavingStatisticsDTO toDTO() {
+		final long generated = proxyClassesGenerated.sum();
+		final WeavingStatisticsDTO dto = new WeavingStatisticsDTO();
+		dto.proxyClassCacheMisses = generated;
+		dto.proxyClassCacheHits = Math.max(0, proxyClassLookups.sum() - generated);
+		dto.restartedBundles = restartedBundles.sum();
+		dto.restartDurationMillis = NANOSECONDS.toMillis(restartDurationNanos.sum());
+		dto.hiddenServiceReferences = hiddenServiceReferences.sum();
+		dto.hiddenServiceEvents = hiddenServiceEvents.sum();
+		dto.createdProxyClassLoaders = createdProxyClassLoaders.sum();
+		dto.releasedProxyClassLoaders = releasedProxyClassLoaders.sum();
+		dto.releasedProxyClasses = releasedProxyClasses.sum();
+		dto.coalescedAspectChanges = coalescedAspectChanges.sum();
+		dto.recoveredGracePeriods = recoveredGracePeriods.sum();
+		dto.expiredGracePeriods = expiredGracePeriods.sum();
+		dto.droppedServiceEvents = droppedServiceEvents.sum();
+		final long created = createdPooledProxies.sum();
+		dto.pooledProxyMisses = created;
+		dto.pooledProxyHits = sharedPooledProxies.sum();
+		dto.livePooledProxies = Math.max(0, created - releasedPooledProxies.sum());
+		dto.inPlaceWovenServices = inPlaceWovenServices.sum();
+		dto.staleServiceConsumers = staleServiceConsumers.sum();
+		dto.bytecodeWovenClasses = bytecodeWovenClasses.sum();
+		return dto;
+	}
+}
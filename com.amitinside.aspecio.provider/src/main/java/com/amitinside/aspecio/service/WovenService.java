@@ -48,6 +48,12 @@ public final class WovenService {
     /** The Aspecio service object associated with this woven service. */
     public final AspecioServiceObject aspecioServiceObject;
 
+    /**
+     * Binding of the implementation class woven in bytecode mode, or
+     * {@code null} if the service is proxied.
+     */
+    public final ClassBinding classBinding;
+
     /**
      * Constructs a new {@code WovenService} instance.
      *
@@ -63,6 +69,26 @@ public final class WovenService {
                         final List<String> optionalAspectsToWeave, final ServiceReference<?> originalReference,
                         final List<String> objectClass, final Map<String, Object> serviceProperties,
                         final AspecioServiceObject aspecioServiceObject) {
+        this(originalServiceId, requiredAspectsToWeave, optionalAspectsToWeave, originalReference, objectClass,
+             serviceProperties, aspecioServiceObject, null);
+    }
+
+    /**
+     * Constructs a new {@code WovenService} instance woven in bytecode mode.
+     *
+     * @param originalServiceId      The ID of the original service.
+     * @param requiredAspectsToWeave List of required aspects to be woven.
+     * @param optionalAspectsToWeave List of optional aspects to be woven.
+     * @param originalReference      Reference to the original OSGi service.
+     * @param objectClass            List of object classes the original service implements.
+     * @param serviceProperties      Properties associated with the service.
+     * @param aspecioServiceObject   The Aspecio service object associated with this service.
+     * @param classBinding           The binding of the woven implementation class, if any.
+     */
+    public WovenService(final long originalServiceId, final List<String> requiredAspectsToWeave,
+                        final List<String> optionalAspectsToWeave, final ServiceReference<?> originalReference,
+                        final List<String> objectClass, final Map<String, Object> serviceProperties,
+                        final AspecioServiceObject aspecioServiceObject, final ClassBinding classBinding) {
         this.requiredAspects = requiredAspectsToWeave;
         this.optionalAspects = optionalAspectsToWeave;
         this.originalReference = originalReference;
@@ -70,6 +96,7 @@ public final class WovenService {
         this.objectClass = objectClass;
         this.serviceProperties = serviceProperties;
         this.aspecioServiceObject = aspecioServiceObject;
+        this.classBinding = classBinding;
     }
 
     /**
@@ -83,6 +110,6 @@ public final class WovenService {
     public WovenService update(final List<String> requiredAspects, final List<String> optionalAspects,
                                final Map<String, Object> serviceProperties) {
         return new WovenService(originalServiceId, requiredAspects, optionalAspects, originalReference, objectClass,
-                                serviceProperties, aspecioServiceObject);
+                                serviceProperties, aspecioServiceObject, classBinding);
     }
 }
\ No newline at end of file
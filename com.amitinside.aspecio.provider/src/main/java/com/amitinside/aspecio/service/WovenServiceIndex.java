@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Bidirectional index between aspect names and the woven services requesting
+ * them, either as required or optional aspects.
+ * <p>
+ * Updating a woven service only moves it between the aspects it stopped or
+ * started requesting, and departed services are removed from all of their
+ * aspects, so that the services of an aspect are exactly the live ones
+ * currently requesting it. Each aspect entry is updated atomically and dropped
+ * once empty. Callers are expected to serialize the updates of a given
+ * service.
+ */
+public final class WovenServiceIndex {
+
+	private final Map<String, Map<ServiceReference<?>, WovenService>> servicesByAspect = new ConcurrentHashMap<>();
+	private final Map<ServiceReference<?>, Set<String>> aspectsByService = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds a woven service, or replaces the previous state of that service.
+	 */
+	public void put(final WovenService wovenService) {
+		final ServiceReference<?> reference = wovenService.originalReference;
+		final Set<String> aspects = new LinkedHashSet<>(wovenService.requiredAspects);
+		aspects.addAll(wovenService.optionalAspects);
+		final Set<String> previousAspects = aspectsByService.put(reference, unmodifiableSet(aspects));
+		if (previousAspects != null) {
+			for (final String aspect : previousAspects) {
+				if (!aspects.contains(aspect)) {
+					removeFromAspect(aspect, reference);
+				}
+			}
+		}
+		for (final String aspect : aspects) {
+			servicesByAspect.compute(aspect, (k, services) -> {
+				final Map<ServiceReference<?>, WovenService> aspectServices = services != null ? services
+						: new ConcurrentHashMap<>();
+				aspectServices.put(reference, wovenService);
+				return aspectServices;
+			});
+		}
+	}
+
+	public void remove(final ServiceReference<?> reference) {
+		final Set<String> aspects = aspectsByService.remove(reference);
+		if (aspects != null) {
+			aspects.forEach(aspect -> removeFromAspect(aspect, reference));
+		}
+	}
+
+	private void removeFromAspect(final String aspect, final ServiceReference<?> reference) {
+		servicesByAspect.computeIfPresent(aspect, (k, services) -> {
+			services.remove(reference);
+			return services.isEmpty() ? null : services;
+		});
+	}
+
+	public List<WovenService> getServices(final String aspect) {
+		final Map<ServiceReference<?>, WovenService> services = servicesByAspect.get(aspect);
+		return services == null ? emptyList() : new ArrayList<>(services.values());
+	}
+
+	public Set<String> getAspects(final ServiceReference<?> reference) {
+		final Set<String> aspects = aspectsByService.get(reference);
+		return aspects == null ? emptySet() : aspects;
+	}
+
+	public int aspectCount() {
+		return servicesByAspect.size();
+	}
+
+	public void clear() {
+		aspectsByService.clear();
+		servicesByAspect.clear();
+	}
+}
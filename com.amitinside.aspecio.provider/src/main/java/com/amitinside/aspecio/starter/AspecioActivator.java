@@ -81,7 +81,7 @@ public final class AspecioActivator implements BundleActivator {
 		final AspecioGogoCommand gogoCommand = new AspecioGogoCommand(context, aspecio);
 		final Map<String, Object> props = new HashMap<>();
 		props.put(COMMAND_SCOPE, "aspecio");
-		props.put(COMMAND_FUNCTION, new String[] { "aspects", "woven" });
+		props.put(COMMAND_FUNCTION, new String[] { "aspects", "woven", "stats", "proxies" });
 		context.registerService(Object.class, gogoCommand, new Hashtable<>(props));
 	}
 }
\ No newline at end of file
@@ -17,6 +17,9 @@ package com.amitinside.aspecio.util;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static org.osgi.framework.namespace.PackageNamespace.PACKAGE_NAMESPACE;
+import static org.osgi.framework.namespace.PackageNamespace.REQUIREMENT_RESOLUTION_DIRECTIVE;
+import static org.osgi.framework.namespace.PackageNamespace.RESOLUTION_DYNAMIC;
 
 import java.util.Collection;
 import java.util.List;
@@ -25,6 +28,9 @@ import java.util.SortedSet;
 import java.util.concurrent.Callable;
 import java.util.stream.Stream;
 
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleRevision;
+
 public final class AspecioUtil {
 
 	private AspecioUtil() {
@@ -90,4 +96,31 @@ public final class AspecioUtil {
 	public static List<String> asList(final Object source) {
 		return Stream.of(asStringArray(source)).collect(toList());
 	}
-}
\ No newline at end of file
+
+	public static boolean getBooleanProperty(final BundleContext context, final String key,
+			final boolean defaultValue) {
+		final String value = context.getProperty(key);
+		return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+	}
+
+	/**
+	 * Tells whether a bundle revision dynamically imports packages, the only way
+	 * for its class loader to find classes it did not find before.
+	 */
+	public static boolean hasDynamicImports(final BundleRevision revision) {
+		return revision.getDeclaredRequirements(PACKAGE_NAMESPACE).stream()
+				.anyMatch(r -> RESOLUTION_DYNAMIC.equals(r.getDirectives().get(REQUIREMENT_RESOLUTION_DIRECTIVE)));
+	}
+
+	public static int getIntProperty(final BundleContext context, final String key, final int defaultValue) {
+		final String value = context.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (final NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
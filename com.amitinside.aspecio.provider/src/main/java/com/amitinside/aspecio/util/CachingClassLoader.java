@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Class loader caching the classes found and the class names not found by a
+ * delegate class loader.
+ * <p>
+ * The class loaders of a bundle wiring find the same classes for as long as
+ * the wiring lives, except for dynamically imported packages whose wires get
+ * added on the fly, so both caches are only dropped when the given generation
+ * changes. Without generation, the caches are kept for the lifetime of the
+ * class loader, which must then be dropped along with the wirings it
+ * delegates to.
+ */
+public final class CachingClassLoader extends ClassLoader {
+
+	static {
+		registerAsParallelCapable();
+	}
+
+	private final ClassLoader delegate;
+	private final LongSupplier generation;
+	private final Map<String, Class<?>> found = new ConcurrentHashMap<>();
+	private final Set<String> notFound = ConcurrentHashMap.newKeySet();
+	private volatile long cachedGeneration;
+
+	public CachingClassLoader(final ClassLoader delegate) {
+		this(delegate, () -> 0L);
+	}
+
+	public CachingClassLoader(final ClassLoader delegate, final LongSupplier generation) {
+		super(null);
+		this.delegate = requireNonNull(delegate, "'Delegate class loader cannot be null'");
+		this.generation = requireNonNull(generation, "'Generation cannot be null'");
+		cachedGeneration = generation.getAsLong();
+	}
+
+	@Override
+	protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+		final long currentGeneration = generation.getAsLong();
+		if (currentGeneration != cachedGeneration) {
+			found.clear();
+			notFound.clear();
+			cachedGeneration = currentGeneration;
+		}
+		final Class<?> clazz = found.get(name);
+		if (clazz != null) {
+			return clazz;
+		}
+		if (notFound.contains(name)) {
+			throw new CachedClassNotFoundException(name);
+		}
+		try {
+			final Class<?> loaded = delegate.loadClass(name);
+			found.putIfAbsent(name, loaded);
+			return loaded;
+		} catch (final ClassNotFoundException e) {
+			// a miss seen before a generation change may not be one anymore
+			if (generation.getAsLong() == currentGeneration) {
+				notFound.add(name);
+				if (generation.getAsLong() != currentGeneration) {
+					notFound.remove(name); // the caches were dropped meanwhile
+				}
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public URL getResource(final String name) {
+		return delegate.getResource(name);
+	}
+
+	@Override
+	public Enumeration<URL> getResources(final String name) throws IOException {
+		return delegate.getResources(name);
+	}
+
+	// repeated misses are expected while probing bridged class loaders, so they do
+	// not pay for a stack trace
+	private static final class CachedClassNotFoundException extends ClassNotFoundException {
+
+		private static final long serialVersionUID = 1L;
+
+		CachedClassNotFoundException(final String name) {
+			super(name);
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe set comparing its elements by identity, with constant time
+ * additions and removals.
+ */
+public final class ConcurrentIdentitySet<E> {
+
+	private final Map<IdentityKey, E> elements = new ConcurrentHashMap<>();
+
+	public boolean add(final E element) {
+		return elements.putIfAbsent(new IdentityKey(element), element) == null;
+	}
+
+	public boolean remove(final E element) {
+		return elements.remove(new IdentityKey(element)) != null;
+	}
+
+	public boolean contains(final E element) {
+		return elements.containsKey(new IdentityKey(element));
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	public void forEach(final Consumer<? super E> action) {
+		elements.values().forEach(action);
+	}
+}
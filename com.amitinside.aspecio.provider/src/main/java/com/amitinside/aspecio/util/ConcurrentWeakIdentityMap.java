@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A concurrent map with weakly referenced keys compared by identity.
+ * <p>
+ * Reads take no lock, and entries whose key has been garbage-collected are
+ * expunged on every access. Values must not strongly reference their key, or
+ * the entry is only released when explicitly removed.
+ */
+public final class ConcurrentWeakIdentityMap<K, V> {
+
+	private final Map<Key, V> map = new ConcurrentHashMap<>();
+	private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+	public V get(final K key) {
+		expungeStaleEntries();
+		return map.get(new LookupKey(key));
+	}
+
+	/**
+	 * Returns the value of the key, computing it at most once if absent.
+	 */
+	public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+		expungeStaleEntries();
+		final V value = map.get(new LookupKey(key));
+		if (value != null) {
+			return value;
+		}
+		return map.computeIfAbsent(new WeakKey<>(key, queue), k -> mappingFunction.apply(key));
+	}
+
+	public V remove(final K key) {
+		expungeStaleEntries();
+		return map.remove(new LookupKey(key));
+	}
+
+	public void removeIf(final Predicate<? super K> predicate) {
+		expungeStaleEntries();
+		map.keySet().removeIf(k -> {
+			@SuppressWarnings("unchecked")
+			final K referent = (K) k.referent();
+			return referent != null && predicate.test(referent);
+		});
+	}
+
+	public void forEachValue(final Consumer<? super V> action) {
+		expungeStaleEntries();
+		map.values().forEach(action);
+	}
+
+	public int size() {
+		expungeStaleEntries();
+		return map.size();
+	}
+
+	public void clear() {
+		map.clear();
+		expungeStaleEntries();
+	}
+
+	private void expungeStaleEntries() {
+		Reference<? extends K> reference;
+		while ((reference = queue.poll()) != null) {
+			map.remove(reference);
+		}
+	}
+
+	private interface Key {
+		Object referent();
+	}
+
+	private static final class WeakKey<K> extends WeakReference<K> implements Key {
+
+		private final int hash;
+
+		WeakKey(final K referent, final ReferenceQueue<K> queue) {
+			super(referent, queue);
+			hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public Object referent() {
+			return get();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			final Object referent = get();
+			return referent != null && obj instanceof Key && ((Key) obj).referent() == referent;
+		}
+	}
+
+	// short-lived strong key used for lookups, sparing a weak reference
+	private static final class LookupKey implements Key {
+
+		private final Object referent;
+
+		LookupKey(final Object referent) {
+			this.referent = referent;
+		}
+
+		@Override
+		public Object referent() {
+			return referent;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(referent);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Key && ((Key) obj).referent() == referent;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collapses the events submitted for a key within a time window into a single
+ * run of an action for that key.
+ * <p>
+ * The window opens with the first event of a key and the action runs once it
+ * closes, so that an event is never delayed by more than the window, even
+ * under continuous churn. The key is released right before the action runs,
+ * so that events submitted meanwhile open a new window instead of being lost.
+ */
+public final class EventCoalescer<K> {
+
+	private final Logger logger = LoggerFactory.getLogger(EventCoalescer.class);
+
+	private final long windowMillis;
+	private final Consumer<K> action;
+	private final ScheduledExecutorService scheduler;
+	private final Map<K, Boolean> pending = new ConcurrentHashMap<>();
+
+	public EventCoalescer(final String name, final long windowMillis, final Consumer<K> action) {
+		this.windowMillis = windowMillis;
+		this.action = requireNonNull(action, "'Action cannot be null'");
+		scheduler = Executors.newSingleThreadScheduledExecutor(new AspecioThreadFactory(name));
+	}
+
+	/**
+	 * Submits an event for a key.
+	 *
+	 * @return {@code true} if the event opened a new window, {@code false} if it
+	 *         was coalesced with a pending one
+	 */
+	public boolean submit(final K key) {
+		if (pending.putIfAbsent(key, Boolean.TRUE) != null) {
+			return false;
+		}
+		try {
+			scheduler.schedule(() -> run(key), windowMillis, TimeUnit.MILLISECONDS);
+		} catch (final RejectedExecutionException e) {
+			// closed
+			pending.remove(key);
+		}
+		return true;
+	}
+
+	private void run(final K key) {
+		pending.remove(key);
+		try {
+			action.accept(key);
+		} catch (final RuntimeException e) {
+			logger.error("Could not process the coalesced events of {}", key, e);
+		}
+	}
+
+	public int pendingCount() {
+		return pending.size();
+	}
+
+	public void close() {
+		scheduler.shutdownNow();
+		pending.clear();
+	}
+}
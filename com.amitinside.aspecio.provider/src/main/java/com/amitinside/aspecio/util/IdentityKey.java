@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+/**
+ * A map key comparing the wrapped object by identity, regardless of its
+ * {@code equals} and {@code hashCode} methods.
+ */
+public final class IdentityKey {
+
+	private final Object value;
+	private final int hash;
+
+	public IdentityKey(final Object value) {
+		this.value = value;
+		hash = System.identityHashCode(value);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof IdentityKey && ((IdentityKey) obj).value == value;
+	}
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks on a shared {@link Executor} while keeping strict FIFO ordering
+ * among the tasks submitted for the same key. Tasks of different keys run in
+ * parallel.
+ * <p>
+ * Once closed, or when the executor rejects a key, the pending tasks of the
+ * affected keys are dropped and their futures completed with a
+ * {@link RejectedExecutionException}, so that nobody waits for them forever.
+ */
+public final class OrderedExecutor {
+
+	private final Executor executor;
+	private final Map<Object, TaskQueue> queues = new ConcurrentHashMap<>();
+	private final ThreadLocal<Object> currentKey = new ThreadLocal<>();
+	private volatile boolean closed;
+
+	public OrderedExecutor(final Executor executor) {
+		this.executor = requireNonNull(executor, "'Executor cannot be null'");
+	}
+
+	public CompletableFuture<Void> execute(final Object key, final Runnable task) {
+		final Task wrapped = new Task(task);
+		if (closed) {
+			wrapped.reject();
+			return wrapped.future;
+		}
+		final boolean[] schedule = new boolean[1];
+		// the queue of a key is only ever mutated in the map's atomic compute
+		final TaskQueue queue = queues.compute(key, (k, q) -> {
+			final TaskQueue taskQueue = q != null ? q : new TaskQueue(k);
+			schedule[0] = q == null;
+			taskQueue.tasks.add(wrapped);
+			return taskQueue;
+		});
+		if (schedule[0]) {
+			try {
+				executor.execute(queue);
+			} catch (final RejectedExecutionException e) {
+				abort(queue);
+			}
+		}
+		return wrapped.future;
+	}
+
+	/**
+	 * Runs the task after all the tasks already submitted for the key and waits
+	 * for its completion. The task runs inline if the calling thread is already
+	 * running a task for that key.
+	 *
+	 * @throws RejectedExecutionException if the executor is closed before the
+	 *                                    task runs
+	 */
+	public void executeAndWait(final Object key, final Runnable task) {
+		if (key.equals(currentKey.get())) {
+			task.run();
+			return;
+		}
+		try {
+			// completed right away once closed, and completed by close() otherwise
+			execute(key, task).join();
+		} catch (final CompletionException e) {
+			throw Exceptions.duck(e.getCause());
+		}
+	}
+
+	/**
+	 * Rejects all the pending and future tasks. Tasks already running complete
+	 * normally. The executor should be shut down first, so that no queue can be
+	 * scheduled on it anymore.
+	 */
+	public void close() {
+		closed = true;
+		queues.values().forEach(this::abort);
+	}
+
+	// removes the queue from the map and rejects all its tasks, including the
+	// ones appended since it was scheduled
+	private void abort(final TaskQueue queue) {
+		final List<Task> aborted = new ArrayList<>();
+		queues.computeIfPresent(queue.key, (k, q) -> {
+			if (q != queue) {
+				return q;
+			}
+			aborted.addAll(q.tasks);
+			q.tasks.clear();
+			return null;
+		});
+		aborted.forEach(Task::reject);
+	}
+
+	private static final class Task implements Runnable {
+
+		final Runnable runnable;
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		Task(final Runnable runnable) {
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			try {
+				runnable.run();
+				future.complete(null);
+			} catch (final Throwable t) { // NOSONAR
+				future.completeExceptionally(t);
+			}
+		}
+
+		void reject() {
+			future.completeExceptionally(new RejectedExecutionException("The ordered executor is closed"));
+		}
+	}
+
+	private final class TaskQueue implements Runnable {
+
+		private final Object key;
+		private final Deque<Task> tasks = new ArrayDeque<>();
+
+		TaskQueue(final Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public void run() {
+			final Object previousKey = currentKey.get();
+			currentKey.set(key);
+			try {
+				for (;;) {
+					if (closed) {
+						abort(this);
+						return;
+					}
+					final Task[] next = new Task[1];
+					queues.computeIfPresent(key, (k, q) -> {
+						if (q != this) {
+							// aborted, and possibly replaced by a new queue
+							return q;
+						}
+						next[0] = tasks.poll();
+						return next[0] == null ? null : q;
+					});
+					if (next[0] == null) {
+						return;
+					}
+					next[0].run();
+				}
+			} finally {
+				currentKey.set(previousKey);
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of reentrant locks shared by keys of the same hash, so that
+ * operations on a given key are serialized while operations on different keys
+ * mostly run in parallel, without having to create and clean up a lock per
+ * key.
+ */
+public final class StripedLock {
+
+	private final Lock[] locks;
+	private final int mask;
+
+	public StripedLock(final int minimumStripes) {
+		int stripes = 1;
+		while (stripes < minimumStripes && stripes < 1 << 16) {
+			stripes <<= 1;
+		}
+		locks = new Lock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		mask = stripes - 1;
+	}
+
+	/**
+	 * Returns a number of stripes suited to the available processors.
+	 */
+	public static int defaultStripes() {
+		return Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	public Lock get(final Object key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return locks[hash & mask];
+	}
+
+	public int stripes() {
+		return locks.length;
+	}
+}
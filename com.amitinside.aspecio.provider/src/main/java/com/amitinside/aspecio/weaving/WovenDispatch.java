@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.weaving;
+
+/**
+ * Adapter called by the service methods of the classes Aspecio weaves in
+ * bytecode mode.
+ * <p>
+ * A woven method first reads the binding of its class, which is {@code null}
+ * while its service is not woven, and then asks for the dispatcher of the
+ * instance called, an object implementing the service interfaces whose calls go
+ * through the interceptor chain of the service. The dispatcher is cached by the
+ * instance itself. Once the chain is done, the dispatcher calls the woven
+ * method again, which must then run its original body: the last stage of the
+ * chain requests that through {@link #bypassNextCall()}, so that the next call
+ * to {@link #dispatcher(Object, Object, Object)} on that thread returns
+ * {@code null}.
+ * <p>
+ * This class is only meant to be called by woven code and by Aspecio.
+ */
+public final class WovenDispatch {
+
+	/**
+	 * Binding of a woven class to the interceptor chain of a woven service.
+	 */
+	public interface Binding {
+
+		/**
+		 * Creates the dispatcher of an instance of the woven class.
+		 *
+		 * @param self the instance called
+		 * @return an object implementing the service interfaces, calling the
+		 *         interceptor chain then the instance
+		 */
+		Object dispatcherOf(Object self);
+	}
+
+	private static final ThreadLocal<boolean[]> BYPASS = ThreadLocal.withInitial(() -> new boolean[1]);
+
+	private WovenDispatch() {
+		// no instances
+	}
+
+	/**
+	 * Called by woven methods to find the object to delegate to.
+	 *
+	 * @param binding the binding of the woven class, a {@link Binding}
+	 * @param self    the instance called
+	 * @param cached  the dispatcher cached by the instance, if any
+	 * @return the dispatcher of the instance, or {@code null} if the woven method
+	 *         must run its original body
+	 */
+	public static Object dispatcher(final Object binding, final Object self, final Object cached) {
+		final boolean[] bypass = BYPASS.get();
+		if (bypass[0]) {
+			bypass[0] = false;
+			return null;
+		}
+		return cached != null ? cached : ((Binding) binding).dispatcherOf(self);
+	}
+
+	/**
+	 * Makes the next woven method called on the current thread run its original
+	 * body.
+	 */
+	public static void bypassNextCall() {
+		BYPASS.get()[0] = true;
+	}
+
+	/**
+	 * Withdraws a bypass request which was not consumed, for instance because the
+	 * call failed before reaching the woven method.
+	 */
+	public static void clearBypass() {
+		BYPASS.get()[0] = false;
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Arrays.asList;
+import static com.amitinside.aspecio.test.TestSupport.stub;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+public final class BundleRestarterTest {
+
+	@Test
+	public void startsAChainFromItsLastProvider() {
+		final Bundle c = newBundle(3);
+		final Bundle b = newBundle(2, c);
+		final Bundle a = newBundle(1, b);
+
+		assertThat(BundleRestarter.plan(asList(a, b, c))).containsExactly(asList(c, b, a));
+	}
+
+	@Test
+	public void startsADiamondOnceProvidersFirst() {
+		final Bundle d = newBundle(4);
+		final Bundle b = newBundle(2, d);
+		final Bundle c = newBundle(3, d);
+		final Bundle a = newBundle(1, b, c);
+
+		final List<List<Bundle>> plan = BundleRestarter.plan(asList(c, a, d, b));
+
+		assertThat(plan).containsExactly(asList(d, b, c, a));
+	}
+
+	@Test
+	public void splitsIndependentGroupsOrderedByBundleId() {
+		final Bundle provider = newBundle(5);
+		final Bundle consumer = newBundle(2, provider);
+		final Bundle single = newBundle(3);
+		// wired to a bundle that does not need a restart
+		final Bundle other = newBundle(1, newBundle(4));
+
+		final List<List<Bundle>> plan = BundleRestarter.plan(asList(single, provider, other, consumer));
+
+		assertThat(plan).containsExactly(asList(other), asList(provider, consumer), asList(single));
+	}
+
+	@Test
+	public void breaksWiringCycles() {
+		final List<Bundle> providersOfA = new ArrayList<>();
+		final Bundle a = newBundle(1, providersOfA);
+		final Bundle b = newBundle(2, a);
+		providersOfA.add(b);
+
+		assertThat(BundleRestarter.plan(asList(b, a))).containsExactly(asList(b, a));
+	}
+
+	private static Bundle newBundle(final long id, final Bundle... providers) {
+		return newBundle(id, asList(providers));
+	}
+
+	private static Bundle newBundle(final long id, final List<Bundle> providers) {
+		final Bundle[] bundle = new Bundle[1];
+		final BundleWiring wiring = stub(BundleWiring.class, (method, args) -> {
+			switch (method) {
+			case "getBundle":
+				return bundle[0];
+			case "getRequiredWires":
+				final List<BundleWire> wires = new ArrayList<>();
+				for (final Bundle provider : providers) {
+					wires.add(stub(BundleWire.class, (m, a) -> {
+						if ("getProviderWiring".equals(m)) {
+							return provider.adapt(BundleWiring.class);
+						}
+						throw new UnsupportedOperationException(m);
+					}));
+				}
+				return wires;
+			default:
+				throw new UnsupportedOperationException(method);
+			}
+		});
+		bundle[0] = stub(Bundle.class, (method, args) -> {
+			switch (method) {
+			case "getBundleId":
+				return id;
+			case "compareTo":
+				return Long.compare(id, ((Bundle) args[0]).getBundleId());
+			case "adapt":
+				return args[0] == BundleWiring.class ? wiring : null;
+			case "toString":
+				return "bundle " + id;
+			default:
+				throw new UnsupportedOperationException(method);
+			}
+		});
+		return bundle[0];
+	}
+}
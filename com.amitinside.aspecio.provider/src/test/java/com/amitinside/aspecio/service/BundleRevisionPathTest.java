@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.test.TestSupport.runConcurrently;
+import static com.amitinside.aspecio.test.TestSupport.stub;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.osgi.framework.wiring.BundleRevision;
+
+import io.primeval.reflex.proxy.bytecode.ProxyClassLoader;
+
+public final class BundleRevisionPathTest {
+
+	private static final int THREADS = 32;
+	private static final int ITERATIONS = 2_000;
+
+	@Test
+	public void createsSubPathsAndClassLoadersOnceUnderContention() throws Exception {
+		final BundleRevisionPath root = new BundleRevisionPath();
+		final List<BundleRevision> revisions = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			revisions.add(stub(BundleRevision.class));
+		}
+		final AtomicInteger createdClassLoaders = new AtomicInteger();
+		final Set<ProxyClassLoader> classLoaders = ConcurrentHashMap.newKeySet();
+
+		runConcurrently(THREADS, 60, () -> {
+			final ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < ITERATIONS; i++) {
+				// walks a random path of up to three distinct revisions, as weaving does
+				BundleRevisionPath path = root;
+				final int first = random.nextInt(revisions.size());
+				final int length = 1 + random.nextInt(3);
+				for (int depth = 0; depth < length; depth++) {
+					path = path.getSubPath(revisions.get((first + depth) % revisions.size()));
+				}
+				classLoaders.add(path.computeClassLoaderIfAbsent(() -> {
+					createdClassLoaders.incrementAndGet();
+					return new ProxyClassLoader(getClass().getClassLoader());
+				}));
+			}
+			return null;
+		});
+		// one class loader per distinct path, none thrown away
+		assertThat(createdClassLoaders.get()).isEqualTo(classLoaders.size());
+		assertThat(classLoaders.size()).isLessThanOrEqualTo(revisions.size() * 3);
+		assertThat(root.getSubPath(revisions.get(0))).isSameAs(root.getSubPath(revisions.get(0)));
+	}
+
+	@Test
+	public void prunesRevisionsFromTheWholeTrie() {
+		final BundleRevisionPath root = new BundleRevisionPath();
+		final BundleRevision a = stub(BundleRevision.class);
+		final BundleRevision b = stub(BundleRevision.class);
+
+		final BundleRevisionPath ab = root.getSubPath(a).getSubPath(b);
+		final BundleRevisionPath rootB = root.getSubPath(b);
+
+		root.prune(revision -> revision == b);
+
+		assertThat(root.getSubPath(a).getSubPath(b)).isNotSameAs(ab);
+		assertThat(root.getSubPath(b)).isNotSameAs(rootB);
+	}
+}
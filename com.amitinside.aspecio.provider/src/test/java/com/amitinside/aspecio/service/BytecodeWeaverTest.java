@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amitinside.aspecio.weaving.WovenDispatch;
+
+public final class BytecodeWeaverTest {
+
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Traced {
+	}
+
+	public interface Calculator {
+
+		String describe(String name);
+
+		long add(long a, int b);
+
+		long twice(long a);
+	}
+
+	public static class SimpleCalculator implements Calculator {
+
+		@Override
+		@Traced
+		public String describe(final String name) {
+			return "calculator " + name;
+		}
+
+		@Override
+		public long add(final long a, final int b) {
+			return a + b;
+		}
+
+		@Override
+		public long twice(final long a) {
+			return add(a, (int) a);
+		}
+	}
+
+	private final List<String> calls = new ArrayList<>();
+	private Class<?> wovenClass;
+
+	@Before
+	public void weave() throws Exception {
+		final byte[] bytes = BytecodeWeaver.weave(bytesOf(SimpleCalculator.class),
+				BytecodeWeaver.serviceMethods(singletonList(Calculator.class)));
+		wovenClass = new WovenClassLoader(SimpleCalculator.class.getName(), bytes)
+				.loadClass(SimpleCalculator.class.getName());
+	}
+
+	@Test
+	public void runsTheOriginalMethodsWhileUnbound() throws Exception {
+		final Calculator calculator = (Calculator) wovenClass.getConstructor().newInstance();
+
+		assertThat(calculator.describe("a")).isEqualTo("calculator a");
+		assertThat(calculator.add(40L, 2)).isEqualTo(42L);
+	}
+
+	@Test
+	public void dispatchesThroughTheBinding() throws Exception {
+		bind();
+		final Calculator calculator = (Calculator) wovenClass.getConstructor().newInstance();
+
+		assertThat(calculator.describe("a")).isEqualTo("calculator a");
+		assertThat(calculator.add(40L, 2)).isEqualTo(42L);
+		// calls of the instance to itself are dispatched too
+		assertThat(calculator.twice(21L)).isEqualTo(42L);
+		assertThat(calls).containsExactly("dispatcher", "describe", "add", "twice", "add");
+	}
+
+	@Test
+	public void keepsTheAnnotationsOnTheDispatchingMethod() throws Exception {
+		final Method describe = wovenClass.getMethod("describe", String.class);
+		final Method original = wovenClass.getMethod("describe" + BytecodeWeaver.ORIGINAL_SUFFIX, String.class);
+
+		assertThat(describe.isAnnotationPresent(Traced.class)).isTrue();
+		assertThat(original.isAnnotationPresent(Traced.class)).isFalse();
+		assertThat(original.isSynthetic()).isTrue();
+	}
+
+	private void bind() throws Exception {
+		final WovenDispatch.Binding binding = self -> {
+			calls.add("dispatcher");
+			// stands for the proxy, whose last stage calls the instance back
+			return Proxy.newProxyInstance(Calculator.class.getClassLoader(), new Class<?>[] { Calculator.class },
+					(proxy, method, args) -> {
+						calls.add(method.getName());
+						WovenDispatch.bypassNextCall();
+						try {
+							return method.invoke(self, args);
+						} finally {
+							WovenDispatch.clearBypass();
+						}
+					});
+		};
+		wovenClass.getField(BytecodeWeaver.BINDING_FIELD).set(null, binding);
+	}
+
+	private static byte[] bytesOf(final Class<?> type) throws IOException {
+		final String resource = type.getName().substring(type.getName().lastIndexOf('.') + 1) + ".class";
+		try (InputStream in = type.getResourceAsStream(resource)) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	// defines the woven class, delegating the other classes to the test class
+	// loader
+	private static final class WovenClassLoader extends ClassLoader {
+
+		private final String className;
+		private final byte[] bytes;
+
+		WovenClassLoader(final String className, final byte[] bytes) {
+			super(BytecodeWeaverTest.class.getClassLoader());
+			this.className = className;
+			this.bytes = bytes;
+		}
+
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+			if (!name.equals(className)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> cls = findLoadedClass(name);
+				if (cls == null) {
+					cls = defineClass(name, bytes, 0, bytes.length);
+				}
+				return cls;
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE;
+import static com.amitinside.aspecio.api.AspecioConstants.SERVICE_ASPECT_WEAVE_OPTIONAL;
+import static com.amitinside.aspecio.test.TestSupport.newReference;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+
+public final class CandidateServiceIndexTest {
+
+	@Test
+	public void indexesServicesRequestingWeaving() {
+		final CandidateServiceIndex index = new CandidateServiceIndex();
+		final Map<String, Object> properties = new HashMap<>();
+		final ServiceReference<?> reference = newReference(properties);
+
+		assertThat(index.update(reference)).isFalse();
+		assertThat(index.isEmpty()).isTrue();
+
+		properties.put(SERVICE_ASPECT_WEAVE_OPTIONAL, "aspect");
+		assertThat(index.update(reference)).isTrue();
+		assertThat(index.contains(reference)).isTrue();
+
+		properties.remove(SERVICE_ASPECT_WEAVE_OPTIONAL);
+		properties.put(SERVICE_ASPECT_WEAVE, "aspect");
+		assertThat(index.update(reference)).isTrue();
+		assertThat(index.size()).isEqualTo(1);
+
+		properties.clear();
+		assertThat(index.update(reference)).isFalse();
+		assertThat(index.contains(reference)).isFalse();
+	}
+
+	@Test
+	public void looksUpWithoutReadingProperties() {
+		final CandidateServiceIndex index = new CandidateServiceIndex();
+		final ServiceReference<?> candidate = newReference(null);
+		final ServiceReference<?> other = newReference(null);
+		index.add(candidate);
+
+		assertThat(index.contains(candidate)).isTrue();
+		assertThat(index.contains(other)).isFalse();
+
+		index.remove(candidate);
+		assertThat(index.isEmpty()).isTrue();
+	}
+}
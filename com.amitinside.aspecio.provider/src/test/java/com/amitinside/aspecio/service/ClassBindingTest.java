@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.test.TestSupport.stub;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+
+public final class ClassBindingTest {
+
+	@Test
+	public void isHeldByOneLiveServiceAtOnce() {
+		final ClassBinding binding = new ClassBinding("com.acme.Component");
+		final AtomicReference<Bundle> firstBundle = new AtomicReference<>(stub(Bundle.class));
+		final ServiceReference<?> first = newReference(firstBundle);
+		final ServiceReference<?> second = newReference(new AtomicReference<>(stub(Bundle.class)));
+
+		assertThat(binding.claim(first)).isTrue();
+		assertThat(binding.claim(first)).isTrue();
+		assertThat(binding.claim(second)).isFalse();
+
+		binding.release(second);
+		assertThat(binding.claim(second)).isFalse();
+
+		binding.release(first);
+		assertThat(binding.claim(second)).isTrue();
+		assertThat(binding.claim(first)).isFalse();
+	}
+
+	@Test
+	public void isClaimedOverAnUnregisteredService() {
+		final ClassBinding binding = new ClassBinding("com.acme.Component");
+		final AtomicReference<Bundle> firstBundle = new AtomicReference<>(stub(Bundle.class));
+		final ServiceReference<?> first = newReference(firstBundle);
+		final ServiceReference<?> second = newReference(new AtomicReference<>(stub(Bundle.class)));
+
+		assertThat(binding.claim(first)).isTrue();
+		// the departure of the service was not processed yet
+		firstBundle.set(null);
+		assertThat(binding.claim(second)).isTrue();
+	}
+
+	private static ServiceReference<?> newReference(final AtomicReference<Bundle> bundle) {
+		return stub(ServiceReference.class, (method, args) -> {
+			if ("getBundle".equals(method)) {
+				return bundle.get();
+			}
+			throw new UnsupportedOperationException(method);
+		});
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.bytecode.Proxy;
+
+public final class DirectDelegationTest {
+
+	private final List<String> calls = new ArrayList<>();
+
+	@Test
+	public void delegatesStraightToTheServiceWhileNotIntercepted() {
+		final Greeter greeter = (Greeter) DirectDelegation.wrap(new GreeterProxy(), new SimpleGreeter());
+
+		((Proxy) greeter).setInterceptor(Interceptor.DEFAULT);
+
+		assertThat(greeter.greet("world")).isEqualTo("Hello world");
+		assertThat(greeter.length("world")).isEqualTo(5);
+		assertThat(calls).containsExactly("setInterceptor", "service", "service");
+	}
+
+	@Test
+	public void switchesBetweenTheProxyAndTheService() {
+		final Greeter greeter = (Greeter) DirectDelegation.wrap(new GreeterProxy(), new SimpleGreeter());
+		final Interceptor interceptor = new Interceptor() {
+		};
+
+		((Proxy) greeter).setInterceptor(interceptor);
+		assertThat(greeter.greet("world")).isEqualTo("Proxied world");
+		((Proxy) greeter).setInterceptor(Interceptor.DEFAULT);
+		assertThat(greeter.greet("world")).isEqualTo("Hello world");
+
+		assertThat(calls).containsExactly("setInterceptor", "proxy", "setInterceptor", "service");
+	}
+
+	@Test
+	public void sharesTheWrapperClassOfAProxyClass() {
+		assertThat(DirectDelegation.wrap(new GreeterProxy(), new SimpleGreeter()).getClass())
+				.isSameAs(DirectDelegation.wrap(new GreeterProxy(), new SimpleGreeter()).getClass());
+	}
+
+	@Test
+	public void keepsTheProxiesOfNonPublicInterfaces() {
+		final Proxy proxy = new HiddenProxy();
+
+		assertThat(DirectDelegation.wrap(proxy, new Object())).isSameAs(proxy);
+	}
+
+	public interface Greeter {
+
+		String greet(String name);
+
+		int length(String name);
+	}
+
+	interface Hidden {
+	}
+
+	public final class SimpleGreeter implements Greeter {
+
+		@Override
+		public String greet(final String name) {
+			calls.add("service");
+			return "Hello " + name;
+		}
+
+		@Override
+		public int length(final String name) {
+			calls.add("service");
+			return name.length();
+		}
+	}
+
+	// stands for a generated proxy, which only records its calls
+	public final class GreeterProxy implements Greeter, Proxy {
+
+		@Override
+		public void setInterceptor(final Interceptor interceptor) {
+			calls.add("setInterceptor");
+		}
+
+		@Override
+		public String greet(final String name) {
+			calls.add("proxy");
+			return "Proxied " + name;
+		}
+
+		@Override
+		public int length(final String name) {
+			calls.add("proxy");
+			return -1;
+		}
+	}
+
+	static final class HiddenProxy implements Hidden, Proxy {
+
+		@Override
+		public void setInterceptor(final Interceptor interceptor) {
+			// unused
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.primeval.reflex.proxy.CallContext;
+import io.primeval.reflex.proxy.Interceptor;
+import io.primeval.reflex.proxy.handler.IntInterceptionHandler;
+import io.primeval.reflex.proxy.handler.InterceptionHandler;
+
+public final class FusedChainGeneratorTest {
+
+	private final List<String> calls = new ArrayList<>();
+
+	@Test
+	public void callsTheInterceptorsInOrder() throws Throwable {
+		final Interceptor chain = new FusedChainGenerator()
+				.generate(asList(new Recording("a"), new Recording("b"), new Recording("c")));
+
+		final Object result = chain.onCall(null, handler(InterceptionHandler.class, "result"));
+
+		assertThat(result).isEqualTo("result");
+		assertThat(calls).containsExactly("a", "b", "c", "service");
+	}
+
+	@Test
+	public void keepsTheNextStagesOfConvertedHandlers() throws Throwable {
+		final Interceptor boxing = new Interceptor() {
+			@Override
+			public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+					throws E {
+				calls.add("boxing");
+				return (Integer) handler.boxed().invoke() + 1;
+			}
+		};
+		final Interceptor chain = new FusedChainGenerator().generate(asList(boxing, new Recording("b")));
+
+		final int result = chain.onCall(null, handler(IntInterceptionHandler.class, 41));
+
+		assertThat(result).isEqualTo(42);
+		assertThat(calls).containsExactly("boxing", "b", "service");
+	}
+
+	@Test
+	public void generatesDistinctClassesPerChain() {
+		final FusedChainGenerator generator = new FusedChainGenerator();
+		final List<Interceptor> interceptors = asList(new Recording("a"), new Recording("b"));
+
+		assertThat(generator.generate(interceptors).getClass())
+				.isNotSameAs(generator.generate(interceptors).getClass());
+	}
+
+	// a handler of the proxy, boxing to a generic handler
+	private <H> H handler(final Class<H> type, final Object result) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "invoke":
+						calls.add("service");
+						return result;
+					case "boxed":
+						return handler(InterceptionHandler.class, result);
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				}));
+	}
+
+	private final class Recording implements Interceptor {
+
+		private final String name;
+
+		Recording(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public <T, E extends Throwable> T onCall(final CallContext context, final InterceptionHandler<T> handler)
+				throws E {
+			calls.add(name);
+			return handler.invoke();
+		}
+
+		@Override
+		public <E extends Throwable> int onCall(final CallContext context, final IntInterceptionHandler handler)
+				throws E {
+			calls.add(name);
+			return handler.invoke();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.ADDED;
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.MODIFIED;
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.OVERFLOW;
+import static com.amitinside.aspecio.api.InterceptedServiceEventDTO.EventType.REMOVED;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amitinside.aspecio.api.InterceptedServiceDTO;
+import com.amitinside.aspecio.api.InterceptedServiceEventDTO;
+
+public final class InterceptedServiceEventDispatcherTest {
+
+	@Test
+	public void describesOnlyWhatChanged() {
+		final InterceptedServiceDTO added = newDescription(true, asList("a", "b"), asList());
+		final InterceptedServiceDTO modified = newDescription(false, asList("b"), asList("a"));
+
+		final InterceptedServiceEventDTO addition = InterceptedServiceEventDispatcher.changeOf(null, added);
+		assertThat(addition.type).isEqualTo(ADDED);
+		assertThat(addition.satisfiedAspectsAdded).containsExactly("a", "b");
+
+		final InterceptedServiceEventDTO modification = InterceptedServiceEventDispatcher.changeOf(added, modified);
+		assertThat(modification.type).isEqualTo(MODIFIED);
+		assertThat(modification.published).isFalse();
+		assertThat(modification.satisfiedAspectsAdded).isEmpty();
+		assertThat(modification.satisfiedAspectsRemoved).containsExactly("a");
+		assertThat(modification.unsatisfiedRequiredAspectsAdded).containsExactly("a");
+
+		final InterceptedServiceEventDTO removal = InterceptedServiceEventDispatcher.changeOf(modified, null);
+		assertThat(removal.type).isEqualTo(REMOVED);
+		assertThat(removal.satisfiedAspectsRemoved).containsExactly("b");
+		assertThat(removal.unsatisfiedRequiredAspectsRemoved).containsExactly("a");
+
+		assertThat(InterceptedServiceEventDispatcher.changeOf(modified,
+				newDescription(false, asList("b"), asList("a")))).isNull();
+	}
+
+	@Test
+	public void deliversEventsInOrder() throws Exception {
+		final InterceptedServiceEventDispatcher dispatcher = new InterceptedServiceEventDispatcher(16,
+				new WeavingStatistics());
+		final BlockingQueue<InterceptedServiceEventDTO> received = new LinkedBlockingQueue<>();
+		try {
+			dispatcher.addListener(received::add);
+			for (int serviceId = 1; serviceId <= 10; serviceId++) {
+				dispatcher.dispatch(newEvent(serviceId));
+			}
+			for (int serviceId = 1; serviceId <= 10; serviceId++) {
+				assertThat(received.poll(10, TimeUnit.SECONDS).serviceId).isEqualTo(serviceId);
+			}
+		} finally {
+			dispatcher.close();
+		}
+	}
+
+	@Test
+	public void coalescesDroppedEventsIntoAnOverflow() throws Exception {
+		final WeavingStatistics statistics = new WeavingStatistics();
+		final InterceptedServiceEventDispatcher dispatcher = new InterceptedServiceEventDispatcher(4, statistics);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final BlockingQueue<InterceptedServiceEventDTO> received = new LinkedBlockingQueue<>();
+		try {
+			dispatcher.addListener(event -> {
+				if (event.serviceId == 0 && event.type != OVERFLOW) {
+					blocked.countDown();
+					try {
+						release.await();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return;
+				}
+				received.add(event);
+			});
+			dispatcher.dispatch(newEvent(0));
+			assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+
+			// the listener is stuck, but dispatching never blocks
+			for (int serviceId = 1; serviceId <= 100; serviceId++) {
+				dispatcher.dispatch(newEvent(serviceId));
+			}
+			release.countDown();
+
+			for (int serviceId = 1; serviceId <= 4; serviceId++) {
+				assertThat(received.poll(10, TimeUnit.SECONDS).serviceId).isEqualTo(serviceId);
+			}
+			assertThat(received.poll(10, TimeUnit.SECONDS).type).isEqualTo(OVERFLOW);
+			assertThat(received.poll(100, TimeUnit.MILLISECONDS)).isNull();
+			assertThat(statistics.toDTO().droppedServiceEvents).isEqualTo(96);
+		} finally {
+			release.countDown();
+			dispatcher.close();
+		}
+	}
+
+	private static InterceptedServiceEventDTO newEvent(final long serviceId) {
+		final InterceptedServiceEventDTO event = new InterceptedServiceEventDTO();
+		event.type = MODIFIED;
+		event.serviceId = serviceId;
+		return event;
+	}
+
+	private static InterceptedServiceDTO newDescription(final boolean published, final List<String> satisfied,
+			final List<String> unsatisfied) {
+		final InterceptedServiceDTO dto = new InterceptedServiceDTO();
+		dto.serviceId = 1;
+		dto.published = published;
+		dto.satisfiedAspects = new LinkedHashSet<>(satisfied);
+		dto.unsatisfiedRequiredAspects = new LinkedHashSet<>(unsatisfied);
+		final Set<String> required = new LinkedHashSet<>(satisfied);
+		required.addAll(unsatisfied);
+		dto.requiredAspects = required;
+		dto.optionalAspects = emptySet();
+		return dto;
+	}
+}
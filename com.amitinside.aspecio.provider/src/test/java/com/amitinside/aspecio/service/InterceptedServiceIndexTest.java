@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.test.TestSupport.newReference;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+
+import com.amitinside.aspecio.api.InterceptedServiceDTO;
+import com.amitinside.aspecio.api.InterceptedServiceQueryDTO;
+
+public final class InterceptedServiceIndexTest {
+
+	@Test
+	public void selectsServicesByIndexedCriteria() {
+		final InterceptedServiceIndex index = new InterceptedServiceIndex();
+		put(index, 1, 10, asList("a", "b"), emptyList(), emptyList());
+		put(index, 2, 10, singletonList("b"), singletonList("c"), singletonList("b"));
+		put(index, 3, 20, emptyList(), singletonList("a"), emptyList());
+
+		final InterceptedServiceQueryDTO byAspect = new InterceptedServiceQueryDTO();
+		byAspect.aspect = "a";
+		assertThat(serviceIds(index.query(byAspect))).containsExactly(1L, 3L);
+
+		final InterceptedServiceQueryDTO byBundle = new InterceptedServiceQueryDTO();
+		byBundle.bundleId = 10L;
+		assertThat(serviceIds(index.query(byBundle))).containsExactly(1L, 2L);
+
+		final InterceptedServiceQueryDTO unsatisfied = new InterceptedServiceQueryDTO();
+		unsatisfied.satisfied = false;
+		assertThat(serviceIds(index.query(unsatisfied))).containsExactly(2L);
+
+		final InterceptedServiceQueryDTO combined = new InterceptedServiceQueryDTO();
+		combined.aspect = "b";
+		combined.satisfied = true;
+		assertThat(serviceIds(index.query(combined))).containsExactly(1L);
+		assertThat(index.count(combined)).isEqualTo(1);
+	}
+
+	@Test
+	public void pagesInServiceIdOrder() {
+		final InterceptedServiceIndex index = new InterceptedServiceIndex();
+		for (long serviceId = 10; serviceId > 0; serviceId--) {
+			put(index, serviceId, 1, singletonList("a"), emptyList(), emptyList());
+		}
+		final InterceptedServiceQueryDTO query = new InterceptedServiceQueryDTO();
+		query.aspect = "a";
+		query.offset = 3;
+		query.limit = 4;
+
+		assertThat(serviceIds(index.query(query))).containsExactly(4L, 5L, 6L, 7L);
+		assertThat(index.count(query)).isEqualTo(10);
+
+		query.offset = 8;
+		assertThat(serviceIds(index.query(query))).containsExactly(9L, 10L);
+	}
+
+	@Test
+	public void movesUpdatedServicesBetweenIndexes() {
+		final InterceptedServiceIndex index = new InterceptedServiceIndex();
+		final ServiceReference<?> reference = newReference(new HashMap<>());
+		index.put(reference, newDescription(1, 10, singletonList("a"), emptyList(), singletonList("a")));
+
+		index.put(reference, newDescription(1, 20, singletonList("b"), emptyList(), emptyList()));
+
+		final InterceptedServiceQueryDTO query = new InterceptedServiceQueryDTO();
+		query.aspect = "a";
+		assertThat(index.query(query)).isEmpty();
+		query.aspect = null;
+		query.bundleId = 10L;
+		assertThat(index.query(query)).isEmpty();
+		query.bundleId = null;
+		query.satisfied = false;
+		assertThat(index.query(query)).isEmpty();
+		query.satisfied = true;
+		assertThat(serviceIds(index.query(query))).containsExactly(1L);
+
+		index.remove(1);
+		assertThat(index.size()).isZero();
+		assertThat(index.query(query)).isEmpty();
+	}
+
+	@Test
+	public void matchesFiltersAndObjectClasses() {
+		final InterceptedServiceIndex index = new InterceptedServiceIndex();
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put("region", "eu");
+		index.put(newReference(properties), newDescription(1, 10, singletonList("a"), emptyList(), emptyList()));
+		index.put(newReference(new HashMap<>()), newDescription(2, 10, singletonList("a"), emptyList(), emptyList()));
+
+		final InterceptedServiceQueryDTO query = new InterceptedServiceQueryDTO();
+		query.filter = "(region=eu)";
+		assertThat(serviceIds(index.query(query))).containsExactly(1L);
+
+		query.filter = null;
+		query.objectClassContains = "Runn";
+		assertThat(index.count(query)).isEqualTo(2);
+		query.objectClassContains = "Callable";
+		assertThat(index.count(query)).isZero();
+
+		query.filter = "(region=";
+		assertThatThrownBy(() -> index.query(query)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static void put(final InterceptedServiceIndex index, final long serviceId, final long bundleId,
+			final List<String> required, final List<String> optional, final List<String> unsatisfied) {
+		index.put(newReference(new HashMap<>()), newDescription(serviceId, bundleId, required, optional, unsatisfied));
+	}
+
+	private static InterceptedServiceDTO newDescription(final long serviceId, final long bundleId,
+			final List<String> required, final List<String> optional, final List<String> unsatisfied) {
+		final InterceptedServiceDTO dto = new InterceptedServiceDTO();
+		dto.serviceId = serviceId;
+		dto.bundleId = bundleId;
+		dto.objectClass = singletonList(Runnable.class.getName());
+		dto.requiredAspects = new LinkedHashSet<>(required);
+		dto.optionalAspects = new LinkedHashSet<>(optional);
+		dto.unsatisfiedRequiredAspects = new LinkedHashSet<>(unsatisfied);
+		dto.satisfiedAspects = emptySet();
+		return dto;
+	}
+
+	private static List<Long> serviceIds(final List<InterceptedServiceDTO> services) {
+		final List<Long> serviceIds = new ArrayList<>();
+		services.forEach(s -> serviceIds.add(s.serviceId));
+		return serviceIds;
+	}
+}
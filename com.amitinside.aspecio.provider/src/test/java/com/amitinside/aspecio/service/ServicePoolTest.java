@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.test.TestSupport.runConcurrently;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amitinside.aspecio.api.WeavingStatisticsDTO;
+import com.amitinside.aspecio.util.IdentityKey;
+
+public final class ServicePoolTest {
+
+	@Test
+	public void sharesProxiesUntilTheLastUnget() {
+		final WeavingStatistics statistics = new WeavingStatistics();
+		final ServicePool<Object> pool = new ServicePool<>(statistics);
+		final Object original = new Unhashable();
+
+		final Object proxy = pool.get(original, Unhashable::new);
+		assertThat(pool.get(original, Unhashable::new)).isSameAs(proxy);
+		assertThat(pool.get(new Unhashable(), Unhashable::new)).isNotSameAs(proxy);
+
+		assertThat(pool.unget(proxy)).isFalse();
+		assertThat(pool.unget(proxy)).isTrue();
+		assertThat(pool.unget(proxy)).isFalse();
+		assertThat(pool.get(original, Unhashable::new)).isNotSameAs(proxy);
+
+		final WeavingStatisticsDTO dto = statistics.toDTO();
+		assertThat(dto.pooledProxyHits).isEqualTo(1);
+		assertThat(dto.pooledProxyMisses).isEqualTo(3);
+		assertThat(dto.livePooledProxies).isEqualTo(2);
+	}
+
+	@Test
+	public void neverHandsOutReleasedProxies() throws Exception {
+		final WeavingStatistics statistics = new WeavingStatistics();
+		final ServicePool<Object> pool = new ServicePool<>(statistics);
+		final Object[] originals = { new Unhashable(), new Unhashable(), new Unhashable() };
+		// users of each proxy, -1 once released for good
+		final Map<IdentityKey, AtomicInteger> users = new ConcurrentHashMap<>();
+		final int threads = 16;
+		runConcurrently(threads, 60, () -> {
+			final ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < 20_000; i++) {
+				final Object proxy = pool.get(originals[random.nextInt(originals.length)], Unhashable::new);
+				final AtomicInteger proxyUsers = users.computeIfAbsent(new IdentityKey(proxy),
+						k -> new AtomicInteger());
+				assertThat(proxyUsers.getAndIncrement()).isNotNegative();
+				proxyUsers.decrementAndGet();
+				if (pool.unget(proxy)) {
+					// nobody may get it between its last unget and now
+					assertThat(proxyUsers.compareAndSet(0, -1)).isTrue();
+				}
+			}
+			return null;
+		});
+		assertThat(pool.size()).isZero();
+		assertThat(users.values()).allMatch(u -> u.get() == -1);
+		final WeavingStatisticsDTO dto = statistics.toDTO();
+		assertThat(dto.livePooledProxies).isZero();
+		assertThat(dto.pooledProxyHits + dto.pooledProxyMisses).isEqualTo(threads * 20_000L);
+	}
+
+	// stands for services whose equals and hashCode are intercepted
+	private static final class Unhashable {
+
+		@Override
+		public int hashCode() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.service;
+
+import static com.amitinside.aspecio.test.TestSupport.newReference;
+import static com.amitinside.aspecio.test.TestSupport.runConcurrently;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+
+public final class WovenServiceIndexTest {
+
+	@Test
+	public void indexesRequiredAndOptionalAspects() {
+		final WovenServiceIndex index = new WovenServiceIndex();
+		final WovenService wovenService = newWovenService(newReference(null), asList("a", "b"), singletonList("c"));
+
+		index.put(wovenService);
+
+		assertThat(index.getServices("a")).containsExactly(wovenService);
+		assertThat(index.getServices("c")).containsExactly(wovenService);
+		assertThat(index.getServices("d")).isEmpty();
+		assertThat(index.getAspects(wovenService.originalReference)).containsExactly("a", "b", "c");
+	}
+
+	@Test
+	public void movesUpdatedServicesBetweenAspects() {
+		final WovenServiceIndex index = new WovenServiceIndex();
+		final ServiceReference<?> reference = newReference(null);
+		index.put(newWovenService(reference, asList("a", "b"), emptyList()));
+
+		final WovenService updated = newWovenService(reference, singletonList("b"), singletonList("c"));
+		index.put(updated);
+
+		assertThat(index.getServices("a")).isEmpty();
+		assertThat(index.getServices("b")).containsExactly(updated);
+		assertThat(index.getServices("c")).containsExactly(updated);
+		assertThat(index.aspectCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void dropsDepartedServices() {
+		final WovenServiceIndex index = new WovenServiceIndex();
+		final WovenService first = newWovenService(newReference(null), singletonList("a"), emptyList());
+		final WovenService second = newWovenService(newReference(null), singletonList("a"), singletonList("b"));
+		index.put(first);
+		index.put(second);
+
+		index.remove(second.originalReference);
+
+		assertThat(index.getServices("a")).containsExactly(first);
+		assertThat(index.getServices("b")).isEmpty();
+		assertThat(index.getAspects(second.originalReference)).isEmpty();
+		assertThat(index.aspectCount()).isEqualTo(1);
+
+		index.remove(first.originalReference);
+		assertThat(index.aspectCount()).isZero();
+	}
+
+	@Test
+	public void keepsConcurrentServicesOfTheSameAspect() throws Exception {
+		final WovenServiceIndex index = new WovenServiceIndex();
+		final List<ServiceReference<?>> kept = runConcurrently(16, 30, () -> {
+			// each thread churns through services, keeping the last one
+			ServiceReference<?> reference = null;
+			for (int i = 0; i < 1_000; i++) {
+				if (reference != null) {
+					index.remove(reference);
+				}
+				reference = newReference(null);
+				index.put(newWovenService(reference, singletonList("shared"), emptyList()));
+			}
+			return reference;
+		});
+		assertThat(index.getServices("shared")).<Object> extracting(ws -> ws.originalReference)
+				.containsExactlyInAnyOrderElementsOf(kept);
+	}
+
+	private static WovenService newWovenService(final ServiceReference<?> reference, final List<String> required,
+			final List<String> optional) {
+		return new WovenService(0, required, optional, reference, singletonList(Runnable.class.getName()), emptyMap(),
+				null);
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Stubs of framework interfaces and a concurrent runner shared by the tests.
+ */
+public final class TestSupport {
+
+	private TestSupport() {
+	}
+
+	/**
+	 * Answers the calls of a stub, other than equals and hashCode.
+	 */
+	public interface Answer {
+		Object answer(String method, Object[] args);
+	}
+
+	/**
+	 * Creates a stub compared by identity, answering the other calls with the
+	 * given answer.
+	 */
+	public static <T> T stub(final Class<T> type, final Answer answer) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					default:
+						return answer.answer(method.getName(), args);
+					}
+				}));
+	}
+
+	/**
+	 * Creates a stub compared by identity, failing any other call.
+	 */
+	public static <T> T stub(final Class<T> type) {
+		return stub(type, (method, args) -> {
+			throw new UnsupportedOperationException(method);
+		});
+	}
+
+	/**
+	 * Creates a service reference reading its properties from the given map, or
+	 * failing any property read if the map is null.
+	 */
+	public static ServiceReference<?> newReference(final Map<String, Object> properties) {
+		return stub(ServiceReference.class, (method, args) -> {
+			if (properties != null) {
+				switch (method) {
+				case "getProperty":
+					return properties.get(args[0]);
+				case "getPropertyKeys":
+					return properties.keySet().toArray(new String[0]);
+				default:
+					break;
+				}
+			}
+			throw new UnsupportedOperationException(method);
+		});
+	}
+
+	/**
+	 * Runs the task on the given number of threads, all released at once, and
+	 * returns their results in the order of the threads.
+	 */
+	public static <T> List<T> runConcurrently(final int threads, final long timeoutSeconds, final Callable<T> task)
+			throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		try {
+			final List<Future<T>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return task.call();
+				}));
+			}
+			start.countDown();
+			final List<T> results = new ArrayList<>();
+			for (final Future<T> future : futures) {
+				results.add(future.get(timeoutSeconds, TimeUnit.SECONDS));
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public final class CachingClassLoaderTest {
+
+	private final AtomicLong generation = new AtomicLong();
+	private final CountingClassLoader delegate = new CountingClassLoader();
+
+	@Test
+	public void cachesHitsAndMissesWithoutGeneration() throws Exception {
+		final CachingClassLoader classLoader = new CachingClassLoader(delegate);
+
+		classLoader.loadClass(String.class.getName());
+		classLoader.loadClass(String.class.getName());
+		assertThatThrownBy(() -> classLoader.loadClass("a.Missing")).isInstanceOf(ClassNotFoundException.class);
+		assertThatThrownBy(() -> classLoader.loadClass("a.Missing")).isInstanceOf(ClassNotFoundException.class);
+
+		assertThat(delegate.lookups).containsExactly(String.class.getName(), "a.Missing");
+	}
+
+	@Test
+	public void dropsTheCachesWhenTheGenerationChanges() throws Exception {
+		final CachingClassLoader classLoader = new CachingClassLoader(delegate, generation::get);
+		assertThatThrownBy(() -> classLoader.loadClass("a.Missing")).isInstanceOf(ClassNotFoundException.class);
+
+		generation.incrementAndGet();
+		assertThatThrownBy(() -> classLoader.loadClass("a.Missing")).isInstanceOf(ClassNotFoundException.class);
+
+		assertThat(delegate.lookups).containsExactly("a.Missing", "a.Missing");
+	}
+
+	@Test
+	public void doesNotCacheAMissSeenDuringAGenerationChange() throws Exception {
+		final CachingClassLoader classLoader = new CachingClassLoader(delegate, generation::get);
+		// the generation changes while the delegate looks the class up
+		delegate.onLookup = generation::incrementAndGet;
+
+		assertThatThrownBy(() -> classLoader.loadClass("a.Missing")).isInstanceOf(ClassNotFoundException.class);
+		delegate.onLookup = null;
+		assertThatThrownBy(() -> classLoader.loadClass("a.Missing")).isInstanceOf(ClassNotFoundException.class);
+		assertThatThrownBy(() -> classLoader.loadClass("a.Missing")).isInstanceOf(ClassNotFoundException.class);
+
+		assertThat(delegate.lookups).containsExactly("a.Missing", "a.Missing");
+	}
+
+	// finds the classes of the test class loader only, recording the lookups
+	private static final class CountingClassLoader extends ClassLoader {
+
+		final List<String> lookups = new ArrayList<>();
+		Runnable onLookup;
+
+		CountingClassLoader() {
+			super(CachingClassLoaderTest.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+			lookups.add(name);
+			if (onLookup != null) {
+				onLookup.run();
+			}
+			return super.loadClass(name, resolve);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static com.amitinside.aspecio.test.TestSupport.runConcurrently;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public final class ConcurrentWeakIdentityMapTest {
+
+	@Test
+	public void keysAreComparedByIdentity() {
+		final ConcurrentWeakIdentityMap<String, Integer> map = new ConcurrentWeakIdentityMap<>();
+		final String key = new String("key");
+		final String equalKey = new String("key");
+
+		map.computeIfAbsent(key, k -> 1);
+		map.computeIfAbsent(equalKey, k -> 2);
+
+		assertThat(map.get(key)).isEqualTo(1);
+		assertThat(map.get(equalKey)).isEqualTo(2);
+		assertThat(map.size()).isEqualTo(2);
+
+		assertThat(map.remove(key)).isEqualTo(1);
+		assertThat(map.get(key)).isNull();
+		assertThat(map.get(equalKey)).isEqualTo(2);
+	}
+
+	@Test
+	public void removesMatchingKeys() {
+		final ConcurrentWeakIdentityMap<String, Integer> map = new ConcurrentWeakIdentityMap<>();
+		final String a = "a";
+		final String b = "b";
+		map.computeIfAbsent(a, k -> 1);
+		map.computeIfAbsent(b, k -> 2);
+
+		map.removeIf("a"::equals);
+
+		assertThat(map.get(a)).isNull();
+		assertThat(map.get(b)).isEqualTo(2);
+	}
+
+	@Test
+	public void computesValuesAtMostOnceUnderContention() throws Exception {
+		final ConcurrentWeakIdentityMap<Object, Object> map = new ConcurrentWeakIdentityMap<>();
+		final List<Object> keys = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			keys.add(new Object());
+		}
+		final AtomicInteger computations = new AtomicInteger();
+		final List<List<Object>> results = runConcurrently(16, 30, () -> {
+			final List<Object> values = new ArrayList<>();
+			for (final Object key : keys) {
+				values.add(map.computeIfAbsent(key, k -> {
+					computations.incrementAndGet();
+					return new Object();
+				}));
+			}
+			return values;
+		});
+		final List<Object> expected = results.get(0);
+		for (final List<Object> values : results) {
+			for (int i = 0; i < values.size(); i++) {
+				assertThat(values.get(i)).isSameAs(expected.get(i));
+			}
+		}
+		assertThat(computations.get()).isEqualTo(keys.size());
+	}
+
+	@Test
+	public void expungesCollectedKeys() throws InterruptedException {
+		final ConcurrentWeakIdentityMap<Object, String> map = new ConcurrentWeakIdentityMap<>();
+		map.computeIfAbsent(new Object(), k -> "value");
+
+		for (int i = 0; i < 50 && map.size() > 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertThat(map.size()).isZero();
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public final class EventCoalescerTest {
+
+	private static final int ASPECTS = 8;
+	private static final int SERVICES = 200;
+	private static final long WINDOW_MILLIS = 500;
+
+	@Test
+	public void collapsesBurstsIntoOneRunPerKey() throws Exception {
+		final Map<Integer, AtomicInteger> runs = new ConcurrentHashMap<>();
+		final CountDownLatch done = new CountDownLatch(SERVICES);
+		final EventCoalescer<Integer> coalescer = new EventCoalescer<>("Test", WINDOW_MILLIS, service -> {
+			runs.computeIfAbsent(service, k -> new AtomicInteger()).incrementAndGet();
+			done.countDown();
+		});
+		try {
+			// replays aspects appearing one after another, each affecting all services
+			int coalesced = 0;
+			for (int aspect = 0; aspect < ASPECTS; aspect++) {
+				for (int service = 0; service < SERVICES; service++) {
+					if (!coalescer.submit(service)) {
+						coalesced++;
+					}
+				}
+			}
+			assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+
+			// without coalescing, every event would have re-evaluated its service
+			assertThat(coalesced).isEqualTo((ASPECTS - 1) * SERVICES);
+			assertThat(runs).hasSize(SERVICES);
+			assertThat(runs.values()).allMatch(count -> count.get() == 1);
+			assertThat(coalescer.pendingCount()).isZero();
+		} finally {
+			coalescer.close();
+		}
+	}
+
+	@Test
+	public void eventsAfterARunOpenANewWindow() throws Exception {
+		final AtomicInteger runs = new AtomicInteger();
+		final CountDownLatch first = new CountDownLatch(1);
+		final CountDownLatch second = new CountDownLatch(2);
+		final EventCoalescer<String> coalescer = new EventCoalescer<>("Test", 10, key -> {
+			runs.incrementAndGet();
+			first.countDown();
+			second.countDown();
+		});
+		try {
+			assertThat(coalescer.submit("service")).isTrue();
+			assertThat(first.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(coalescer.submit("service")).isTrue();
+			assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(runs.get()).isEqualTo(2);
+		} finally {
+			coalescer.close();
+		}
+	}
+
+	@Test
+	public void dropsPendingEventsOnClose() {
+		final AtomicInteger runs = new AtomicInteger();
+		final EventCoalescer<String> coalescer = new EventCoalescer<>("Test", 60_000, key -> runs.incrementAndGet());
+		coalescer.submit("service");
+		coalescer.close();
+
+		assertThat(coalescer.pendingCount()).isZero();
+		assertThat(coalescer.submit("service")).isTrue();
+		assertThat(coalescer.pendingCount()).isZero();
+		assertThat(runs.get()).isZero();
+	}
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public final class OrderedExecutorTest {
+
+	@Test
+	public void runsTasksOfAKeyInOrder() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final OrderedExecutor ordered = new OrderedExecutor(executor);
+			final List<Integer> order = new ArrayList<>();
+			CompletableFuture<Void> last = null;
+			for (int i = 0; i < 100; i++) {
+				final int task = i;
+				last = ordered.execute("key", () -> order.add(task));
+			}
+			last.get(5, TimeUnit.SECONDS);
+			assertThat(order).hasSize(100).isSorted();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void closeRejectsPendingTasks() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final OrderedExecutor ordered = new OrderedExecutor(executor);
+			final CountDownLatch running = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			final CompletableFuture<Void> first = ordered.execute("key", () -> {
+				running.countDown();
+				await(release);
+			});
+			final CompletableFuture<Void> pending = ordered.execute("key", () -> {
+			});
+			assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+			executor.shutdownNow();
+			ordered.close();
+			release.countDown();
+
+			assertRejected(pending);
+			assertRejected(ordered.execute("key", () -> {
+			}));
+			assertThatThrownBy(() -> ordered.executeAndWait("other", () -> {
+			})).isInstanceOf(RejectedExecutionException.class);
+			first.get(5, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void rejectionFailsTheTasksOfTheKey() throws Exception {
+		final OrderedExecutor ordered = new OrderedExecutor(task -> {
+			throw new RejectedExecutionException();
+		});
+		assertRejected(ordered.execute("key", () -> {
+		}));
+		// the key is usable again
+		assertRejected(ordered.execute("key", () -> {
+		}));
+	}
+
+	private static void assertRejected(final CompletableFuture<Void> future) {
+		assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(RejectedExecutionException.class);
+	}
+
+	// ignores the interruption of shutdownNow(), like a task busy with the framework
+	private static void await(final CountDownLatch latch) {
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				latch.await(5, TimeUnit.SECONDS);
+				break;
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2022-2025 Amit Kumar Mondal
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package com.amitinside.aspecio.util;
+
+import static com.amitinside.aspecio.test.TestSupport.runConcurrently;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+
+public final class StripedLockTest {
+
+	@Test
+	public void roundsStripesToPowerOfTwo() {
+		assertThat(new StripedLock(1).stripes()).isEqualTo(1);
+		assertThat(new StripedLock(17).stripes()).isEqualTo(32);
+		assertThat(new StripedLock(64).stripes()).isEqualTo(64);
+	}
+
+	@Test
+	public void equalKeysShareTheirLock() {
+		final StripedLock locks = new StripedLock(16);
+		assertThat(locks.get(new String("key"))).isSameAs(locks.get(new String("key")));
+	}
+
+	@Test
+	public void differentStripesDoNotBlockEachOther() throws Exception {
+		final StripedLock locks = new StripedLock(16);
+		Integer otherKey = 1;
+		while (locks.get(otherKey) == locks.get(0)) {
+			otherKey++;
+		}
+		final Lock otherLock = locks.get(otherKey);
+		final Lock lock = locks.get(0);
+		lock.lock();
+		try {
+			// times out if the other stripe is blocked
+			final List<Boolean> sameStripe = runConcurrently(1, 5, () -> {
+				otherLock.lock();
+				otherLock.unlock();
+				return lock.tryLock();
+			});
+			assertThat(sameStripe).containsExactly(false);
+		} finally {
+			lock.unlock();
+		}
+	}
+}